@@ -0,0 +1,42 @@
+package com.ptvgroup.devcomp.tooling.creator.cmd;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.ptvgroup.devcomp.tooling.shortcut.BenchmarkFixtures;
+
+/**
+ * Benchmarks building the Maven options for all projects of the test
+ * configuration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShortcutBenchmark {
+
+    private List<String> relativePaths;
+
+    @Setup
+    public void setUp() throws IOException {
+        relativePaths = new ArrayList<>();
+        for (String projectName : BenchmarkFixtures.getProjectNames()) {
+            relativePaths.add(BenchmarkFixtures.getModuleDirectory(projectName));
+        }
+    }
+
+    @Benchmark
+    public String toMavenProjectParameter() {
+        return Shortcut.toMavenProjectParameter(relativePaths);
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.ptvgroup.devcomp.tooling.creator.cmd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.beust.jcommander.JCommander;
+import com.ptvgroup.devcomp.tooling.shortcut.BenchmarkFixtures;
+import com.ptvgroup.devcomp.tooling.shortcut.KampWSClient;
+import com.ptvgroup.devcomp.tooling.shortcut.ShortcutHelper;
+import com.ptvgroup.devcomp.tooling.shortcut.SyntheticCheckout;
+
+/**
+ * Benchmarks a complete shortcut command on synthetic checkouts of growing
+ * size, from the changed projects to the Maven command building everything
+ * they affect, and reports the peak heap usage of each command.
+ * <p>
+ * The command runs with --dryRun, so Maven is not executed, and against a
+ * stand-in for the web service. The responses of the web service are not
+ * cached between commands; the module index of the checkout is, like in a
+ * real checkout. The peak heap usage is the sum of the peak usages of the
+ * heap memory pools, which may have peaked at different times, so it is an
+ * upper bound.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ShortcutScaleBenchmark {
+
+    private static final PrintStream DISCARD = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+    });
+
+    @Param({ "1000", "5000", "20000" })
+    public int modules;
+
+    @Param({ "3" })
+    public int depth;
+
+    @Param({ "2" })
+    public double dependencyDensity;
+
+    @Param({ "10" })
+    public int changedProjects;
+
+    private Path root;
+    private KampWSClient client;
+    private String[] arguments;
+
+    /**
+     * The peak heap usage of a command, reported next to its duration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+
+        /** The peak heap usage of the last command, in megabytes. */
+        public long peakHeapMegabytes;
+
+        @Setup(Level.Invocation)
+        public void reset() {
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void measure() {
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+            }
+            peakHeapMegabytes = peak >> 20;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        SyntheticCheckout checkout = new SyntheticCheckout(modules, depth, dependencyDensity, 42);
+        root = Files.createTempDirectory("shortcut-scale");
+        checkout.write(root);
+        List<String> changed = checkout.selectProjects(changedProjects);
+        client = checkout.createStandIn(changed).createClient();
+
+        List<String> args = new ArrayList<>();
+        args.add("shortcut");
+        args.add("--projectNames");
+        args.add(String.join(",", changed));
+        args.add("--clearCache");
+        args.add("--nonInteractive");
+        args.add("--noDaemon");
+        args.add("--dryRun");
+        args.add("install");
+        arguments = args.toArray(new String[args.size()]);
+
+        // fills the module index, and fails early rather than measuring errors
+        if (execute() != 0) {
+            throw new IllegalStateException("shortcut failed on " + root);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.deleteCheckout(root);
+    }
+
+    @Benchmark
+    public int doExecute(Heap heap) {
+        return execute();
+    }
+
+    private int execute() {
+        JCommander jc = new JCommander();
+        Shortcut sc = Shortcut.create(jc, root, new ShortcutHelper(client));
+        jc.parse(arguments);
+        PrintStream out = System.out;
+        System.setOut(DISCARD);
+        try {
+            return sc.doExecute();
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+}
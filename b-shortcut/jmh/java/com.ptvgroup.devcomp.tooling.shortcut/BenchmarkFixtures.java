@@ -0,0 +1,110 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Test data for the benchmarks, sized like the projects of the test
+ * configuration ("src/test/resources/shortcuttest/config.properties").
+ */
+public final class BenchmarkFixtures {
+
+    /** Directory of the test resources. */
+    public static final Path RESOURCES = Paths.get("src/test/resources/shortcuttest");
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Returns the project names of the test configuration.
+     *
+     * @return the project names
+     * @throws IOException if the configuration cannot be read
+     */
+    public static List<String> getProjectNames() throws IOException {
+        Properties config = new Properties();
+        try (Reader reader = Files.newBufferedReader(RESOURCES.resolve("config.properties"),
+            StandardCharsets.UTF_8)) {
+            config.load(reader);
+        }
+        List<String> result = new ArrayList<>();
+        for (String name : config.getProperty("project.names").split(",")) {
+            result.add(name.trim());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the module directory a project gets in a checkout created by
+     * {@link #createCheckout(List)}, e.g. "xs/frontend/dashboard" for
+     * "xs-frontend-dashboard".
+     *
+     * @param projectName the name of the project
+     * @return the directory relative to the checkout root
+     */
+    public static String getModuleDirectory(String projectName) {
+        return projectName.replace('-', '/');
+    }
+
+    /**
+     * Creates a checkout in a temporary directory with one module per
+     * project. Every module contains a POM file and a source file.
+     *
+     * @param projectNames the projects of the checkout
+     * @return the root directory of the checkout
+     * @throws IOException if the checkout cannot be created
+     */
+    public static Path createCheckout(List<String> projectNames) throws IOException {
+        Path root = Files.createTempDirectory("shortcut-benchmark");
+        for (String projectName : projectNames) {
+            Path module = root.resolve(getModuleDirectory(projectName));
+            Files.createDirectories(module.resolve("src/main/java"));
+            String artifactId = module.getFileName().toString();
+            Files.write(module.resolve(ModuleIndex.POM_FILE), ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+                + "    <modelVersion>4.0.0</modelVersion>\n"
+                + "    <groupId>com.ptvgroup.devcomp.benchmark</groupId>\n"
+                + "    <artifactId>" + artifactId + "</artifactId>\n"
+                + "    <name>" + projectName + "</name>\n"
+                + "    <version>1.0.0-SNAPSHOT</version>\n"
+                + "</project>\n").getBytes(StandardCharsets.UTF_8));
+            Files.write(module.resolve("src/main/java/Module.java"),
+                "class Module {}\n".getBytes(StandardCharsets.UTF_8));
+        }
+        return root;
+    }
+
+    /**
+     * Deletes a checkout created by {@link #createCheckout(List)}.
+     *
+     * @param root the root directory of the checkout
+     * @throws IOException if the checkout cannot be deleted
+     */
+    public static void deleteCheckout(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks combining the projects affected by many change scenarios, as
+ * lists of names and as impact sets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImpactSetBenchmark {
+
+    @Param({ "10", "100" })
+    public int scenarios;
+
+    private final List<List<String>> lists = new ArrayList<>();
+    private final List<ImpactSet> sets = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String> projectNames = BenchmarkFixtures.getProjectNames();
+        ProjectIds ids = new ProjectIds();
+        for (int i = 0; i < scenarios; i++) {
+            // overlapping halves of the projects
+            int from = i * 7 % projectNames.size();
+            List<String> affected = new ArrayList<>();
+            for (int j = 0; j < projectNames.size() / 2; j++) {
+                affected.add(projectNames.get((from + j) % projectNames.size()));
+            }
+            lists.add(affected);
+            sets.add(ImpactSet.of(ids, affected));
+        }
+    }
+
+    @Benchmark
+    public List<String> unionOfLists() {
+        Set<String> result = new LinkedHashSet<>();
+        for (List<String> affected : lists) {
+            result.addAll(affected);
+        }
+        return new ArrayList<>(result);
+    }
+
+    @Benchmark
+    public List<String> unionOfImpactSets() {
+        ImpactSet result = sets.get(0);
+        for (int i = 1; i < sets.size(); i++) {
+            result = result.union(sets.get(i));
+        }
+        return result.toList();
+    }
+
+}
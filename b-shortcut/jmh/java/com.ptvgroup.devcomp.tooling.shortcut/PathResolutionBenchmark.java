@@ -0,0 +1,78 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks resolving the module directories of all projects of a checkout,
+ * from the module index and from the change impact model, and scanning the
+ * checkout for modules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathResolutionBenchmark {
+
+    private List<String> projectNames;
+    private Path root;
+    private ModuleIndex index;
+    private ModuleIndex emptyIndex;
+    private ShortcutHelper helper;
+
+    @Setup
+    public void setUp() throws IOException {
+        projectNames = BenchmarkFixtures.getProjectNames();
+        root = BenchmarkFixtures.createCheckout(projectNames);
+        index = ModuleIndex.scan(root);
+        emptyIndex = new ModuleIndex();
+
+        // a model knowing the paths, so that no web service is needed
+        Map<String, String> paths = new HashMap<>();
+        Map<String, List<String>> changeScenarios = new LinkedHashMap<>();
+        for (String projectName : projectNames) {
+            paths.put(projectName, BenchmarkFixtures.getModuleDirectory(projectName) + "/" + ModuleIndex.POM_FILE);
+            changeScenarios.put(projectName, new ArrayList<String>());
+        }
+        ImpactModel.build(changeScenarios, Collections.<String, List<String>> emptyMap(), paths)
+            .save(KampWSCache.getCacheDirectory(root).resolve(ImpactModel.MODEL_FILE));
+        helper = new ShortcutHelper();
+        helper.useImpactModel(root);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.deleteCheckout(root);
+    }
+
+    @Benchmark
+    public ProjectPaths resolveProjectPaths_Index() {
+        return helper.resolveProjectPaths(projectNames, index, root);
+    }
+
+    @Benchmark
+    public ProjectPaths resolveProjectPaths_Model() {
+        return helper.resolveProjectPaths(projectNames, emptyIndex, root);
+    }
+
+    @Benchmark
+    public ModuleIndex scan() throws IOException {
+        return ModuleIndex.scan(root);
+    }
+
+}
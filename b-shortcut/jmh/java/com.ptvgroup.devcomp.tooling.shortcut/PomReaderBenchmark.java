@@ -0,0 +1,41 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks reading project names and dependencies from POM files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PomReaderBenchmark {
+
+    private final Path pom = BenchmarkFixtures.RESOURCES.resolve("pom_generation.xml");
+
+    private final Path namelessPom = BenchmarkFixtures.RESOURCES.resolve("pom_generation_nameless.xml");
+
+    @Benchmark
+    public String getProjectNameFromPom() throws IOException {
+        return ShortcutHelper.getProjectNameFromPom(pom);
+    }
+
+    @Benchmark
+    public String getProjectNameFromPom_Nameless() throws IOException {
+        return ShortcutHelper.getProjectNameFromPom(namelessPom);
+    }
+
+    @Benchmark
+    public PomInfo readPomInfo() throws IOException {
+        return PomReader.readPomInfo(pom);
+    }
+
+}
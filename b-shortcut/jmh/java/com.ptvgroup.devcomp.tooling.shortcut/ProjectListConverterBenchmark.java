@@ -0,0 +1,37 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks converting the --projectNames option.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProjectListConverterBenchmark {
+
+    private final ProjectListConverter converter = new ProjectListConverter();
+
+    private String projects;
+
+    @Setup
+    public void setUp() throws IOException {
+        projects = String.join(",", BenchmarkFixtures.getProjectNames());
+    }
+
+    @Benchmark
+    public List<String> convert() {
+        return converter.convert(projects);
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.kit.ipd.sdq.kampws.client.StringArray;
+
+/**
+ * Benchmarks unmarshalling a response of the web service listing all projects
+ * of the test configuration, as JAX-WS does for every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StringArrayBenchmark {
+
+    private JAXBContext context;
+    private String response;
+
+    @Setup
+    public void setUp() throws IOException, JAXBException {
+        context = JAXBContext.newInstance(StringArray.class);
+        StringBuilder xml = new StringBuilder("<return>");
+        for (String projectName : BenchmarkFixtures.getProjectNames()) {
+            xml.append("<item>").append(projectName).append("</item>");
+        }
+        response = xml.append("</return>").toString();
+    }
+
+    @Benchmark
+    public List<String> unmarshal() throws JAXBException {
+        Unmarshaller unmarshaller = context.createUnmarshaller();
+        return unmarshaller.unmarshal(new StreamSource(new StringReader(response)), StringArray.class).getValue()
+            .getItem();
+    }
+
+}
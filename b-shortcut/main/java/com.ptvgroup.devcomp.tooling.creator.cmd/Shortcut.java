@@ -2,17 +2,44 @@ package com.ptvgroup.devcomp.tooling.creator.cmd;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.xml.ws.WebServiceException;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.Parameters;
+import com.ptvgroup.devcomp.tooling.shortcut.BuildCache;
+import com.ptvgroup.devcomp.tooling.shortcut.BuildDurations;
+import com.ptvgroup.devcomp.tooling.shortcut.BuildMonitor;
+import com.ptvgroup.devcomp.tooling.shortcut.BuildResult;
+import com.ptvgroup.devcomp.tooling.shortcut.CommitImpactCache;
+import com.ptvgroup.devcomp.tooling.shortcut.FileWatcher;
+import com.ptvgroup.devcomp.tooling.shortcut.Git;
+import com.ptvgroup.devcomp.tooling.shortcut.ImpactSet;
+import com.ptvgroup.devcomp.tooling.shortcut.MavenProcess;
+import com.ptvgroup.devcomp.tooling.shortcut.Metrics;
+import com.ptvgroup.devcomp.tooling.shortcut.ModuleGraph;
+import com.ptvgroup.devcomp.tooling.shortcut.ModuleIndex;
 import com.ptvgroup.devcomp.tooling.shortcut.ProjectListConverter;
+import com.ptvgroup.devcomp.tooling.shortcut.ReactorSelection;
+import com.ptvgroup.devcomp.tooling.shortcut.ScenarioClassifier;
+import com.ptvgroup.devcomp.tooling.shortcut.Shard;
+import com.ptvgroup.devcomp.tooling.shortcut.ShortcutDaemon;
 import com.ptvgroup.devcomp.tooling.shortcut.ShortcutHelper;
+import com.ptvgroup.devcomp.tooling.shortcut.TestSelector;
 import com.ptvgroup.tooling.poms.Misc;
 
 /**
@@ -23,6 +50,9 @@ import com.ptvgroup.tooling.poms.Misc;
 @Parameters(commandDescription = "Use build shortcuts to build only what is affected by a change scenario.")
 public class Shortcut extends CommandBase implements Subcommand {
 
+    /** How long no file may change before --watch starts a build, in milliseconds. */
+    private static final long WATCH_QUIET_PERIOD = 300;
+
     private JCommander self;
 
     @Parameter
@@ -34,6 +64,117 @@ public class Shortcut extends CommandBase implements Subcommand {
             + " instead of the project shortcut was executed in.")
     public List<String> projectNames = null;
 
+    @Parameter(names = { "--diff" },
+        description = "If provided, will treat the projects containing files changed in the specified revision"
+            + " range as modified, e.g. \"HEAD\" for uncommitted changes or \"origin/master...HEAD\".")
+    public String diff = null;
+
+    @Parameter(names = { "--commits" },
+        description = "If provided, will build the projects affected by any commit in the specified revision range,"
+            + " e.g. \"origin/master..HEAD\" for the commits of a pull request. The projects affected by each"
+            + " commit are stored in the checkout, so only commits added to the range since are analysed.")
+    public String commits = null;
+
+    @Parameter(names = { "--clearCache" },
+        description = "Discards the cached responses of the web service before executing.")
+    public boolean clearCache = false;
+
+    @Parameter(names = { "--syncModel" },
+        description = "Downloads the change impact model from the web service, so that shortcut can be"
+            + " executed with --offline afterwards.")
+    public boolean syncModel = false;
+
+    @Parameter(names = { "--offline" },
+        description = "Resolves dependencies with the change impact model downloaded by --syncModel"
+            + " instead of the web service. Generic change scenarios like \"shortcut_skip_systemTests\" cannot"
+            + " be combined with others, as only the web service knows how they modify them.")
+    public boolean offline = false;
+
+    @Parameter(names = { "--parallel" },
+        description = "Builds up to the specified number of affected modules at once, each as soon as the"
+            + " modules it depends on are built. All of them are built by one Maven execution (\"-T\"), so"
+            + " affected upstream modules are taken from the build rather than the local repository. The"
+            + " modules heading the longest chains of dependent modules, by the durations of previous"
+            + " builds, are started first, and the outcome and duration of each module are reported.")
+    public int parallel = 0;
+
+    @Parameter(names = { "--daemon" },
+        description = "Keeps running and executes the shortcut commands issued in this checkout, so that"
+            + " the web service connection and the module index stay warm between invocations.")
+    public boolean daemon = false;
+
+    @Parameter(names = { "--skipUnchanged" },
+        description = "Leaves out the affected modules whose files, upstream modules and Maven options did"
+            + " not change since they were last built successfully with this option.")
+    public boolean skipUnchanged = false;
+
+    @Parameter(names = { "--nonInteractive" },
+        description = "Never asks for a change scenario. Unless the classification rules select a narrower"
+            + " one, the default scenario of a project is taken.")
+    public boolean nonInteractive = false;
+
+    @Parameter(names = { "--metrics" },
+        description = "Writes the time taken by each phase and by each web service call to the specified file:"
+            + " in the Prometheus text format if its name ends with \".prom\", otherwise appended as JSON lines.")
+    public String metricsFile = null;
+
+    @Parameter(names = { "--noDaemon" },
+        description = "Executes the command in this process even if a shortcut daemon is running.")
+    public boolean noDaemon = false;
+
+    @Parameter(names = { "--selectTests" },
+        description = "Runs only the tests of the affected modules that depend on the Java sources changed in"
+            + " the revision range given by --diff or --commits, or in the uncommitted changes. All tests run if the"
+            + " compiled classes are outdated, other files changed or Surefire is configured to run other tests.")
+    public boolean selectTests = false;
+
+    @Parameter(names = { "--shard" }, converter = Shard.Converter.class,
+        description = "Builds only the i-th of n parts of the affected modules, given as \"i/n\", so that n"
+            + " machines can share a build. The parts are balanced by the durations of previous builds in the"
+            + " checkout; modules depending on each other stay in the same part unless that unbalances the parts."
+            + " Modules of other parts are taken from the repository.")
+    public Shard shard = null;
+
+    @Parameter(names = { "--progress" },
+        description = "Reports after each module how many modules are built and how long the rest of the build"
+            + " is expected to take.")
+    public boolean progress = false;
+
+    @Parameter(names = { "--failFast" },
+        description = "Aborts the build as soon as one of the changed projects fails to compile or test,"
+            + " instead of building the modules depending on it first.")
+    public boolean failFast = false;
+
+    @Parameter(names = { "--watch" },
+        description = "Keeps running and builds the modules affected by every change to the files of the"
+            + " checkout, leaving out the modules whose inputs did not change since they were last built.")
+    public boolean watch = false;
+
+    @Parameter(names = { "--dryRun" },
+        description = "Prints the command building the affected modules instead of executing it, without"
+            + " writing any files for the build.")
+    public boolean dryRun = false;
+
+    /** The directory the command was issued in. */
+    private Path workingDirectory = Paths.get(".");
+
+    /** Whether the command is executed by a daemon on behalf of another process. */
+    private boolean served = false;
+
+    private final Metrics metrics = new Metrics();
+
+    /** Answers the queries; a daemon creates one for each command sharing its client. */
+    private ShortcutHelper helper = new ShortcutHelper();
+
+    /** The reactor POM selecting the modules of the running build, or null. */
+    private ReactorSelection reactor;
+
+    /** Whether the user was asked for a change scenario since this was reset. */
+    private boolean askedForScenario;
+
+    /** The options selecting the tests to run, added to each Maven execution. */
+    private List<String> testOptions = new ArrayList<>();
+
     public static Shortcut create(JCommander jc) {
         Shortcut sc = new Shortcut();
         jc.addCommand(sc.getDefaultName(), sc, sc.getAliases());
@@ -42,6 +183,22 @@ public class Shortcut extends CommandBase implements Subcommand {
         return sc;
     }
 
+    /**
+     * Creates the command executed in the specified directory, answering the
+     * queries with the specified helper.
+     * 
+     * @param jc the parser to add the command to
+     * @param workingDirectory the directory the command is issued in
+     * @param helper the helper, which may be shared with other commands
+     * @return the command
+     */
+    static Shortcut create(JCommander jc, Path workingDirectory, ShortcutHelper helper) {
+        Shortcut sc = create(jc);
+        sc.workingDirectory = workingDirectory;
+        sc.helper = helper;
+        return sc;
+    }
+
     @Override
     public String getDefaultName() {
         return "shortcut";
@@ -58,10 +215,44 @@ public class Shortcut extends CommandBase implements Subcommand {
             self.usage();
             return 0;
         }
+        if (daemon) {
+            return serve();
+        }
+        if (watch) {
+            return watchChanges();
+        }
+        if (!noDaemon && !served) {
+            Integer forwarded = forwardToDaemon();
+            if (forwarded != null) {
+                return forwarded;
+            }
+        }
         long startTime = System.currentTimeMillis();
 
         int succeeded = doExecute();
 
+        metrics.finish(succeeded);
+        try {
+            helper.saveEndpointHealth();
+        } catch (IOException e) {
+            if (verbose) {
+                System.out.println("\nCould not store the health of the web service endpoints: " + e.getMessage());
+            }
+        }
+        if (metricsFile != null) {
+            try {
+                metrics.write(workingDirectory.resolve(metricsFile));
+            } catch (IOException e) {
+                System.err.println("Could not write metrics to " + metricsFile + ": " + e.getMessage());
+            }
+        }
+        if (verbose) {
+            System.out.println("\nTime per phase:");
+            for (Map.Entry<String, Double> phase : metrics.getPhaseDurations().entrySet()) {
+                System.out.println(String.format("    %-20s %8.0fms", phase.getKey(), phase.getValue()));
+            }
+        }
+
         if (succeeded != 0) {
             System.err.println("\nFailed due to errors!");
             System.err.println("Note: Remember to call 'b' instead of 'mvn' to retry");
@@ -71,28 +262,324 @@ public class Shortcut extends CommandBase implements Subcommand {
         return succeeded;
     }
 
-    private int doExecute() {
+    /**
+     * Executes the commands issued in this checkout until the process is
+     * terminated.
+     * 
+     * @return 1 if the daemon could not be started
+     */
+    private int serve() {
+        Path root = Misc.getCheckoutRoot(workingDirectory);
+        if (root == null) {
+            System.err.println("Could not find checkout root from \'" + workingDirectory.toAbsolutePath()
+                + "\'. The daemon has to be started in a checkout.");
+            return 1;
+        }
+        try {
+            new ShortcutDaemon(root.toAbsolutePath().normalize()).serve((directory, arguments) -> {
+                JCommander jc = new JCommander();
+                // only the web service client is shared between commands
+                Shortcut sc = Shortcut.create(jc, directory, helper.newHelper());
+                sc.served = true;
+                List<String> args = new ArrayList<>();
+                args.add(sc.getDefaultName());
+                args.addAll(arguments);
+                try {
+                    jc.parse(args.toArray(new String[args.size()]));
+                } catch (ParameterException e) {
+                    System.err.println(e.getMessage());
+                    return 1;
+                }
+                return sc.execute();
+            });
+        } catch (IOException e) {
+            System.err.println("Could not start the daemon: " + e.getMessage());
+        }
+        return 1;
+    }
 
+    /**
+     * Builds the modules affected by the changes to the files of the checkout
+     * whenever files change, until the process is terminated. The change
+     * scenarios are selected again for every change, as the changes decide
+     * which scenario applies; only the projects affected by every combination
+     * of scenarios are determined once. A scenario the user selected for a
+     * project is kept for the session until the classifier decides on one, and
+     * without a console the default scenarios are taken. If changes were lost,
+     * the files changed since the commit checked out at the previous change
+     * are taken, or all modules if that commit is unknown. Changes made while
+     * building, e.g. files generated by the build, do not start another build.
+     * 
+     * @return 1 if the checkout cannot be watched
+     * @throws InterruptedException if interrupted while waiting for changes
+     */
+    private int watchChanges() throws InterruptedException {
+        helper.setMetrics(metrics);
         if (!checkPreconditions()) {
             return 1;
         }
+        Path root = Misc.getCheckoutRoot(workingDirectory).toAbsolutePath().normalize();
+        if (!setUp(root)) {
+            return 1;
+        }
+        // only modules whose inputs changed since they were built are built again
+        skipUnchanged = true;
+        // nobody could answer on every change
+        if (System.console() == null) {
+            nonInteractive = true;
+        }
+
+        Map<List<String>, ImpactSet> impactByScenarios = new HashMap<>();
+        Map<String, String> selectedScenarios = new HashMap<>();
+        Git git = new Git(root);
+        try (FileWatcher watcher = new FileWatcher(root)) {
+            ModuleIndex index = helper.getModuleIndex(root);
+            // the commit checked out when the previous changes were noticed
+            String head = git.getRevision();
+            System.out.println("\nWatching " + root + " for changes. Press Ctrl+C to stop.");
+            while (true) {
+                Set<String> changedFiles = watcher.awaitChanges(WATCH_QUIET_PERIOD);
+                String range = "HEAD";
+                if (changedFiles == null && head != null) {
+                    // too many changes to tell them apart, e.g. after switching branches
+                    try {
+                        changedFiles = new TreeSet<>(git.getChangedFiles(head));
+                        range = head;
+                    } catch (IOException e) {
+                        System.err.println("Could not determine the changes since " + head + ": "
+                            + e.getMessage());
+                    }
+                }
+                head = git.getRevision();
+
+                List<String> changedProjects;
+                if (changedFiles == null) {
+                    System.out.println("\nCould not tell the changes apart; building all outdated modules.");
+                    index = helper.rescanModuleIndex(root);
+                    changedProjects = new ArrayList<>(index.getProjectNames());
+                } else {
+                    for (String file : changedFiles) {
+                        if (file.endsWith(ModuleIndex.POM_FILE)) {
+                            index = helper.rescanModuleIndex(root);
+                            break;
+                        }
+                    }
+                    changedProjects = new ArrayList<>(index.getProjectNames(changedFiles));
+                }
+                if (changedProjects.isEmpty()) {
+                    continue;
+                }
+                if (changedFiles != null) {
+                    System.out.println("\nChanged projects: " + String.join(", ", changedProjects));
+                }
+
+                int result;
+                try {
+                    // all modules include every affected one
+                    List<String> projectsToBuild = changedProjects;
+                    if (changedFiles != null) {
+                        Map<String, List<String>> availableScenarios = helper.getChangeScenarios(changedProjects);
+                        ScenarioClassifier classifier = createClassifier(root, range);
+                        Set<String> scenarios = new TreeSet<>();
+                        for (String projectName : changedProjects) {
+                            String scenario = selectWatchedChangeScenario(classifier, projectName,
+                                availableScenarios.get(projectName), selectedScenarios);
+                            if (scenario == null) {
+                                throw new IllegalStateException("No change scenario selected for " + projectName
+                                    + ".");
+                            }
+                            scenarios.add(scenario);
+                        }
+                        List<String> changeScenarios = new ArrayList<>(scenarios);
+                        ImpactSet affected = impactByScenarios.get(changeScenarios);
+                        if (affected == null) {
+                            affected = helper.getImpactSet(changeScenarios);
+                            impactByScenarios.put(changeScenarios, affected);
+                        }
+                        projectsToBuild = affected.toList();
+                    }
+                    result = buildProjects(projectsToBuild, changedProjects);
+                } catch (Exception e) {
+                    System.err.println(e.getMessage());
+                    result = 1;
+                }
+                watcher.discardChanges(WATCH_QUIET_PERIOD);
+                System.out.println(result == 0 ? "\nBuild succeeded; watching for changes."
+                    : "\nBuild failed; watching for changes.");
+            }
+        } catch (IOException e) {
+            System.err.println("Could not watch " + root + " for changes: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Connects to the web service or loads the change impact model, as
+     * requested by the options.
+     * 
+     * @param root the root directory of the checkout
+     * @return whether shortcut is ready to determine dependencies
+     */
+    private boolean setUp(Path root) {
+        try {
+            if (syncModel) {
+                // from the web service itself, as the cached responses may
+                // come from an older model
+                System.out.println("\nDownloading the change impact model...");
+                try {
+                    helper.syncImpactModel(root);
+                } catch (WebServiceException e) {
+                    reportServiceUnavailable(e.getMessage());
+                    return false;
+                }
+            } else if (offline && !helper.useImpactModel(root)) {
+                System.err.println("No change impact model found in " + root
+                    + ". Execute shortcut with --syncModel first.");
+                return false;
+            }
+            if (helper.webServiceAvailable()) {
+                // keyed by the model synced above, if any
+                helper.useCache(root, clearCache);
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lets the daemon of the checkout execute this command, if one is running.
+     * 
+     * @return the exit code of the command, or null if no daemon is running
+     */
+    private Integer forwardToDaemon() {
+        Path root = Misc.getCheckoutRoot(workingDirectory);
+        if (root == null) {
+            return null;
+        }
+        try {
+            return ShortcutDaemon.forward(root.toAbsolutePath().normalize(), workingDirectory, getArguments());
+        } catch (IOException e) {
+            System.err.println("Lost connection to the shortcut daemon: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Returns the arguments reproducing the options of this command. Options
+     * left at their default are left out, so that the command executed by a
+     * daemon is parsed from the same options the user gave.
+     * 
+     * @return the arguments
+     * @throws IllegalStateException if an option cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    List<String> getArguments() {
+        List<String> arguments = new ArrayList<>();
+        Shortcut defaults = new Shortcut();
+        for (Class<?> type = getClass(); type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                Parameter parameter = field.getAnnotation(Parameter.class);
+                if (parameter == null || parameter.names().length == 0) {
+                    continue;
+                }
+                Object value;
+                Object defaultValue;
+                try {
+                    field.setAccessible(true);
+                    value = field.get(this);
+                    defaultValue = field.get(defaults);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (value == null || Objects.equals(value, defaultValue)) {
+                    continue;
+                }
+                arguments.add(parameter.names()[0]);
+                if (value instanceof List) {
+                    arguments.add(String.join(",", (List<String>) value));
+                } else if (!(value instanceof Boolean)) {
+                    arguments.add(value.toString());
+                }
+            }
+        }
+        arguments.addAll(self.getUnknownOptions());
+        arguments.addAll(parameters);
+        return arguments;
+    }
+
+    /**
+     * Determines and builds the affected projects in this process.
+     * 
+     * @return the exit code
+     */
+    int doExecute() {
+
+        helper.setMetrics(metrics);
+        metrics.startPhase("preconditions");
+        if (!checkPreconditions()) {
+            return 1;
+        }
+
+        metrics.startPhase("setup");
+        Path root = Misc.getCheckoutRoot(workingDirectory).toAbsolutePath().normalize();
+        if (!setUp(root)) {
+            return 1;
+        }
+
+        if (commits != null) {
+            if (projectNames != null || diff != null) {
+                System.err.println("--commits cannot be combined with --projectNames or --diff.");
+                return 1;
+            }
+            return buildCommits(root);
+        }
 
         // determine which projects were modified
+        metrics.startPhase("projectNames");
         List<String> changedProjects = projectNames;
         if (changedProjects == null) {
             try {
-                changedProjects = new ArrayList<String>(Arrays.asList(getProjectNameFromPom()));
+                if (diff != null) {
+                    changedProjects = getProjectNamesFromDiff(root);
+                } else {
+                    changedProjects = new ArrayList<String>(Arrays.asList(getProjectNameFromPom(root)));
+                }
             } catch (Exception e) {
                 System.err.println(e.getMessage());
                 return 1;
             }
+            if (changedProjects.isEmpty()) {
+                System.out.println("\nNo project contains changes in " + diff + "; nothing to build.");
+                return 0;
+            }
         }
 
         // ... and in what way (change scenarios)
         List<String> changeScenarios = new ArrayList<>();
         try {
+            // fetch all options first, so the user is only asked once they're known
+            metrics.startPhase("changeScenarios");
+            Map<String, List<String>> availableScenarios = helper.getChangeScenarios(changedProjects);
+            // resolve every option in the background while the user is choosing
+            List<String> offeredScenarios = new ArrayList<>();
+            for (List<String> scenarios : availableScenarios.values()) {
+                offeredScenarios.addAll(scenarios);
+            }
+            helper.prefetch(offeredScenarios, root);
+            // includes the time the user takes to answer
+            metrics.startPhase("scenarioSelection");
+            ScenarioClassifier classifier = null;
+            for (List<String> scenarios : availableScenarios.values()) {
+                if (scenarios.size() > 1) {
+                    classifier = createClassifier(root);
+                    break;
+                }
+            }
             for (String projectName : changedProjects) {
-                changeScenarios.add(ShortcutHelper.getChangeScenarioForProject(projectName));
+                changeScenarios.add(selectChangeScenario(classifier, projectName,
+                    availableScenarios.get(projectName)));
             }
         } catch (Exception e) {
             System.err.println(e.getMessage());
@@ -105,16 +592,23 @@ public class Shortcut extends CommandBase implements Subcommand {
         }
 
         // determine which projects depend on change scenarios
-        List<String> projectsToBuild = ShortcutHelper.getChangeSpecificDependencies(changeScenarios);
+        metrics.startPhase("dependencies");
+        ImpactSet projectsToBuild;
+        try {
+            projectsToBuild = helper.getImpactSet(changeScenarios);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
         if (verbose) {
             System.out.println("\nFound the following dependencies:");
-            prettyPrintList(projectsToBuild);
+            prettyPrintList(projectsToBuild.toList());
         }
 
         // build the dependent projects
         int result;
         try {
-            result = buildProjects(projectsToBuild);
+            result = buildProjects(projectsToBuild.toList(), changedProjects);
         } catch (Exception e) {
             System.err.println(e.getMessage());
             return 1;
@@ -124,25 +618,244 @@ public class Shortcut extends CommandBase implements Subcommand {
     }
 
     /**
-     * Checks whether the web service is online and the current working
-     * directory is a subdirectory of a valid checkout.
+     * Builds the projects affected by the commits in the revision range given
+     * by --commits. The impact of a commit is only determined if it was not
+     * stored in the checkout before.
+     * 
+     * @param root the root directory of the checkout
+     * @return the exit code
+     */
+    private int buildCommits(Path root) {
+        metrics.startPhase("commits");
+        Set<String> changedProjects = new LinkedHashSet<>();
+        Set<String> projectsToBuild = new LinkedHashSet<>();
+        try {
+            Git git = new Git(root);
+            List<String> range = git.getCommits(commits);
+            ModuleIndex index = helper.getModuleIndex(root);
+            CommitImpactCache cache = CommitImpactCache.load(root, index, offline);
+            if (clearCache) {
+                cache.clear();
+            }
+            Map<String, ScenarioClassifier.Rule> rules = null;
+            int analysed = 0;
+            for (String commit : range) {
+                CommitImpactCache.Entry impact = cache.get(commit);
+                if (impact == null) {
+                    if (rules == null) {
+                        rules = ScenarioClassifier.loadRules(root);
+                    }
+                    impact = analyseCommit(git, index, rules, commit, cache);
+                    analysed++;
+                }
+                changedProjects.addAll(impact.getChangedProjects());
+                projectsToBuild.addAll(impact.getAffectedProjects());
+            }
+            try {
+                cache.save();
+            } catch (IOException e) {
+                System.err.println("Could not store the impact of the commits: " + e.getMessage());
+            }
+            System.out.println("\n" + range.size() + " commits in " + commits + " change " + changedProjects.size()
+                + " projects; " + analysed + " of them were analysed, the others were known.");
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+        if (projectsToBuild.isEmpty()) {
+            System.out.println("\nNo commit in " + commits + " changes a project; nothing to build.");
+            return 0;
+        }
+        if (verbose) {
+            System.out.println("\nFound the following dependencies:");
+            prettyPrintList(new ArrayList<>(projectsToBuild));
+        }
+
+        try {
+            return buildProjects(new ArrayList<>(projectsToBuild), new ArrayList<>(changedProjects));
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Determines the projects affected by a commit and stores them. The change
+     * scenarios of the projects it changes are selected by its changes; if the
+     * user had to select one, the impact is not stored, as the user may answer
+     * differently next time.
+     * 
+     * @param git the working tree
+     * @param index the modules of the checkout
+     * @param rules the classification rules of the checkout
+     * @param commit the hash of the commit
+     * @param cache the impact of the commits analysed before
+     * @return the impact of the commit
+     * @throws IOException if git fails
+     */
+    private CommitImpactCache.Entry analyseCommit(Git git, ModuleIndex index,
+        Map<String, ScenarioClassifier.Rule> rules, String commit, CommitImpactCache cache) throws IOException {
+        // a root commit is compared with the empty tree
+        Map<String, List<String>> changes = git.getDiff(git.getParent(commit) + ".." + commit);
+        List<String> changedProjects = new ArrayList<>(index.getProjectNames(changes.keySet()));
+        List<String> changeScenarios = new ArrayList<>();
+        List<String> affectedProjects = new ArrayList<>();
+        if (!changedProjects.isEmpty()) {
+            System.out.println("\nAnalysing commit " + commit + "...");
+            Map<String, List<String>> availableScenarios = helper.getChangeScenarios(changedProjects);
+            ScenarioClassifier classifier = new ScenarioClassifier(rules, index, changes,
+                helper::getChangeSpecificDependencies);
+            askedForScenario = false;
+            for (String projectName : changedProjects) {
+                changeScenarios.add(selectChangeScenario(classifier, projectName,
+                    availableScenarios.get(projectName)));
+            }
+            affectedProjects = helper.getImpactSet(changeScenarios).toList();
+            if (askedForScenario) {
+                return new CommitImpactCache.Entry(changedProjects, changeScenarios, affectedProjects);
+            }
+        }
+        return cache.put(commit, changedProjects, changeScenarios, affectedProjects);
+    }
+
+    /**
+     * Creates the classifier selecting change scenarios from the changes in
+     * the revision range given by --diff, or from the uncommitted changes.
+     * 
+     * @param root the root directory of the checkout
+     * @return the classifier, or null if the changes cannot be determined
+     * @throws IOException if the classification rules cannot be read
+     */
+    private ScenarioClassifier createClassifier(Path root) throws IOException {
+        return createClassifier(root, diff != null ? diff : "HEAD");
+    }
+
+    /**
+     * Creates the classifier selecting change scenarios from the changes in
+     * the specified revision range.
+     * 
+     * @param root the root directory of the checkout
+     * @param range a revision range, or a revision to compare the working tree
+     *            with
+     * @return the classifier, or null if the changes cannot be determined
+     * @throws IOException if the classification rules cannot be read
+     */
+    private ScenarioClassifier createClassifier(Path root, String range) throws IOException {
+        Map<String, ScenarioClassifier.Rule> rules = ScenarioClassifier.loadRules(root);
+        Map<String, List<String>> changes;
+        ModuleIndex index;
+        try {
+            changes = new Git(root).getDiff(range);
+            index = helper.getModuleIndex(root);
+        } catch (IOException e) {
+            if (verbose) {
+                System.out.println("\nCannot classify the changes: " + e.getMessage());
+            }
+            return null;
+        }
+        return new ScenarioClassifier(rules, index, changes, helper::getChangeSpecificDependencies);
+    }
+
+    /**
+     * Selects the change scenario of a project. Unless the classifier selects
+     * one, the user is asked, or with --nonInteractive the default scenario
+     * is taken.
+     * 
+     * @param classifier the classifier, or null
+     * @param projectName the name of the project
+     * @param changeScenarios the scenarios available for the project
+     * @return the selected change scenario
+     * @throws IllegalStateException if no scenario can be selected
+     *             non-interactively
+     */
+    private String selectChangeScenario(ScenarioClassifier classifier, String projectName,
+        List<String> changeScenarios) {
+        String verdict = classifier == null || changeScenarios.size() <= 1 ? null
+            : classifier.classify(projectName, changeScenarios);
+        return selectChangeScenario(projectName, changeScenarios, verdict);
+    }
+
+    /**
+     * Selects the change scenario of a project while watching the checkout.
+     * The scenario selected by the user is remembered, and only asked for
+     * again after the classifier selected another one in between.
+     * 
+     * @param classifier the classifier, or null
+     * @param projectName the name of the project
+     * @param changeScenarios the scenarios available for the project
+     * @param selected the scenarios selected by the user so far, by project
+     *            name
+     * @return the selected change scenario
+     * @throws IllegalStateException if no scenario can be selected
+     *             non-interactively
+     */
+    private String selectWatchedChangeScenario(ScenarioClassifier classifier, String projectName,
+        List<String> changeScenarios, Map<String, String> selected) {
+        String verdict = classifier == null || changeScenarios.size() <= 1 ? null
+            : classifier.classify(projectName, changeScenarios);
+        if (verdict != null) {
+            selected.remove(projectName);
+            return selectChangeScenario(projectName, changeScenarios, verdict);
+        }
+        String scenario = selected.get(projectName);
+        if (scenario != null && changeScenarios.contains(scenario)) {
+            System.out.println("\nSelected change scenario for " + projectName + " as before: " + scenario);
+            return scenario;
+        }
+        scenario = selectChangeScenario(projectName, changeScenarios, null);
+        if (scenario != null && changeScenarios.size() > 1) {
+            selected.put(projectName, scenario);
+        }
+        return scenario;
+    }
+
+    /**
+     * Selects the change scenario of a project, unless the classifier already
+     * selected one.
+     * 
+     * @param projectName the name of the project
+     * @param changeScenarios the scenarios available for the project
+     * @param verdict the scenario selected by the classifier, or null
+     * @return the selected change scenario
+     * @throws IllegalStateException if no scenario can be selected
+     *             non-interactively
+     */
+    private String selectChangeScenario(String projectName, List<String> changeScenarios, String verdict) {
+        if (changeScenarios.size() > 1) {
+            String scenario = verdict;
+            if (scenario == null && nonInteractive) {
+                scenario = ScenarioClassifier.getDefaultScenario(changeScenarios);
+                if (scenario == null) {
+                    throw new IllegalStateException("Cannot select a change scenario for " + projectName
+                        + " non-interactively; it has no default scenario.");
+                }
+            }
+            if (scenario != null) {
+                System.out.println("\nSelected change scenario for " + projectName + ": " + scenario);
+                return scenario;
+            }
+            askedForScenario = true;
+        }
+        return ShortcutHelper.getChangeScenarioForProject(projectName, changeScenarios);
+    }
+
+    /**
+     * Checks whether the web service is configured (unless executing offline
+     * with a synced model) and the current working directory is a subdirectory
+     * of a valid checkout. The web service is not contacted, as the cached
+     * responses may answer all queries.
      * 
      * @return whether the preconditions are met
      */
     private boolean checkPreconditions() {
-        if (!ShortcutHelper.webServiceAvailable()) {
-            System.err.println(
-                "Web service not found; cannot execute shortcut command!");
-            System.out.println("Hint: here are two possible causes that may help you troubleshoot:\n" +
-                "   1. The path specified in the system variable \"B_SHORTCUT_WSDL\" may be invalid.\n" +
-                "   2. The web service may be offline");
-
+        if ((!offline || syncModel) && !helper.webServiceAvailable()) {
+            reportServiceUnavailable("Web service not found; cannot execute shortcut command!");
             return false;
         }
 
-        Path root = Misc.getCheckoutRoot(Paths.get("."));
+        Path root = Misc.getCheckoutRoot(workingDirectory);
         if (root == null) {
-            System.err.println("Could not find checkout root from \'" + Paths.get(".").toAbsolutePath()
+            System.err.println("Could not find checkout root from \'" + workingDirectory.toAbsolutePath()
                 + "\'. This command does not work with a partial checkout.");
             return false;
         }
@@ -151,37 +864,78 @@ public class Shortcut extends CommandBase implements Subcommand {
     }
 
     /**
-     * Determines the name of a project from its POM file.
+     * Reports that the web service cannot be used, with hints on the causes.
      * 
+     * @param message the error message
+     */
+    private static void reportServiceUnavailable(String message) {
+        System.err.println(message);
+        System.out.println("Hint: here are two possible causes that may help you troubleshoot:\n" +
+            "   1. The path specified in the system variable \"B_SHORTCUT_WSDL\" may be invalid.\n" +
+            "   2. The web service may be offline");
+    }
+
+    /**
+     * Determines the name of a project from its POM file. The name is taken
+     * from the module index of the checkout unless the POM file changed.
+     * 
+     * @param root the root directory of the checkout
      * @return The name of the project or, if there is no name defined, its
      *         artifactId (default Maven behaviour).
      * @throws IOException if POM file cannot be properly parsed.
      * @throws FileNotFoundException if the POM file is not found.
      */
-    private String getProjectNameFromPom() throws IOException, FileNotFoundException {
-        Path cwd = Paths.get(".").toAbsolutePath();
+    private String getProjectNameFromPom(Path root) throws IOException, FileNotFoundException {
+        Path cwd = workingDirectory.toAbsolutePath();
         Path pom = Misc.getClosestPom(cwd);
         if (pom == null) {
             throw new FileNotFoundException("\nCould not find checkout root from \"" + cwd + "\"."
                 + "\nNote: Please execute the shortcut command only in (sub)directories of a checkout root.");
         }
-        pom = pom.normalize();
+        pom = pom.toAbsolutePath().normalize();
 
         System.out.println("\nDetermining project name from POM file in directory...");
-        String projectName = ShortcutHelper.getProjectNameFromPom(pom);
+        String projectName;
+        if (pom.startsWith(root)) {
+            ModuleIndex index = ModuleIndex.load(root);
+            projectName = index.getProjectName(ModuleIndex.toRelativePath(root, pom.getParent()));
+            index.save();
+        } else {
+            projectName = ShortcutHelper.getProjectNameFromPom(pom);
+        }
         System.out.println("Found project name: " + projectName);
 
         return projectName;
     }
 
+    /**
+     * Determines the names of the projects containing files changed in the
+     * revision range given by --diff.
+     * 
+     * @param root the root directory of the checkout
+     * @return The names of the changed projects
+     * @throws IOException if the checkout cannot be scanned or git fails
+     */
+    private List<String> getProjectNamesFromDiff(Path root) throws IOException {
+        System.out.println("\nDetermining changed projects from " + diff + "...");
+        List<String> changedFiles = new Git(root).getChangedFiles(diff);
+        List<String> result = new ArrayList<>(helper.getModuleIndex(root).getProjectNames(changedFiles));
+        if (verbose) {
+            System.out.println("Found " + changedFiles.size() + " changed files in the following projects:");
+            prettyPrintList(result);
+        }
+        return result;
+    }
+
     /**
      * Sorts and prints every entry of the list in a new row with indentation.
      * 
      * @param list List to be pretty-printed
      */
     private static void prettyPrintList(List<String> list) {
-        java.util.Collections.sort(list);
-        for (String project : list) {
+        List<String> sorted = new ArrayList<>(list);
+        java.util.Collections.sort(sorted);
+        for (String project : sorted) {
             System.out.println("    " + project);
         }
     }
@@ -190,55 +944,319 @@ public class Shortcut extends CommandBase implements Subcommand {
      * Builds the projects with the names specified in the list.
      * 
      * @param projectNames List of projects to be built
+     * @param changedProjects the projects changed themselves, aborting the
+     *            build on failure with --failFast
      * @return Return code from Maven
      * @throws IllegalArgumentException If one of the project names is invalid.
      * @throws InterruptedException If the Maven execution was interrupted.
      * @throws IOException If I/O error occurs.
      */
-    private int buildProjects(List<String> projectNames)
+    private int buildProjects(List<String> projectNames, List<String> changedProjects)
         throws IllegalArgumentException, IOException, InterruptedException {
 
-        Path root = Misc.getCheckoutRoot(Paths.get(".")).toAbsolutePath();
+        Path root = Misc.getCheckoutRoot(workingDirectory).toAbsolutePath();
 
         // get the relative project paths which are required by Maven
-        List<String> relativePaths = ShortcutHelper.getRelativeProjectPaths(projectNames, root);
+        metrics.startPhase("paths");
+        List<String> relativePaths = helper.getRelativeProjectPaths(projectNames, root);
+        ModuleGraph graph = null;
+        if (skipUnchanged || shard != null || parallel > 0) {
+            graph = ModuleGraph.read(root, relativePaths);
+        }
+        BuildDurations durations = loadDurations(root);
+
+        // leave out the modules built by the other machines
+        if (shard != null) {
+            metrics.startPhase("shard");
+            List<String> selected = shard.select(graph, durations);
+            double expected = 0;
+            for (String module : selected) {
+                expected += durations.getExpectedDuration(module);
+            }
+            System.out.println("\nShard " + shard + " builds " + selected.size() + " of " + relativePaths.size()
+                + " affected modules, expected to take " + Math.round(expected / 1000) + "s.");
+            if (selected.isEmpty()) {
+                return 0;
+            }
+            relativePaths = selected;
+            graph = graph.subgraph(selected);
+        }
+
+        // leave out the modules whose inputs did not change since they were built
+        BuildCache buildCache = null;
+        Map<String, String> fingerprints = null;
+        if (skipUnchanged) {
+            metrics.startPhase("buildCache");
+            buildCache = BuildCache.load(root);
+            // upstream modules not affected are inputs as well
+            ModuleIndex index = helper.getModuleIndex(root);
+            List<String> checkoutModules = new ArrayList<>();
+            for (String projectName : index.getProjectNames()) {
+                String directory = index.getModuleDirectory(projectName);
+                checkoutModules.add(directory.isEmpty() ? "." : directory);
+            }
+            fingerprints = buildCache.fingerprint(ModuleGraph.read(root, checkoutModules), relativePaths,
+                getBuildOptions());
+            List<String> outdated = new ArrayList<>();
+            for (String module : relativePaths) {
+                if (!buildCache.isUpToDate(module, fingerprints.get(module))) {
+                    outdated.add(module);
+                }
+            }
+            System.out.println("\n" + (relativePaths.size() - outdated.size()) + " of " + relativePaths.size()
+                + " affected modules are up to date.");
+            if (outdated.isEmpty()) {
+                return 0;
+            }
+            relativePaths = outdated;
+            graph = graph.subgraph(outdated);
+        }
+
+        if (selectTests) {
+            metrics.startPhase("testSelection");
+            testOptions = selectTests(relativePaths, root);
+        }
+
+        if (parallel > 0) {
+            // start the long chains of dependent modules first, so that they do not finish last
+            relativePaths = graph.sortByCriticalPath(durations);
+        }
 
+        if (dryRun) {
+            System.out.println("\n" + MavenProcess.getExecutable() + " "
+                + String.join(" ", getMavenOptions(relativePaths, root)));
+            return 0;
+        }
+
+        metrics.startPhase("build");
         // get the options for the Maven command
-        List<String> options = getMavenOptions(relativePaths);
+        List<String> options = getMavenOptions(relativePaths, root);
 
         System.out.println("");
+        int result;
+        try {
+            if (progress || failFast || parallel > 0) {
+                // records the duration of each module
+                BuildMonitor monitor = BuildMonitor.create(root, relativePaths, durations, System.out);
+                if (failFast) {
+                    monitor.setFailFast(helper.getRelativeProjectPaths(changedProjects, root));
+                }
+                result = new MavenProcess(root).execute(options, System.out, monitor);
+                if (parallel > 0) {
+                    printModuleSummary(relativePaths, monitor.getResult(), result);
+                }
+            } else {
+                long start = System.currentTimeMillis();
+                result = executeMvn(options, root);
+                if (result == 0) {
+                    durations.recordTotal(relativePaths, System.currentTimeMillis() - start);
+                }
+            }
+        } finally {
+            deleteReactor();
+        }
+        List<String> built = result == 0 ? relativePaths : new ArrayList<String>();
+        try {
+            durations.save();
+        } catch (IOException e) {
+            System.err.println("Could not store the build durations: " + e.getMessage());
+        }
+
+        if (buildCache != null) {
+            for (String module : built) {
+                buildCache.record(module, fingerprints.get(module));
+            }
+            try {
+                buildCache.save();
+            } catch (IOException e) {
+                System.err.println("Could not store the build cache: " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Prints the outcome and duration of each module of a build.
+     * 
+     * @param modules the modules built
+     * @param buildResult the outcome of the modules recognized in the output
+     * @param exitCode the exit code of Maven
+     */
+    private static void printModuleSummary(List<String> modules, BuildResult buildResult, int exitCode) {
+        Map<String, BuildResult.Status> statuses = buildResult.getStatuses();
+        Map<String, Long> moduleDurations = buildResult.getDurations();
+        System.out.println("\nModule build summary:");
+        for (String module : modules) {
+            BuildResult.Status status = statuses.get(module);
+            if (status == null) {
+                // not recognized in the output
+                status = exitCode == 0 ? BuildResult.Status.SUCCESS : BuildResult.Status.SKIPPED;
+            }
+            Long duration = moduleDurations.get(module);
+            System.out.println("    " + module + " " + status
+                + (duration != null ? " (" + BuildMonitor.formatDuration(duration) + ")" : ""));
+        }
+    }
+
+    /**
+     * Loads the durations of previous builds in the checkout.
+     * 
+     * @param root the root directory of the checkout
+     * @return the durations, or none if they cannot be read
+     */
+    private static BuildDurations loadDurations(Path root) {
+        try {
+            return BuildDurations.load(root);
+        } catch (IOException e) {
+            System.err.println("Could not read the durations of previous builds: " + e.getMessage());
+            return new BuildDurations(root);
+        }
+    }
+
+    /**
+     * Returns the Maven options running only the tests of the specified
+     * modules affected by the changed files.
+     * 
+     * @param relativeProjectPaths the modules to be built
+     * @param root the root directory of the checkout
+     * @return Maven options, empty if all tests have to run
+     */
+    private List<String> selectTests(List<String> relativeProjectPaths, Path root) {
+        List<String> options = new ArrayList<>();
+        for (String option : getBuildOptions()) {
+            if (option.startsWith("-Dtest=") || option.equals("-DskipTests")) {
+                // chosen by the user
+                return options;
+            }
+        }
+        try {
+            ModuleIndex index = helper.getModuleIndex(root);
+            // the changes of the commits, not those made on the other side of the range since
+            String range = commits != null ? Git.fromMergeBase(commits) : diff != null ? diff : "HEAD";
+            List<String> changedFiles = new Git(root).getChangedFiles(range);
+            TestSelector selector = TestSelector.load(root);
+            TestSelector.Selection selection = selector.select(index, relativeProjectPaths, changedFiles);
+            if (!dryRun) {
+                selector.save();
+            }
+            if (selection.isAll()) {
+                System.out.println("\nRunning all tests: " + selection.getReason());
+            } else if (selection.getTests().isEmpty()) {
+                // skipping the tests could hide that they are not run as expected
+                System.out.println("\nNo test depends on the changed classes; running all tests anyway.");
+            } else {
+                System.out.println("\nRunning " + selection.getTests().size() + " affected test classes.");
+                if (verbose) {
+                    prettyPrintList(selection.getTests());
+                }
+                // modules without any of the tests must not fail
+                options.add("-Dtest=" + String.join(",", selection.getTests()));
+                options.add("-Dsurefire.failIfNoSpecifiedTests=false");
+                options.add("-DfailIfNoTests=false");
+            }
+        } catch (IOException e) {
+            System.err.println("Could not select the affected tests, running all tests: " + e.getMessage());
+        }
+        return options;
+    }
+
+    /**
+     * Executes Maven in the root directory of the checkout. When executed by
+     * the daemon, the output of Maven is sent to the client.
+     * 
+     * @param options the options passed to Maven
+     * @param root the root directory of the checkout
+     * @return Return code from Maven
+     * @throws InterruptedException If the Maven execution was interrupted.
+     * @throws IOException If Maven cannot be executed.
+     */
+    private int executeMvn(List<String> options, Path root) throws IOException, InterruptedException {
+        if (served) {
+            return new MavenProcess(root).execute(options, System.out);
+        }
         return Misc.executeMvn(options.stream().toArray(String[]::new), root);
     }
 
     /**
      * Returns the Options to be passed to Maven to build the specified
-     * projects.
+     * projects. Large selections are passed as a generated reactor POM rather
+     * than a project list, if that is shorter.
      * 
      * @param relativeProjectPaths List of projects to be built
+     * @param root the root directory of the checkout
+     * @return Maven options
+     */
+    private List<String> getMavenOptions(List<String> relativeProjectPaths, Path root) {
+        List<String> options = new ArrayList<>();
+        // a parallel build only follows the order of the modules with a reactor POM
+        ReactorSelection selection = parallel > 0 ? ReactorSelection.computeOrdered(root, relativeProjectPaths)
+            : ReactorSelection.compute(root, relativeProjectPaths);
+        // a dry run writes no files
+        if (!dryRun && (parallel > 0 || selection.isWorthwhile())) {
+            try {
+                options.addAll(selection.writeReactor());
+                reactor = selection;
+                if (verbose) {
+                    System.out.println("\nSelected " + relativeProjectPaths.size() + " projects by a reactor of "
+                        + selection.getReactorModules().size() + " modules, excluding "
+                        + selection.getExcludedModules().size() + ".");
+                }
+            } catch (IOException e) {
+                System.err.println("Could not write the reactor POM, listing all projects instead: "
+                    + e.getMessage());
+            }
+        }
+        if (options.isEmpty()) {
+            options.add("-pl");
+            options.add(toMavenProjectParameter(relativeProjectPaths));
+        }
+        if (parallel > 0) {
+            // one reactor, so that upstream modules are never taken from the local repository
+            options.add("-T");
+            options.add(String.valueOf(parallel));
+        }
+        options.addAll(getBuildOptions());
+        options.addAll(testOptions);
+        return options;
+    }
+
+    /**
+     * Deletes the reactor POM of the last build, if one was written.
+     */
+    private void deleteReactor() {
+        if (reactor == null) {
+            return;
+        }
+        try {
+            reactor.deleteReactor();
+        } catch (IOException e) {
+            System.err.println("Could not delete the reactor POM: " + e.getMessage());
+        }
+        reactor = null;
+    }
+
+    /**
+     * Returns the options passed through to Maven, i.e. goals and everything
+     * unknown to shortcut.
+     * 
      * @return Maven options
      */
-    private List<String> getMavenOptions(List<String> relativeProjectPaths) {
+    private List<String> getBuildOptions() {
         List<String> options = new ArrayList<>();
-        options.add("-pl");
-        options.add(toMavenProjectParameter(relativeProjectPaths));
         options.addAll(self.getUnknownOptions());
         options.addAll(parameters);
         return options;
     }
 
     /**
-     * Transforms the list to a valid Maven -pl parameter
+     * Transforms the list to a valid Maven -pl parameter, leaving out
+     * duplicates
      * 
      * @param relativeProjectPaths list of projects
      * @return valid Maven parameter
      */
-    private String toMavenProjectParameter(List<String> relativeProjectPaths) {
-        StringBuilder result = new StringBuilder();
-        result.append(relativeProjectPaths.get(0));
-        for (int i = 1; i < relativeProjectPaths.size(); i++) {
-            result.append("," + relativeProjectPaths.get(i));
-        }
-        return result.toString();
+    static String toMavenProjectParameter(List<String> relativeProjectPaths) {
+        return String.join(",", new LinkedHashSet<>(relativeProjectPaths));
     }
 
 }
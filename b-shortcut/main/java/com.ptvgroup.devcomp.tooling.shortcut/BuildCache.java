@@ -0,0 +1,309 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Remembers the inputs of the last successful build of each module, so that
+ * modules whose inputs did not change since can be left out of a build.
+ * <p>
+ * The fingerprint of a module covers the content of all files of its
+ * directory (except build output, hidden files and nested modules), the
+ * fingerprints of the modules of the checkout it depends on, whether they are
+ * built or not, and the Maven options it was built with. External
+ * dependencies are covered by the versions of them in the local Maven
+ * repository ("B_SHORTCUT_LOCAL_REPOSITORY", by default ".m2/repository" in
+ * the home directory), along with the size and modification time of their
+ * artifacts, so that a new snapshot is noticed as well. The fingerprints are
+ * stored in the file "build-cache" in the cache directory of the checkout.
+ */
+public class BuildCache {
+
+    /** Name of the file in the cache directory storing the fingerprints. */
+    public static final String CACHE_FILE = "build-cache";
+
+    private static final String HEADER = "# shortcut build cache 1";
+
+    private final Path root;
+    private final Path localRepository;
+    private final Map<String, String> fingerprints = new TreeMap<>();
+    private boolean modified = false;
+
+    private BuildCache(Path root, Path localRepository) {
+        this.root = root;
+        this.localRepository = localRepository;
+    }
+
+    /**
+     * Loads the fingerprints stored in the checkout with the specified root
+     * directory.
+     *
+     * @param root the root directory of the checkout
+     * @return the stored fingerprints, or an empty cache if there are none
+     * @throws IOException if the stored fingerprints cannot be read
+     */
+    public static BuildCache load(Path root) throws IOException {
+        return load(root, getLocalRepository());
+    }
+
+    /**
+     * Loads the fingerprints stored in the checkout, taking external
+     * dependencies from the specified local repository.
+     */
+    static BuildCache load(Path root, Path localRepository) throws IOException {
+        BuildCache cache = new BuildCache(root, localRepository);
+        Path file = getCacheFile(root);
+        if (!Files.isRegularFile(file)) {
+            return cache;
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+            // written by another version; everything is built again
+            return cache;
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length == 2) {
+                cache.fingerprints.put(fields[0], fields[1]);
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Stores the fingerprints in the checkout, if any were recorded.
+     *
+     * @throws IOException if the fingerprints cannot be written
+     */
+    public void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<>(fingerprints.size() + 1);
+        lines.add(HEADER);
+        for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+            lines.add(entry.getKey() + "\t" + entry.getValue());
+        }
+
+        Path file = getCacheFile(root);
+        KampWSCache.write(file, lines);
+        modified = false;
+    }
+
+    /**
+     * Computes the fingerprints of the specified modules.
+     *
+     * @param graph all modules of the checkout and their dependencies
+     * @param modules the modules to compute the fingerprints of
+     * @param options the Maven options the modules are built with
+     * @return the fingerprints by module, in the order given
+     * @throws IOException if a module cannot be read
+     */
+    public Map<String, String> fingerprint(ModuleGraph graph, Collection<String> modules, List<String> options)
+        throws IOException {
+        String salt = KampWSCache.hash(String.join("\u0000", options));
+        Map<String, String> result = new LinkedHashMap<>();
+        Map<String, String> external = new HashMap<>();
+        for (String module : modules) {
+            fingerprint(graph, module, salt, result, external, new HashSet<String>());
+        }
+        Map<String, String> ordered = new LinkedHashMap<>();
+        for (String module : modules) {
+            ordered.put(module, result.get(module));
+        }
+        return ordered;
+    }
+
+    private String fingerprint(ModuleGraph graph, String module, String salt, Map<String, String> result,
+        Map<String, String> external, Set<String> visiting) throws IOException {
+        String known = result.get(module);
+        if (known != null) {
+            return known;
+        }
+        if (!visiting.add(module)) {
+            // cyclic dependency
+            return "";
+        }
+
+        List<String> upstream = new ArrayList<>(graph.getDependencies(module));
+        Collections.sort(upstream);
+        StringBuilder inputs = new StringBuilder(salt).append('\n').append(hashDirectory(root.resolve(module)));
+        for (String dependency : upstream) {
+            inputs.append('\n').append(dependency).append('=')
+                .append(fingerprint(graph, dependency, salt, result, external, visiting));
+        }
+        List<String> externalDependencies = new ArrayList<>(graph.getExternalDependencies(module));
+        Collections.sort(externalDependencies);
+        for (String dependency : externalDependencies) {
+            String hash = external.get(dependency);
+            if (hash == null) {
+                hash = hashLocalArtifacts(dependency);
+                external.put(dependency, hash);
+            }
+            inputs.append('\n').append(dependency).append('@').append(hash);
+        }
+        String fingerprint = KampWSCache.hash(inputs.toString());
+        result.put(module, fingerprint);
+        visiting.remove(module);
+        return fingerprint;
+    }
+
+    /**
+     * Returns whether the module was built successfully with the specified
+     * fingerprint.
+     *
+     * @param module the module directory, relative to the checkout root
+     * @param fingerprint the current fingerprint of the module
+     * @return whether the module is up to date
+     */
+    public boolean isUpToDate(String module, String fingerprint) {
+        return fingerprint.equals(fingerprints.get(module));
+    }
+
+    /**
+     * Records a successful build of the module.
+     *
+     * @param module the module directory, relative to the checkout root
+     * @param fingerprint the fingerprint of the module when it was built
+     */
+    public void record(String module, String fingerprint) {
+        if (!fingerprint.equals(fingerprints.put(module, fingerprint))) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Hashes the relative paths and contents of all files of a module
+     * directory, in a stable order.
+     */
+    static String hashDirectory(final Path directory) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(directory)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String name = dir.getFileName().toString();
+                if (name.startsWith(".") || name.equals("target")
+                    || Files.isRegularFile(dir.resolve(ModuleIndex.POM_FILE))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !file.getFileName().toString().startsWith(".")) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        List<String> relativePaths = new ArrayList<>(files.size());
+        for (Path file : files) {
+            relativePaths.add(ModuleIndex.toRelativePath(directory, file));
+        }
+        Collections.sort(relativePaths);
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported by this JVM.", e);
+        }
+        byte[] buffer = new byte[8192];
+        for (String relativePath : relativePaths) {
+            digest.update(relativePath.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            try (InputStream in = Files.newInputStream(directory.resolve(relativePath))) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            digest.update((byte) 0);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Hashes the versions of an external dependency in the local repository,
+     * and the size and modification time of their artifacts.
+     *
+     * @param coordinates "groupId:artifactId" of the dependency
+     * @return the hash, empty if the dependency is not in the local repository
+     */
+    private String hashLocalArtifacts(String coordinates) throws IOException {
+        int separator = coordinates.indexOf(':');
+        if (separator <= 0 || coordinates.indexOf('$') >= 0) {
+            // a group given by an unknown property
+            return "";
+        }
+        Path directory = localRepository;
+        for (String segment : coordinates.substring(0, separator).split("\\.")) {
+            directory = directory.resolve(segment);
+        }
+        directory = directory.resolve(coordinates.substring(separator + 1));
+        if (!Files.isDirectory(directory)) {
+            return "";
+        }
+
+        List<String> artifacts = new ArrayList<>();
+        try (DirectoryStream<Path> versions = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path version : versions) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(version, "*.{jar,pom}")) {
+                    for (Path file : files) {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        artifacts.add(version.getFileName() + "/" + file.getFileName() + "\t" + attributes.size()
+                            + "\t" + attributes.lastModifiedTime().toMillis());
+                    }
+                }
+            }
+        }
+        Collections.sort(artifacts);
+        return KampWSCache.hash(String.join("\n", artifacts));
+    }
+
+    private static Path getLocalRepository() {
+        String configured = System.getenv("B_SHORTCUT_LOCAL_REPOSITORY");
+        if (configured != null && !configured.isEmpty()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".m2", "repository");
+    }
+
+    private static Path getCacheFile(Path root) {
+        return KampWSCache.getCacheDirectory(root).resolve(CACHE_FILE);
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Remembers how long building each module took, so that the expected duration
+ * of a build can be estimated before it starts.
+ * <p>
+ * The duration of a module is a moving average over its builds, weighting the
+ * latest build by 30%. The durations are stored in the file "build-durations"
+ * in the cache directory of the checkout.
+ */
+public class BuildDurations {
+
+    /** Name of the file in the cache directory storing the durations. */
+    public static final String DURATIONS_FILE = "build-durations";
+
+    private static final String HEADER = "# shortcut build durations 1";
+
+    private static final double SMOOTHING = 0.3;
+
+    /** Expected duration of a module if no module was built yet, in milliseconds. */
+    private static final double DEFAULT_DURATION = 10000;
+
+    private final Path root;
+    private final Map<String, Double> durations = new TreeMap<>();
+    private double sum = 0;
+    private boolean modified = false;
+
+    /**
+     * Initialize the durations of a checkout none of whose modules were built
+     * yet.
+     *
+     * @param root the root directory of the checkout
+     */
+    public BuildDurations(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Loads the durations stored in the checkout with the specified root
+     * directory.
+     *
+     * @param root the root directory of the checkout
+     * @return the stored durations, or none if there are none
+     * @throws IOException if the stored durations cannot be read
+     */
+    public static BuildDurations load(Path root) throws IOException {
+        BuildDurations result = new BuildDurations(root);
+        Path file = getDurationsFile(root);
+        if (!Files.isRegularFile(file)) {
+            return result;
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+            // written by another version; durations are recorded again
+            return result;
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length == 2) {
+                try {
+                    result.put(fields[0], Double.parseDouble(fields[1]));
+                } catch (NumberFormatException e) {
+                    // recorded again
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores the durations in the checkout, if any were recorded.
+     *
+     * @throws IOException if the durations cannot be written
+     */
+    public void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<>(durations.size() + 1);
+        lines.add(HEADER);
+        for (Map.Entry<String, Double> entry : durations.entrySet()) {
+            lines.add(entry.getKey() + "\t" + String.format(Locale.ROOT, "%.0f", entry.getValue()));
+        }
+
+        Path file = getDurationsFile(root);
+        KampWSCache.write(file, lines);
+        modified = false;
+    }
+
+    /**
+     * Returns the expected duration of building the specified module. Modules
+     * never built are expected to take the average duration of the modules
+     * built so far.
+     *
+     * @param module the module directory, relative to the checkout root
+     * @return the expected duration in milliseconds
+     */
+    public double getExpectedDuration(String module) {
+        Double duration = durations.get(module);
+        if (duration != null) {
+            return duration;
+        }
+        return durations.isEmpty() ? DEFAULT_DURATION : sum / durations.size();
+    }
+
+    /**
+     * Records how long building a module took.
+     *
+     * @param module the module directory, relative to the checkout root
+     * @param duration the duration in milliseconds
+     */
+    public void record(String module, long duration) {
+        Double previous = durations.get(module);
+        put(module, previous == null ? duration : previous + SMOOTHING * (duration - previous));
+        modified = true;
+    }
+
+    /**
+     * Records how long building a set of modules in a single Maven execution
+     * took. The time is attributed to the modules in proportion to their
+     * expected durations.
+     *
+     * @param modules the module directories, relative to the checkout root
+     * @param duration the duration of the whole build in milliseconds
+     */
+    public void recordTotal(Collection<String> modules, long duration) {
+        Map<String, Double> expected = new TreeMap<>();
+        for (String module : modules) {
+            expected.put(module, getExpectedDuration(module));
+        }
+        double total = 0;
+        for (double expectedDuration : expected.values()) {
+            total += expectedDuration;
+        }
+        for (Map.Entry<String, Double> module : expected.entrySet()) {
+            record(module.getKey(), Math.round(duration * module.getValue() / total));
+        }
+    }
+
+    private void put(String module, double duration) {
+        Double previous = durations.put(module, duration);
+        sum += duration - (previous == null ? 0 : previous);
+    }
+
+    private static Path getDurationsFile(Path root) {
+        return KampWSCache.getCacheDirectory(root).resolve(DURATIONS_FILE);
+    }
+
+}
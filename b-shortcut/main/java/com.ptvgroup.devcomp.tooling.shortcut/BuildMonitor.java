@@ -0,0 +1,314 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Follows the output of a Maven build line by line, recording when each
+ * module starts, finishes or fails, and reporting the progress of the build.
+ * <p>
+ * Modules are recognized by the header Maven prints before building each
+ * module of the reactor. Maven names the projects whose goals failed only at
+ * the end of the build, so a module is taken as failed as soon as the compiler
+ * reports errors or the tests report failures; the failures named at the end
+ * are recorded as well. The output of modules built by several threads ("-T")
+ * is interleaved, so the progress is less accurate then; the outcome and
+ * duration of each module are taken from the Reactor Summary at the end of
+ * the build instead, if Maven prints one. The durations of the modules built
+ * successfully are recorded when the build finishes.
+ */
+public class BuildMonitor {
+
+    private static final Pattern ANSI_ESCAPE = Pattern.compile("\u001B\\[[;\\d]*m");
+    private static final Pattern MODULE_HEADER = Pattern.compile("\\[INFO\\] -+< (\\S+):(\\S+) >-+");
+    private static final Pattern MODULE_START = Pattern
+        .compile("\\[INFO\\] Building (.+) \\S+(\\s+\\[\\d+/\\d+\\])?");
+    private static final Pattern GOAL_FAILED = Pattern
+        .compile("\\[ERROR\\] Failed to execute goal .* on project ([^:\\s]+)(:.*)?");
+    private static final Pattern COMPILATION_ERROR = Pattern.compile("\\[ERROR\\] COMPILATION ERROR.*");
+    private static final Pattern TEST_FAILURES = Pattern
+        .compile("\\[ERROR\\] Tests run: \\d+, Failures: (\\d+), Errors: (\\d+), Skipped: \\d+");
+    private static final Pattern BUILD_END = Pattern
+        .compile("\\[INFO\\] (Reactor Summary.*|BUILD SUCCESS|BUILD FAILURE)");
+    private static final Pattern SUMMARY_START = Pattern.compile("\\[INFO\\] Reactor Summary.*");
+    private static final Pattern SUMMARY_LINE = Pattern
+        .compile("\\[INFO\\] (.+?) \\.+ (SUCCESS|FAILURE|SKIPPED)(?: \\[\\s*([\\d.:]+) (s|min|h)\\])?\\s*");
+
+    private final List<String> modules;
+    private final Map<String, String> modulesByArtifactId = new HashMap<>();
+    private final Map<String, String> modulesByName = new HashMap<>();
+    private final BuildDurations durations;
+    private final PrintStream output;
+    private final Set<String> failFastModules = new HashSet<>();
+    private final Set<String> failed = new HashSet<>();
+    private final BuildResult result = new BuildResult();
+
+    private String pendingModule;
+    private String currentModule;
+    private long currentStart;
+    private String abortReason;
+    private boolean inSummary;
+
+    private double expectedFinished = 0;
+    private long actualFinished = 0;
+
+    /**
+     * Initialize a monitor of a build of the specified modules.
+     *
+     * @param modules the module directories, relative to the checkout root
+     * @param durations the durations of previous builds, to which the
+     *            durations of this build are added
+     * @param output the stream to report the progress to
+     */
+    BuildMonitor(List<String> modules, BuildDurations durations, PrintStream output) {
+        this.modules = modules;
+        this.durations = durations;
+        this.output = output;
+    }
+
+    /**
+     * Creates a monitor of a build of the specified modules, reading their
+     * artifactIds and names from their POM files.
+     *
+     * @param root the root directory of the checkout
+     * @param modules the module directories, relative to root
+     * @param durations the durations of previous builds, to which the
+     *            durations of this build are added
+     * @param output the stream to report the progress to
+     * @return the monitor
+     */
+    public static BuildMonitor create(Path root, List<String> modules, BuildDurations durations,
+        PrintStream output) {
+        BuildMonitor monitor = new BuildMonitor(modules, durations, output);
+        for (String module : modules) {
+            try {
+                PomInfo pom = PomReader.readPomInfo(root.resolve(module).resolve(ModuleIndex.POM_FILE));
+                monitor.addModule(module, pom.getArtifactId(), pom.getProjectName());
+            } catch (IOException e) {
+                // not recognized in the output
+            }
+        }
+        return monitor;
+    }
+
+    /**
+     * Declares how the specified module is named in the output of Maven.
+     *
+     * @param module the module directory
+     * @param artifactId the artifactId of the module
+     * @param projectName the name of the module
+     */
+    void addModule(String module, String artifactId, String projectName) {
+        modulesByArtifactId.put(artifactId, module);
+        modulesByName.put(projectName, module);
+    }
+
+    /**
+     * Sets the modules whose failure aborts the build.
+     *
+     * @param modules the module directories, relative to the checkout root
+     */
+    public void setFailFast(Collection<String> modules) {
+        failFastModules.clear();
+        failFastModules.addAll(modules);
+    }
+
+    /**
+     * Processes the next line of the output of Maven.
+     *
+     * @param line the line, without line terminator
+     * @return whether the build should go on, false if it should be aborted
+     */
+    public boolean accept(String line) {
+        String plain = ANSI_ESCAPE.matcher(line).replaceAll("");
+        if (inSummary) {
+            Matcher matcher = SUMMARY_LINE.matcher(plain);
+            if (matcher.matches()) {
+                acceptSummary(matcher);
+                return abortReason == null;
+            }
+        }
+        Matcher matcher = MODULE_HEADER.matcher(plain);
+        if (matcher.matches()) {
+            pendingModule = modulesByArtifactId.get(matcher.group(2));
+            return abortReason == null;
+        }
+        matcher = MODULE_START.matcher(plain);
+        if (matcher.matches()) {
+            // older versions of Maven print no header; "Building jar: ..." of plugins matches no module
+            String module = pendingModule != null ? pendingModule : modulesByName.get(matcher.group(1));
+            pendingModule = null;
+            if (module != null) {
+                finishModule();
+                currentModule = module;
+                currentStart = System.currentTimeMillis();
+            }
+            return abortReason == null;
+        }
+        matcher = GOAL_FAILED.matcher(plain);
+        if (matcher.matches()) {
+            String module = modulesByArtifactId.get(matcher.group(1));
+            Long duration = module != null ? result.getDurations().get(module) : null;
+            if (duration != null && failed.add(module)) {
+                result.add(module, BuildResult.Status.FAILURE, duration);
+            }
+            return abortReason == null;
+        }
+        matcher = TEST_FAILURES.matcher(plain);
+        if (COMPILATION_ERROR.matcher(plain).matches()
+            || matcher.matches() && Integer.parseInt(matcher.group(1)) + Integer.parseInt(matcher.group(2)) > 0) {
+            fail();
+            return abortReason == null;
+        }
+        if (BUILD_END.matcher(plain).matches()) {
+            finishModule();
+            inSummary = SUMMARY_START.matcher(plain).matches();
+        }
+        return abortReason == null;
+    }
+
+    /**
+     * Records the outcome of a module named in the Reactor Summary.
+     */
+    private void acceptSummary(Matcher matcher) {
+        String name = matcher.group(1);
+        String module = modulesByName.get(name);
+        if (module == null && name.lastIndexOf(' ') > 0) {
+            // the first and last line name the version as well
+            module = modulesByName.get(name.substring(0, name.lastIndexOf(' ')));
+        }
+        if (module == null) {
+            return;
+        }
+        BuildResult.Status status = BuildResult.Status.valueOf(matcher.group(2));
+        Long duration = matcher.group(3) != null ? parseDuration(matcher.group(3), matcher.group(4)) : null;
+        if (duration == null) {
+            duration = result.getDurations().get(module);
+        }
+        if (status == BuildResult.Status.FAILURE) {
+            failed.add(module);
+        }
+        result.add(module, status, duration != null ? duration : 0);
+    }
+
+    /**
+     * Parses a duration of the Reactor Summary, e.g. "1.234" seconds, "01:02"
+     * minutes or "01:02" hours.
+     *
+     * @return the duration in milliseconds, or null if it cannot be parsed
+     */
+    private static Long parseDuration(String value, String unit) {
+        try {
+            if (unit.equals("s")) {
+                return Math.round(Double.parseDouble(value) * 1000);
+            }
+            String[] parts = value.split(":");
+            long seconds = Long.parseLong(parts[0]) * 60 + Long.parseLong(parts[1]);
+            return (unit.equals("h") ? seconds * 60 : seconds) * 1000;
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private void fail() {
+        if (currentModule != null && failed.add(currentModule) && failFastModules.contains(currentModule)
+            && abortReason == null) {
+            abortReason = "changed module " + currentModule + " failed";
+        }
+    }
+
+    /**
+     * Records the end of the build.
+     *
+     * @param exitCode the exit code of Maven
+     */
+    public void finish(int exitCode) {
+        if (exitCode != 0 && currentModule != null) {
+            // killed, or failed without error message
+            failed.add(currentModule);
+        }
+        finishModule();
+        for (Map.Entry<String, BuildResult.Status> status : result.getStatuses().entrySet()) {
+            if (status.getValue() == BuildResult.Status.SUCCESS) {
+                durations.record(status.getKey(), result.getDurations().get(status.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Returns why the build should be aborted.
+     *
+     * @return the reason, or null if the build should go on
+     */
+    public String getAbortReason() {
+        return abortReason;
+    }
+
+    /**
+     * Returns the outcome of the modules built so far.
+     *
+     * @return the outcome and duration of each finished module
+     */
+    public BuildResult getResult() {
+        return result;
+    }
+
+    private void finishModule() {
+        if (currentModule == null) {
+            return;
+        }
+        long duration = System.currentTimeMillis() - currentStart;
+        boolean success = !failed.contains(currentModule);
+        result.add(currentModule, success ? BuildResult.Status.SUCCESS : BuildResult.Status.FAILURE, duration);
+        expectedFinished += durations.getExpectedDuration(currentModule);
+        actualFinished += duration;
+        reportProgress(success ? null : currentModule);
+        currentModule = null;
+    }
+
+    private void reportProgress(String failedModule) {
+        Map<String, BuildResult.Status> statuses = result.getStatuses();
+        int finished = statuses.size();
+        StringBuilder message = new StringBuilder("[shortcut] Built ").append(finished).append(" of ")
+            .append(modules.size()).append(" modules");
+        if (failedModule != null) {
+            message.append(", ").append(failedModule).append(" failed");
+        }
+        if (finished < modules.size()) {
+            double remaining = 0;
+            for (String module : modules) {
+                if (!statuses.containsKey(module)) {
+                    remaining += durations.getExpectedDuration(module);
+                }
+            }
+            // scaled by how much faster or slower than expected this build is
+            double scale = expectedFinished > 0 ? actualFinished / expectedFinished : 1;
+            message.append(", about ").append(formatDuration(Math.round(remaining * scale))).append(" remaining");
+        }
+        output.println(message.append('.'));
+    }
+
+    /**
+     * Formats a duration for the progress reports, e.g. "3m 12s".
+     *
+     * @param millis the duration in milliseconds
+     * @return the duration in minutes and seconds
+     */
+    public static String formatDuration(long millis) {
+        long seconds = (millis + 500) / 1000;
+        if (seconds < 60) {
+            return seconds + "s";
+        }
+        return seconds / 60 + "m " + seconds % 60 + "s";
+    }
+
+}
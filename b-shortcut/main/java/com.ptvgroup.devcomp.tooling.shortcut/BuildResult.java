@@ -0,0 +1,71 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The outcome of building a set of modules, per module.
+ */
+public class BuildResult {
+
+    /**
+     * The outcome of building a single module.
+     */
+    public enum Status {
+        /** The module was built successfully. */
+        SUCCESS,
+        /** Building the module failed. */
+        FAILURE,
+        /** The module was not built because a module it depends on failed. */
+        SKIPPED
+    }
+
+    private final Map<String, Status> statuses = new LinkedHashMap<>();
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+
+    /**
+     * Records the outcome of a module.
+     *
+     * @param module the module
+     * @param status the outcome
+     * @param duration how long building the module took in milliseconds
+     */
+    synchronized void add(String module, Status status, long duration) {
+        statuses.put(module, status);
+        durations.put(module, duration);
+    }
+
+    /**
+     * Returns the outcome of every module, in the order they finished.
+     *
+     * @return the outcomes by module
+     */
+    public synchronized Map<String, Status> getStatuses() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(statuses));
+    }
+
+    /**
+     * Returns how long building each module took.
+     *
+     * @return the durations in milliseconds by module; 0 for skipped modules
+     */
+    public synchronized Map<String, Long> getDurations() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(durations));
+    }
+
+    /**
+     * Returns whether all modules were built successfully.
+     *
+     * @return whether the build succeeded
+     */
+    public synchronized boolean isSuccessful() {
+        for (Status status : statuses.values()) {
+            if (status != Status.SUCCESS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
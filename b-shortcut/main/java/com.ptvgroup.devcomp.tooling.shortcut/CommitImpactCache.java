@@ -0,0 +1,239 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the projects affected by each commit, so that the commits of a
+ * revision range analysed before need not be analysed again when the range
+ * grows, e.g. when a pull request is updated.
+ * <p>
+ * An entry holds the projects a commit changes, the change scenario selected
+ * for each of them and the projects affected by these scenarios. Entries are
+ * keyed by the hash of the commit, and only valid for the inputs of the
+ * analysis they were stored with: the revision of the architecture model (see
+ * {@link KampWSCache#getModelRevision(Path)}), the classification rules, the
+ * modules of the checkout and whether the impact came from the web service or
+ * the synced impact model. Like the responses of the web service, entries
+ * older than the time to live ("B_SHORTCUT_CACHE_TTL") are ignored. They are
+ * stored in the file "commit-impact" in the cache directory of the checkout,
+ * which keeps the 1000 entries used last.
+ */
+public class CommitImpactCache {
+
+    /** Name of the file in the cache directory storing the entries. */
+    public static final String CACHE_FILE = "commit-impact";
+
+    private static final String HEADER = "# shortcut commit impact 2";
+
+    private static final int MAX_ENTRIES = 1000;
+
+    private final Path root;
+    private final String fingerprint;
+    // in the order of their last use
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean modified = false;
+
+    private CommitImpactCache(Path root, String fingerprint) {
+        this.root = root;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Loads the entries stored in the checkout with the specified root
+     * directory that are valid for the current inputs of the analysis.
+     *
+     * @param root the root directory of the checkout
+     * @param index the modules of the checkout
+     * @param offline whether the impact is taken from the synced impact model
+     *            rather than the web service
+     * @return the stored entries, or an empty cache if there are none
+     * @throws IOException if the stored entries or the classification rules
+     *             cannot be read
+     */
+    public static CommitImpactCache load(Path root, ModuleIndex index, boolean offline) throws IOException {
+        Path rulesFile = ScenarioClassifier.getRulesFile(root);
+        String rules = Files.isRegularFile(rulesFile) ? KampWSCache.hash(Files.readAllBytes(rulesFile)) : "";
+        String fingerprint = KampWSCache.hash(KampWSCache.getModelRevision(root) + "\n" + rules + "\n"
+            + index.getFingerprint() + "\n" + (offline ? "offline" : "online"));
+        return load(root, fingerprint, KampWSCache.getTimeToLive());
+    }
+
+    /**
+     * Loads the entries stored in the checkout that were stored with the
+     * specified fingerprint of the inputs and are not older than the time to
+     * live in milliseconds.
+     */
+    static CommitImpactCache load(Path root, String fingerprint, long ttl) throws IOException {
+        CommitImpactCache cache = new CommitImpactCache(root, fingerprint);
+        Path file = getCacheFile(root);
+        if (!Files.isRegularFile(file)) {
+            return cache;
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+            // written by another version; all commits are analysed again
+            return cache;
+        }
+        long now = System.currentTimeMillis();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 6 || !fields[1].equals(fingerprint)) {
+                continue;
+            }
+            try {
+                long analysed = Long.parseLong(fields[2]);
+                if (now - analysed <= ttl) {
+                    cache.entries.put(fields[0], new Entry(split(fields[3]), split(fields[4]), split(fields[5]),
+                        analysed));
+                }
+            } catch (NumberFormatException e) {
+                // a damaged entry; the commit is analysed again
+            }
+        }
+        return cache;
+    }
+
+    private static List<String> split(String field) {
+        return field.isEmpty() ? Collections.<String> emptyList() : Arrays.asList(field.split(","));
+    }
+
+    /**
+     * Stores the entries in the checkout, if any were added or removed.
+     *
+     * @throws IOException if the entries cannot be written
+     */
+    public void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        List<String> lines = new ArrayList<>(Math.min(entries.size(), MAX_ENTRIES) + 1);
+        lines.add(HEADER);
+        int skipped = entries.size() - MAX_ENTRIES;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (skipped-- > 0) {
+                continue;
+            }
+            Entry impact = entry.getValue();
+            lines.add(entry.getKey() + "\t" + fingerprint + "\t" + impact.analysed + "\t"
+                + String.join(",", impact.changedProjects) + "\t" + String.join(",", impact.changeScenarios) + "\t"
+                + String.join(",", impact.affectedProjects));
+        }
+        Path file = getCacheFile(root);
+        KampWSCache.write(file, lines);
+        modified = false;
+    }
+
+    /**
+     * Returns the impact of a commit.
+     *
+     * @param commit the hash of the commit
+     * @return the impact, or null if the commit was not analysed before
+     */
+    public Entry get(String commit) {
+        return entries.get(commit);
+    }
+
+    /**
+     * Records the impact of a commit.
+     *
+     * @param commit the hash of the commit
+     * @param changedProjects the projects changed by the commit
+     * @param changeScenarios the change scenario selected for each changed
+     *            project
+     * @param affectedProjects the projects affected by the change scenarios
+     * @return the recorded impact
+     */
+    public Entry put(String commit, List<String> changedProjects, List<String> changeScenarios,
+        List<String> affectedProjects) {
+        Entry entry = new Entry(changedProjects, changeScenarios, affectedProjects);
+        entries.put(commit, entry);
+        modified = true;
+        return entry;
+    }
+
+    /**
+     * Removes all entries, so that every commit is analysed again.
+     */
+    public void clear() {
+        modified |= !entries.isEmpty();
+        entries.clear();
+    }
+
+    /**
+     * Returns the file the entries of a checkout are stored in.
+     */
+    private static Path getCacheFile(Path root) {
+        return KampWSCache.getCacheDirectory(root).resolve(CACHE_FILE);
+    }
+
+    /**
+     * The impact of a commit.
+     */
+    public static class Entry {
+
+        private final List<String> changedProjects;
+        private final List<String> changeScenarios;
+        private final List<String> affectedProjects;
+        private final long analysed;
+
+        /**
+         * Initialize the impact of a commit analysed now, e.g. one that is
+         * not to be stored.
+         *
+         * @param changedProjects the projects changed by the commit
+         * @param changeScenarios the change scenario selected for each
+         *            changed project
+         * @param affectedProjects the projects affected by the change
+         *            scenarios
+         */
+        public Entry(List<String> changedProjects, List<String> changeScenarios, List<String> affectedProjects) {
+            this(changedProjects, changeScenarios, affectedProjects, System.currentTimeMillis());
+        }
+
+        private Entry(List<String> changedProjects, List<String> changeScenarios, List<String> affectedProjects,
+            long analysed) {
+            this.changedProjects = Collections.unmodifiableList(new ArrayList<>(changedProjects));
+            this.changeScenarios = Collections.unmodifiableList(new ArrayList<>(changeScenarios));
+            this.affectedProjects = Collections.unmodifiableList(new ArrayList<>(affectedProjects));
+            this.analysed = analysed;
+        }
+
+        /**
+         * Returns the projects changed by the commit.
+         *
+         * @return the project names
+         */
+        public List<String> getChangedProjects() {
+            return changedProjects;
+        }
+
+        /**
+         * Returns the change scenario selected for each changed project.
+         *
+         * @return the change scenarios, in the order of the changed projects
+         */
+        public List<String> getChangeScenarios() {
+            return changeScenarios;
+        }
+
+        /**
+         * Returns the projects affected by the change scenarios.
+         *
+         * @return the project names
+         */
+        public List<String> getAffectedProjects() {
+            return affectedProjects;
+        }
+    }
+
+}
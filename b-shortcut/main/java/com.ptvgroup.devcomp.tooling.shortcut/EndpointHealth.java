@@ -0,0 +1,251 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of how fast and reliable the endpoints of the web service are,
+ * so that calls go to the best endpoint first.
+ * <p>
+ * Endpoints are ranked by their smoothed latency. An endpoint whose last call
+ * failed is ranked last for a cool-down period, which doubles with every
+ * further failure. The latencies of the recent calls of each operation
+ * determine after how long a call is hedged, i.e. sent to another endpoint as
+ * well. The state of the endpoints and the recent latencies can be stored in
+ * the file "endpoint-health" in the cache directory of the user's home, so
+ * that they survive the process and short-lived processes hedge as well.
+ */
+public class EndpointHealth {
+
+    /** Name of the file in the cache directory storing the state. */
+    public static final String HEALTH_FILE = "endpoint-health";
+
+    private static final String HEADER = "# shortcut endpoint health 2";
+
+    // the first field of the lines storing endpoints and recent latencies
+    private static final String ENDPOINT = "endpoint";
+    private static final String LATENCIES = "latencies";
+
+    /** Weight of the latest call in the smoothed latency. */
+    private static final double SMOOTHING = 0.2;
+
+    /** Number of calls per operation the hedging delay is derived from. */
+    private static final int WINDOW = 64;
+
+    /** Minimum number of calls before the hedging delay is derived from them. */
+    private static final int MIN_SAMPLES = 8;
+
+    private static final long DEFAULT_HEDGE_DELAY = 1000;
+    private static final long MIN_HEDGE_DELAY = 20;
+    private static final long COOL_DOWN = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_COOL_DOWN = TimeUnit.MINUTES.toMillis(10);
+
+    private final Path file;
+    private final Map<String, State> states = new TreeMap<>();
+    private final Map<String, Deque<Long>> latencies = new HashMap<>();
+    private boolean modified = false;
+
+    /**
+     * Initialize the state of the endpoints, without storing it.
+     */
+    public EndpointHealth() {
+        this(null);
+    }
+
+    private EndpointHealth(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the state of the endpoints stored in the user's home directory.
+     *
+     * @return the stored state, or a fresh one if none is stored or it cannot
+     *         be read
+     */
+    public static EndpointHealth load() {
+        return load(Paths.get(System.getProperty("user.home"), KampWSCache.CACHE_DIRECTORY, HEALTH_FILE));
+    }
+
+    /**
+     * Loads the state of the endpoints stored in the specified file.
+     *
+     * @param file the file storing the state
+     * @return the stored state, or a fresh one if none is stored or it cannot
+     *         be read
+     */
+    public static EndpointHealth load(Path file) {
+        EndpointHealth health = new EndpointHealth(file);
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return health;
+        }
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+            return health;
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t", -1);
+            try {
+                if (fields.length == 5 && fields[0].equals(ENDPOINT)) {
+                    State state = new State();
+                    state.latency = Double.parseDouble(fields[2]);
+                    state.failures = Integer.parseInt(fields[3]);
+                    state.lastFailure = Long.parseLong(fields[4]);
+                    health.states.put(fields[1], state);
+                } else if (fields.length == 3 && fields[0].equals(LATENCIES) && !fields[2].isEmpty()) {
+                    Deque<Long> window = new ArrayDeque<>();
+                    for (String millis : fields[2].split(",")) {
+                        window.addLast(Long.parseLong(millis));
+                    }
+                    health.latencies.put(fields[1], window);
+                }
+            } catch (NumberFormatException e) {
+                // start over with this endpoint or operation
+            }
+        }
+        return health;
+    }
+
+    /**
+     * Stores the state of the endpoints, if it changed and was loaded from a
+     * file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void save() throws IOException {
+        if (file == null || !modified) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<>(states.size() + latencies.size() + 1);
+        lines.add(HEADER);
+        for (Map.Entry<String, State> entry : states.entrySet()) {
+            State state = entry.getValue();
+            lines.add(ENDPOINT + "\t" + entry.getKey() + "\t" + String.format(Locale.ROOT, "%.1f", state.latency)
+                + "\t" + state.failures + "\t" + state.lastFailure);
+        }
+        for (Map.Entry<String, Deque<Long>> entry : new TreeMap<>(latencies).entrySet()) {
+            StringBuilder window = new StringBuilder();
+            for (Long millis : entry.getValue()) {
+                window.append(window.length() == 0 ? "" : ",").append(millis);
+            }
+            lines.add(LATENCIES + "\t" + entry.getKey() + "\t" + window);
+        }
+
+        KampWSCache.write(file, lines);
+        modified = false;
+    }
+
+    /**
+     * Records a call answered by an endpoint. Calls rejected by the service
+     * because of invalid arguments count as answered.
+     *
+     * @param endpoint the endpoint
+     * @param operation the called operation
+     * @param nanos how long the call took, in nanoseconds
+     */
+    public synchronized void recordSuccess(String endpoint, String operation, long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        State state = states.computeIfAbsent(endpoint, key -> new State());
+        state.latency = state.latency < 0 ? millis : (1 - SMOOTHING) * state.latency + SMOOTHING * millis;
+        state.failures = 0;
+        modified = true;
+
+        Deque<Long> window = latencies.computeIfAbsent(operation, key -> new ArrayDeque<>());
+        window.addLast(millis);
+        if (window.size() > WINDOW) {
+            window.removeFirst();
+        }
+    }
+
+    /**
+     * Records a call an endpoint did not answer.
+     *
+     * @param endpoint the endpoint
+     */
+    public synchronized void recordFailure(String endpoint) {
+        State state = states.computeIfAbsent(endpoint, key -> new State());
+        state.failures++;
+        state.lastFailure = System.currentTimeMillis();
+        modified = true;
+    }
+
+    /**
+     * Returns the specified endpoints, best first. Endpoints without recorded
+     * calls are tried before known ones; otherwise, the given order is kept
+     * among equally good endpoints.
+     *
+     * @param endpoints the endpoints
+     * @return the ranked endpoints
+     */
+    public synchronized List<String> rank(List<String> endpoints) {
+        long now = System.currentTimeMillis();
+        List<String> result = new ArrayList<>(endpoints);
+        result.sort(Comparator.comparing((String endpoint) -> isCoolingDown(endpoint, now))
+            .thenComparingDouble(endpoint -> Math.max(0, getState(endpoint).latency)));
+        return result;
+    }
+
+    /**
+     * Returns how long to wait for an endpoint before sending a call to the
+     * next one as well: the specified percentile of the latencies of the
+     * recent calls of the operation. Until enough calls were made, twice the
+     * smoothed latency of the endpoint is used.
+     *
+     * @param endpoint the endpoint called first
+     * @param operation the called operation
+     * @param percentile the percentile, from 0 to 100
+     * @return the delay in milliseconds
+     */
+    public synchronized long getHedgeDelay(String endpoint, String operation, double percentile) {
+        Deque<Long> window = latencies.get(operation);
+        long delay;
+        if (window != null && window.size() >= MIN_SAMPLES) {
+            Long[] sorted = window.toArray(new Long[0]);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            delay = sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+        } else {
+            double latency = getState(endpoint).latency;
+            delay = latency < 0 ? DEFAULT_HEDGE_DELAY : (long) (2 * latency);
+        }
+        return Math.max(MIN_HEDGE_DELAY, delay);
+    }
+
+    private boolean isCoolingDown(String endpoint, long now) {
+        State state = getState(endpoint);
+        if (state.failures == 0) {
+            return false;
+        }
+        long coolDown = COOL_DOWN << Math.min(state.failures - 1, 20);
+        return now - state.lastFailure < Math.min(coolDown, MAX_COOL_DOWN);
+    }
+
+    private State getState(String endpoint) {
+        State state = states.get(endpoint);
+        return state != null ? state : new State();
+    }
+
+    private static class State {
+        /** Smoothed latency in milliseconds, negative if unknown. */
+        private double latency = -1;
+        private int failures;
+        private long lastFailure;
+    }
+
+}
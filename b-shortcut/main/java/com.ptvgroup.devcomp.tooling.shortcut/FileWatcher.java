@@ -0,0 +1,182 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the files of a checkout for changes.
+ * <p>
+ * All directories of the checkout are watched, except hidden ones (like
+ * ".git" and the cache directory) and build output (a directory "target"
+ * next to a POM file). Directories created later are watched as soon as their
+ * creation is noticed. Changes are collected until the checkout is quiet for
+ * a moment, so that saving several files or switching branches is reported as
+ * a single change.
+ */
+public class FileWatcher implements Closeable {
+
+    private static final String BUILD_DIRECTORY = "target";
+
+    private final Path root;
+    private final WatchService service;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * Initialize a watcher of the checkout with the specified root directory
+     * and starts watching its directories.
+     *
+     * @param root the root directory of the checkout
+     * @throws IOException if the directories cannot be watched
+     */
+    public FileWatcher(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.service = this.root.getFileSystem().newWatchService();
+        register(this.root, null);
+    }
+
+    /**
+     * Waits for files to change, and returns them as soon as no more changes
+     * follow for the specified time.
+     *
+     * @param quietPeriod how long no more changes must follow, in milliseconds
+     * @return the changed, created and deleted files, relative to the checkout
+     *         root and in alphabetical order, or null if changes were lost
+     *         because there were too many
+     * @throws IOException if new directories cannot be watched
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Set<String> awaitChanges(long quietPeriod) throws IOException, InterruptedException {
+        Set<String> changed = new TreeSet<>();
+        boolean lost = false;
+        WatchKey key = service.take();
+        while (key != null) {
+            lost |= collect(key, changed);
+            key = service.poll(quietPeriod, TimeUnit.MILLISECONDS);
+        }
+        return lost ? null : changed;
+    }
+
+    /**
+     * Discards the changes noticed so far and those following until no more
+     * changes follow for the specified time, e.g. the files written by a
+     * build. Directories created meanwhile are watched nonetheless.
+     *
+     * @param quietPeriod how long no more changes must follow, in milliseconds
+     * @throws IOException if new directories cannot be watched
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void discardChanges(long quietPeriod) throws IOException, InterruptedException {
+        Set<String> discarded = new TreeSet<>();
+        WatchKey key = service.poll(quietPeriod, TimeUnit.MILLISECONDS);
+        while (key != null) {
+            collect(key, discarded);
+            key = service.poll(quietPeriod, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Adds the files changed in the directory of the key to the specified set,
+     * watching new directories, and returns whether changes were lost.
+     */
+    private boolean collect(WatchKey key, Set<String> changed) throws IOException {
+        boolean lost = false;
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                lost = true;
+                continue;
+            }
+            if (directory == null) {
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (isIgnored(path)) {
+                continue;
+            }
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                // files may have been created before the directory is watched
+                register(path, changed);
+            } else {
+                changed.add(ModuleIndex.toRelativePath(root, path));
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+        return lost;
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+
+    /**
+     * Watches the directory and all directories below it, adding the files
+     * found to the specified set, if any.
+     */
+    private void register(Path start, final Set<String> found) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(root) && isIgnored(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                directories.put(dir.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (found != null) {
+                    found.add(ModuleIndex.toRelativePath(root, file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // deleted again, or not readable
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Returns whether changes of the specified path are of no interest.
+     */
+    private boolean isIgnored(Path path) {
+        Path directory = root;
+        for (Path segment : root.relativize(path)) {
+            String name = segment.toString();
+            if (name.startsWith(".")) {
+                return true;
+            }
+            // e.g. a package named "target" is no build output
+            if (name.equals(BUILD_DIRECTORY) && Files.isRegularFile(directory.resolve(ModuleIndex.POM_FILE))) {
+                return true;
+            }
+            directory = directory.resolve(segment);
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,244 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs git commands in a working tree.
+ */
+public class Git {
+
+    /** The hash of the empty tree, which the changes of a root commit are relative to. */
+    public static final String EMPTY_TREE = "4b825dc642cb6eb9a060e54bf8d69288fbee4904";
+
+    private final Path directory;
+
+    /**
+     * Initialize for the working tree containing the specified directory. Paths
+     * returned by this class are relative to that directory.
+     *
+     * @param directory the directory to run git in
+     */
+    public Git(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the revision checked out in the working tree.
+     *
+     * @return the hash of the checked out commit, or null if it cannot be
+     *         determined
+     */
+    public String getRevision() {
+        try {
+            List<String> output = run("rev-parse", "HEAD");
+            return output.isEmpty() ? null : output.get(0).trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the commits in the specified revision range, oldest first.
+     * Merge commits are left out, since the changes they bring in are those
+     * of the merged commits.
+     *
+     * @param range a revision range, e.g. "origin/master..HEAD"
+     * @return the hashes of the commits
+     * @throws IOException if git fails
+     */
+    public List<String> getCommits(String range) throws IOException {
+        return run("rev-list", "--reverse", "--topo-order", "--no-merges", range);
+    }
+
+    /**
+     * Returns the first parent of a commit, to compare the commit with.
+     *
+     * @param commit the hash of the commit
+     * @return the hash of the first parent, or {@link #EMPTY_TREE} if the
+     *         commit is a root commit
+     * @throws IOException if git fails
+     */
+    public String getParent(String commit) throws IOException {
+        List<String> output = run("rev-list", "--parents", "-n", "1", commit);
+        String[] hashes = output.isEmpty() ? new String[0] : output.get(0).trim().split(" ");
+        return hashes.length > 1 ? hashes[1] : EMPTY_TREE;
+    }
+
+    /**
+     * Returns the range of the changes made on the right side of a revision
+     * range since it branched off the left side. "git diff A..B" compares the
+     * two ends of the range, so it would include the changes made on the left
+     * side as well; "A...B" compares B with the merge base of A and B.
+     *
+     * @param range a revision range like "origin/master..HEAD", or a revision
+     * @return the range like "origin/master...HEAD", or the unchanged range if
+     *         it is no two-dot range
+     */
+    public static String fromMergeBase(String range) {
+        int dots = range.indexOf("..");
+        if (dots < 0 || range.startsWith("...", dots)) {
+            return range;
+        }
+        return range.substring(0, dots) + "..." + range.substring(dots + 2);
+    }
+
+    /**
+     * Returns the files changed in the specified revision range. If the range
+     * is a single revision, the changes of the working tree against that
+     * revision are returned, including untracked files.
+     *
+     * @param range a revision (e.g. "HEAD") or range (e.g. "master...HEAD")
+     * @return paths of the changed files
+     * @throws IOException if git fails
+     */
+    public List<String> getChangedFiles(String range) throws IOException {
+        // unquoted paths, even if they contain unusual characters
+        Set<String> files = new LinkedHashSet<>(run("-c", "core.quotePath=false", "diff", "--name-only",
+            "--relative", range, "--"));
+        if (!range.contains("..")) {
+            files.addAll(run("-c", "core.quotePath=false", "ls-files", "--others", "--exclude-standard"));
+        }
+
+        // shortcut's own files are no changes
+        List<String> result = new ArrayList<>(files.size());
+        for (String file : files) {
+            if (!file.startsWith(KampWSCache.CACHE_DIRECTORY + "/")) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the hunks of the changes per file in the specified revision
+     * range, like {@link #getChangedFiles(String)}, with three lines of
+     * context. Each hunk starts with its "@@" header, followed by its lines
+     * prefixed by '+' if added, '-' if removed or ' ' if unchanged. Untracked
+     * files are a single hunk of added lines. Binary files have no hunks.
+     *
+     * @param range a revision (e.g. "HEAD") or range (e.g. "master...HEAD")
+     * @return the lines of the hunks by path
+     * @throws IOException if git fails
+     */
+    public Map<String, List<String>> getDiff(String range) throws IOException {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (String file : getChangedFiles(range)) {
+            result.put(file, new ArrayList<String>());
+        }
+
+        List<String> lines = null;
+        String oldFile = null;
+        boolean header = false;
+        for (String line : run("-c", "core.quotePath=false", "diff", "--no-prefix", "--no-color", "-U3",
+            "--relative", range, "--")) {
+            if (line.startsWith("diff ")) {
+                header = true;
+                lines = null;
+            } else if (line.startsWith("@@")) {
+                header = false;
+                if (lines != null) {
+                    lines.add(line);
+                }
+            } else if (header && line.startsWith("--- ")) {
+                oldFile = line.substring(4);
+            } else if (header && line.startsWith("+++ ")) {
+                String file = line.substring(4);
+                lines = result.get(file.equals("/dev/null") ? oldFile : file);
+            } else if (!header && lines != null
+                && (line.startsWith("+") || line.startsWith("-") || line.startsWith(" "))) {
+                lines.add(line);
+            }
+        }
+
+        if (!range.contains("..")) {
+            for (String file : run("-c", "core.quotePath=false", "ls-files", "--others", "--exclude-standard")) {
+                List<String> hunk = result.get(file);
+                if (hunk != null) {
+                    try {
+                        List<String> added = Files.readAllLines(directory.resolve(file), StandardCharsets.UTF_8);
+                        hunk.add("@@ -0,0 +1," + added.size() + " @@");
+                        for (String line : added) {
+                            hunk.add("+" + line);
+                        }
+                    } catch (IOException e) {
+                        // binary, unreadable or already gone
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs git with the specified arguments and returns its output.
+     *
+     * @param arguments arguments to git
+     * @return the lines of the output
+     * @throws IOException if git cannot be started or fails
+     */
+    public List<String> run(String... arguments) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(arguments));
+        Process git = new ProcessBuilder(command).directory(directory.toFile()).start();
+
+        // errors are read concurrently, as git blocks once either pipe is
+        // full, e.g. with many warnings about line endings
+        FutureTask<List<String>> errors = new FutureTask<>(() -> readLines(git.getErrorStream()));
+        Thread errorReader = new Thread(errors, "git-stderr");
+        errorReader.setDaemon(true);
+        errorReader.start();
+        List<String> output = readLines(git.getInputStream());
+
+        try {
+            if (git.waitFor() != 0) {
+                List<String> messages = getErrors(errors);
+                throw new IOException("\"" + String.join(" ", command) + "\" failed in " + directory
+                    + (messages.isEmpty() ? "." : ": " + messages.get(0)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for git.", e);
+        }
+        return output;
+    }
+
+    private static List<String> getErrors(FutureTask<List<String>> errors) throws InterruptedException {
+        try {
+            return errors.get();
+        } catch (ExecutionException e) {
+            // the reason of the failure is unknown, but git still failed
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<String> readLines(InputStream stream) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+}
@@ -0,0 +1,423 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The change impact model of the KAMP web service, held locally so that
+ * change-specific dependencies can be resolved without contacting the service.
+ * <p>
+ * Project names are interned to consecutive ids (in alphabetical order), and
+ * the projects affected by each change scenario are stored as a bit set of
+ * these ids (see {@link ImpactSet}). The projects affected by multiple change
+ * scenarios are the union of the projects affected by each of them, unless one
+ * of them is a generic scenario like "shortcut_skip_systemTests": these modify
+ * the scenarios selected with them, which the model does not record, so such
+ * combinations are rejected.
+ */
+public class ImpactModel {
+
+    /** File below the cache directory in which the model is stored. */
+    public static final String MODEL_FILE = "impact-model";
+
+    /** Prefix of the change scenarios not belonging to a project. */
+    private static final String GENERIC_SCENARIO_PREFIX = "shortcut_";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final String[] projects;
+    private final ProjectIds projectIds = new ProjectIds();
+    private final String[] buildSpecificationPaths;
+    private final int[][] projectScenarios;
+    private final String[] scenarios;
+    private final Map<String, Integer> scenarioIds;
+    private final BitSet[] impacts;
+
+    private ImpactModel(String[] projects, String[] buildSpecificationPaths, int[][] projectScenarios,
+        String[] scenarios, BitSet[] impacts) {
+        this.projects = projects;
+        this.buildSpecificationPaths = buildSpecificationPaths;
+        this.projectScenarios = projectScenarios;
+        this.scenarios = scenarios;
+        this.impacts = impacts;
+        for (String project : projects) {
+            projectIds.intern(project);
+        }
+        this.scenarioIds = index(scenarios);
+    }
+
+    /**
+     * Downloads the complete model from the web service. Projects and change
+     * scenarios the service fails to answer for are left out of the model and
+     * reported, rather than failing the whole download.
+     *
+     * @param client client of the web service
+     * @return the downloaded model
+     */
+    public static ImpactModel download(KampWSClient client) {
+        List<String> projects = client.getPossibleProjectNames();
+
+        // change scenarios of every project, in the order offered by the service
+        Map<String, List<String>> changeScenarios = new LinkedHashMap<>();
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        for (String project : projects) {
+            List<String> offered;
+            try {
+                offered = client.getChangeScenarios(project);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Skipping the change scenarios of " + project + ": " + e.getMessage());
+                offered = Collections.emptyList();
+            }
+            changeScenarios.put(project, offered);
+            for (String scenario : offered) {
+                dependencies.put(scenario, null);
+            }
+        }
+
+        // projects affected by every change scenario
+        for (Iterator<Map.Entry<String, List<String>>> i = dependencies.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<String, List<String>> scenario = i.next();
+            try {
+                scenario.setValue(client.getChangeSpecificDependencies(Arrays.asList(scenario.getKey())));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Skipping the change scenario " + scenario.getKey() + ": " + e.getMessage());
+                i.remove();
+            }
+        }
+
+        return build(changeScenarios, dependencies, downloadBuildSpecificationPaths(client, projects));
+    }
+
+    /**
+     * Downloads the build specification path of every project. The paths are
+     * requested at once, and one by one if the service rejects the request,
+     * e.g. because it knows no path for one of the projects.
+     */
+    private static Map<String, String> downloadBuildSpecificationPaths(KampWSClient client, List<String> projects) {
+        Map<String, String> buildSpecificationPaths = new HashMap<>();
+        try {
+            // the service answers with one path per requested project
+            List<String> paths = client.getBuildSpecificationPaths(projects);
+            if (paths.size() == projects.size()) {
+                for (int i = 0; i < paths.size(); i++) {
+                    buildSpecificationPaths.put(projects.get(i), paths.get(i));
+                }
+                return buildSpecificationPaths;
+            }
+        } catch (IllegalArgumentException e) {
+            // find the projects the service rejects below
+        }
+
+        List<String> unknown = new ArrayList<>();
+        for (String project : projects) {
+            try {
+                List<String> path = client.getBuildSpecificationPaths(Arrays.asList(project));
+                if (path.size() == 1) {
+                    buildSpecificationPaths.put(project, path.get(0));
+                } else {
+                    unknown.add(project);
+                }
+            } catch (IllegalArgumentException e) {
+                unknown.add(project);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            System.err.println("No build specification path known for " + String.join(", ", unknown) + ".");
+        }
+        return buildSpecificationPaths;
+    }
+
+    /**
+     * Builds a model from the responses of the web service. Projects only
+     * known as affected by a change scenario are kept, without change
+     * scenarios or build specification path, as they still have to be built;
+     * they are reported, since the model of the service is inconsistent.
+     * Change scenarios without dependencies are left out.
+     *
+     * @param changeScenarios the change scenarios of every project
+     * @param dependencies the projects affected by every change scenario
+     * @param buildSpecificationPaths the build specification path of every
+     *            project, where known
+     * @return the model
+     */
+    static ImpactModel build(Map<String, List<String>> changeScenarios, Map<String, List<String>> dependencies,
+        Map<String, String> buildSpecificationPaths) {
+        TreeSet<String> names = new TreeSet<>(changeScenarios.keySet());
+        TreeSet<String> unknown = new TreeSet<>();
+        for (List<String> affected : dependencies.values()) {
+            for (String project : affected) {
+                if (!changeScenarios.containsKey(project)) {
+                    unknown.add(project);
+                }
+            }
+        }
+        if (!unknown.isEmpty()) {
+            System.err.println("Warning: projects affected by change scenarios but not known to the model: "
+                + String.join(", ", unknown));
+            names.addAll(unknown);
+        }
+
+        String[] projects = names.toArray(new String[0]);
+        Map<String, Integer> projectIds = index(projects);
+        String[] scenarios = dependencies.keySet().toArray(new String[0]);
+        Map<String, Integer> scenarioIds = index(scenarios);
+
+        String[] paths = new String[projects.length];
+        int[][] projectScenarios = new int[projects.length][];
+        for (int i = 0; i < projects.length; i++) {
+            paths[i] = buildSpecificationPaths.get(projects[i]);
+            List<String> offered = changeScenarios.get(projects[i]);
+            List<Integer> ids = new ArrayList<>();
+            for (String scenario : offered == null ? Collections.<String> emptyList() : offered) {
+                Integer id = scenarioIds.get(scenario);
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+            projectScenarios[i] = new int[ids.size()];
+            for (int j = 0; j < ids.size(); j++) {
+                projectScenarios[i][j] = ids.get(j);
+            }
+        }
+
+        BitSet[] impacts = new BitSet[scenarios.length];
+        for (int i = 0; i < scenarios.length; i++) {
+            impacts[i] = new BitSet(projects.length);
+            for (String project : dependencies.get(scenarios[i])) {
+                impacts[i].set(projectIds.get(project));
+            }
+        }
+
+        return new ImpactModel(projects, paths, projectScenarios, scenarios, impacts);
+    }
+
+    /**
+     * Loads a model stored with {@link #save(Path)}.
+     *
+     * @param file the file the model is stored in
+     * @return the loaded model
+     * @throws IOException if the file cannot be read or is not a model
+     */
+    public static ImpactModel load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("The impact model in " + file + " has an unknown format. Please sync again.");
+            }
+            String[] projects = new String[in.readInt()];
+            String[] buildSpecificationPaths = new String[projects.length];
+            int[][] projectScenarios = new int[projects.length][];
+            for (int i = 0; i < projects.length; i++) {
+                projects[i] = in.readUTF();
+                buildSpecificationPaths[i] = in.readBoolean() ? in.readUTF() : null;
+                projectScenarios[i] = new int[in.readInt()];
+                for (int j = 0; j < projectScenarios[i].length; j++) {
+                    projectScenarios[i][j] = in.readInt();
+                }
+            }
+            String[] scenarios = new String[in.readInt()];
+            BitSet[] impacts = new BitSet[scenarios.length];
+            for (int i = 0; i < scenarios.length; i++) {
+                scenarios[i] = in.readUTF();
+                long[] words = new long[in.readInt()];
+                for (int j = 0; j < words.length; j++) {
+                    words[j] = in.readLong();
+                }
+                impacts[i] = BitSet.valueOf(words);
+            }
+            return new ImpactModel(projects, buildSpecificationPaths, projectScenarios, scenarios, impacts);
+        }
+    }
+
+    /**
+     * Stores the model in the specified file.
+     *
+     * @param file the file to store the model in
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), MODEL_FILE, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(projects.length);
+                for (int i = 0; i < projects.length; i++) {
+                    out.writeUTF(projects[i]);
+                    out.writeBoolean(buildSpecificationPaths[i] != null);
+                    if (buildSpecificationPaths[i] != null) {
+                        out.writeUTF(buildSpecificationPaths[i]);
+                    }
+                    out.writeInt(projectScenarios[i].length);
+                    for (int scenario : projectScenarios[i]) {
+                        out.writeInt(scenario);
+                    }
+                }
+                out.writeInt(scenarios.length);
+                for (int i = 0; i < scenarios.length; i++) {
+                    out.writeUTF(scenarios[i]);
+                    long[] words = impacts[i].toLongArray();
+                    out.writeInt(words.length);
+                    for (long word : words) {
+                        out.writeLong(word);
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // only left if the model could not be written or moved
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Returns the project names known to the model.
+     *
+     * @return list of project names, in alphabetical order
+     */
+    public List<String> getPossibleProjectNames() {
+        return Collections.unmodifiableList(Arrays.asList(projects));
+    }
+
+    /**
+     * Returns the change scenarios for the project with the specified name.
+     *
+     * @param projectName name of the project
+     * @return list of change scenarios for the project
+     * @throws IllegalArgumentException if project name is not recognized
+     */
+    public List<String> getChangeScenarios(String projectName) throws IllegalArgumentException {
+        int[] ids = projectScenarios[projectId(projectName)];
+        List<String> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(scenarios[id]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the dependent projects for the specified change scenarios.
+     *
+     * @param changeScenarios the change scenarios
+     * @return list of projects affected by the changes, in alphabetical order
+     * @throws IllegalArgumentException if one or multiple change scenarios are
+     *             not recognized
+     */
+    public List<String> getChangeSpecificDependencies(List<String> changeScenarios) throws IllegalArgumentException {
+        return getImpactSet(changeScenarios).toList();
+    }
+
+    /**
+     * Returns the set of dependent projects for the specified change
+     * scenarios.
+     *
+     * @param changeScenarios the change scenarios
+     * @return the projects affected by the changes, interned in the table of
+     *         this model
+     * @throws IllegalArgumentException if one or multiple change scenarios are
+     *             not recognized, or a generic scenario is combined with others
+     */
+    public ImpactSet getImpactSet(List<String> changeScenarios) throws IllegalArgumentException {
+        if (!combinesByUnion(changeScenarios)) {
+            throw new IllegalArgumentException("Could not resolve dependencies of " + String.join(", ",
+                changeScenarios) + " with the impact model. (Generic change scenarios modify the scenarios"
+                + " selected with them; only the web service can resolve them together.)");
+        }
+        BitSet affected = new BitSet(projects.length);
+        for (String scenario : changeScenarios) {
+            Integer id = scenarioIds.get(scenario);
+            if (id == null) {
+                throw new IllegalArgumentException("Could not resolve dependencies. (Unknown change scenario "
+                    + scenario + ")");
+            }
+            affected.or(impacts[id]);
+        }
+        return new ImpactSet(projectIds, affected);
+    }
+
+    /**
+     * Returns whether the dependencies of the specified change scenarios are
+     * the union of the dependencies of each of them. This holds for the
+     * scenarios of projects, but not for generic scenarios like
+     * "shortcut_skip_systemTests", which modify the scenarios selected with
+     * them.
+     *
+     * @param changeScenarios the change scenarios
+     * @return whether the dependencies may be combined by union
+     */
+    public static boolean combinesByUnion(List<String> changeScenarios) {
+        if (changeScenarios.size() < 2) {
+            return true;
+        }
+        for (String scenario : changeScenarios) {
+            if (scenario.startsWith(GENERIC_SCENARIO_PREFIX)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the table the projects of this model are interned in.
+     *
+     * @return the table of project ids
+     */
+    public ProjectIds getProjectIds() {
+        return projectIds;
+    }
+
+    /**
+     * Returns the paths of build specification files for the specified
+     * projects.
+     *
+     * @param projectNames names of the projects of interest
+     * @return list of paths of build specification files
+     * @throws IllegalArgumentException if one or multiple project names are not
+     *             recognized
+     */
+    public List<String> getBuildSpecificationPaths(List<String> projectNames) throws IllegalArgumentException {
+        List<String> result = new ArrayList<>(projectNames.size());
+        for (String projectName : projectNames) {
+            String path = buildSpecificationPaths[projectId(projectName)];
+            if (path == null) {
+                throw new IllegalArgumentException("Could not find build specification paths. (No path known for "
+                    + projectName + ")");
+            }
+            result.add(path);
+        }
+        return result;
+    }
+
+    private int projectId(String projectName) throws IllegalArgumentException {
+        int id = projectIds.getId(projectName);
+        if (id < 0 || id >= projects.length) {
+            throw new IllegalArgumentException("Unknown project " + projectName
+                + ". Is the impact model up to date?");
+        }
+        return id;
+    }
+
+    private static Map<String, Integer> index(String[] names) {
+        Map<String, Integer> ids = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            ids.put(names[i], i);
+        }
+        return ids;
+    }
+
+}
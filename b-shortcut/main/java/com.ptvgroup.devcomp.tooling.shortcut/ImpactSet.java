@@ -0,0 +1,187 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An immutable set of projects, e.g. the projects affected by change
+ * scenarios.
+ * <p>
+ * The projects are stored as a bit set of their ids in a {@link ProjectIds}
+ * table, so that sets of the same table are combined in time proportional to
+ * the number of interned projects divided by 64. Projects are always listed in
+ * alphabetical order, regardless of the order they were added or interned in.
+ */
+public final class ImpactSet implements Iterable<String> {
+
+    private final ProjectIds ids;
+    private final BitSet bits;
+    // the names in alphabetical order, listed on first use
+    private volatile List<String> names;
+
+    /**
+     * Initialize a set of the projects with the specified ids. The bit set is
+     * not copied and must not be modified afterwards.
+     *
+     * @param ids the table the ids belong to
+     * @param bits the ids of the projects
+     */
+    ImpactSet(ProjectIds ids, BitSet bits) {
+        this.ids = ids;
+        this.bits = bits;
+    }
+
+    /**
+     * Returns the empty set of the specified table.
+     *
+     * @param ids the table of project ids
+     * @return the empty set
+     */
+    public static ImpactSet empty(ProjectIds ids) {
+        return new ImpactSet(ids, new BitSet());
+    }
+
+    /**
+     * Returns the set of the specified projects, interning their names.
+     * Duplicate names are ignored.
+     *
+     * @param ids the table of project ids
+     * @param projectNames the names of the projects
+     * @return the set of the projects
+     */
+    public static ImpactSet of(ProjectIds ids, Collection<String> projectNames) {
+        BitSet bits = new BitSet(ids.size() + projectNames.size());
+        for (String projectName : projectNames) {
+            bits.set(ids.intern(projectName));
+        }
+        return new ImpactSet(ids, bits);
+    }
+
+    /**
+     * Returns the projects contained in this or the specified set.
+     *
+     * @param other a set of the same table
+     * @return the union of the sets
+     * @throws IllegalArgumentException if the sets belong to different tables
+     */
+    public ImpactSet union(ImpactSet other) {
+        checkTable(other);
+        BitSet result = (BitSet) bits.clone();
+        result.or(other.bits);
+        return new ImpactSet(ids, result);
+    }
+
+    /**
+     * Returns the projects contained in both this and the specified set.
+     *
+     * @param other a set of the same table
+     * @return the intersection of the sets
+     * @throws IllegalArgumentException if the sets belong to different tables
+     */
+    public ImpactSet intersection(ImpactSet other) {
+        checkTable(other);
+        BitSet result = (BitSet) bits.clone();
+        result.and(other.bits);
+        return new ImpactSet(ids, result);
+    }
+
+    /**
+     * Returns the projects contained in this set but not in the specified one.
+     *
+     * @param other a set of the same table
+     * @return the difference of the sets
+     * @throws IllegalArgumentException if the sets belong to different tables
+     */
+    public ImpactSet difference(ImpactSet other) {
+        checkTable(other);
+        BitSet result = (BitSet) bits.clone();
+        result.andNot(other.bits);
+        return new ImpactSet(ids, result);
+    }
+
+    /**
+     * Returns whether the set contains the specified project.
+     *
+     * @param projectName the name of the project
+     * @return whether the project is contained
+     */
+    public boolean contains(String projectName) {
+        int id = ids.getId(projectName);
+        return id >= 0 && bits.get(id);
+    }
+
+    /**
+     * Returns the number of projects in the set.
+     *
+     * @return the number of projects
+     */
+    public int size() {
+        return bits.cardinality();
+    }
+
+    /**
+     * Returns whether the set contains no projects.
+     *
+     * @return whether the set is empty
+     */
+    public boolean isEmpty() {
+        return bits.isEmpty();
+    }
+
+    /**
+     * Returns the names of the projects in the set. The names are only listed
+     * and sorted once.
+     *
+     * @return an unmodifiable list of the names, in alphabetical order
+     */
+    public List<String> toList() {
+        List<String> result = names;
+        if (result == null) {
+            List<String> list = new ArrayList<>(bits.cardinality());
+            for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+                list.add(ids.getName(id));
+            }
+            if (!ids.isSorted()) {
+                Collections.sort(list);
+            }
+            result = Collections.unmodifiableList(list);
+            names = result;
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return toList().iterator();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ImpactSet)) {
+            return false;
+        }
+        ImpactSet other = (ImpactSet) obj;
+        return ids == other.ids && bits.equals(other.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return bits.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+    private void checkTable(ImpactSet other) {
+        if (ids != other.ids) {
+            throw new IllegalArgumentException("Cannot combine impact sets of different project tables.");
+        }
+    }
+
+}
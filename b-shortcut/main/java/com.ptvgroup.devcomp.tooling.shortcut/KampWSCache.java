@@ -0,0 +1,246 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists responses of the KAMP web service below the checkout root, so that
+ * repeated runs against an unchanged architecture model do not have to contact
+ * the web service at all.
+ * <p>
+ * Entries are keyed by the called operation, its arguments and a fingerprint
+ * of the model (see {@link #getModelRevision(Path)}). Entries older than the
+ * time to live ("B_SHORTCUT_CACHE_TTL", in minutes) are ignored.
+ */
+public class KampWSCache {
+
+    /** Directory below the checkout root in which shortcut keeps its files. */
+    public static final String CACHE_DIRECTORY = ".shortcut";
+
+    private static final String RESPONSE_DIRECTORY = "ws-cache";
+
+    private static final long DEFAULT_TTL = TimeUnit.HOURS.toMillis(24);
+
+    private final Path directory;
+    private final String fingerprint;
+    private final long ttl;
+
+    /**
+     * Initialize a cache storing its entries in the specified directory.
+     *
+     * @param directory directory of the cache entries
+     * @param fingerprint fingerprint of the architecture model
+     * @param ttl time to live of an entry in milliseconds
+     */
+    public KampWSCache(Path directory, String fingerprint, long ttl) {
+        this.directory = directory;
+        this.fingerprint = fingerprint;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns the cache for the checkout with the specified root directory.
+     *
+     * @param root the root directory of the checkout
+     * @param endpoint the WSDL of the web service the responses come from
+     * @return the cache of the checkout
+     */
+    public static KampWSCache forCheckout(Path root, String endpoint) {
+        return new KampWSCache(getCacheDirectory(root).resolve(RESPONSE_DIRECTORY),
+            endpoint + "@" + getModelRevision(root), getTimeToLive());
+    }
+
+    /**
+     * Returns the revision of the architecture model the web service answers
+     * from. It is taken from the system variable "B_SHORTCUT_MODEL_REVISION"
+     * if present, otherwise it is the hash of the impact model last synced to
+     * the checkout, so that a sync with a changed model discards the entries
+     * based on the old one. Without either, the revision is empty and entries
+     * only expire with their time to live; the revision of the checkout is no
+     * indication of the revision of the model.
+     *
+     * @param root the root directory of the checkout
+     * @return the revision of the model, or an empty string if unknown
+     */
+    public static String getModelRevision(Path root) {
+        String revision = System.getenv("B_SHORTCUT_MODEL_REVISION");
+        if (revision != null) {
+            return revision;
+        }
+        Path model = getCacheDirectory(root).resolve(ImpactModel.MODEL_FILE);
+        try {
+            return Files.isRegularFile(model) ? "model-" + hash(Files.readAllBytes(model)) : "";
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Returns the time to live of cached entries, taken from the system
+     * variable "B_SHORTCUT_CACHE_TTL" in minutes, 24 hours by default.
+     *
+     * @return the time to live in milliseconds
+     */
+    public static long getTimeToLive() {
+        long ttl = DEFAULT_TTL;
+        String ttlVariable = System.getenv("B_SHORTCUT_CACHE_TTL");
+        if (ttlVariable != null) {
+            try {
+                ttl = TimeUnit.MINUTES.toMillis(Long.parseLong(ttlVariable.trim()));
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid cache time to live \"" + ttlVariable + "\".");
+            }
+        }
+        return ttl;
+    }
+
+    /**
+     * Returns the directory in which shortcut keeps its files for the checkout.
+     *
+     * @param root the root directory of the checkout
+     * @return the cache directory
+     */
+    public static Path getCacheDirectory(Path root) {
+        return root.resolve(CACHE_DIRECTORY);
+    }
+
+    /**
+     * Returns the cached response of a call, or null if there is no valid entry.
+     *
+     * @param operation name of the called operation
+     * @param arguments arguments of the call
+     * @return the cached response or null
+     */
+    public List<String> get(String operation, List<String> arguments) {
+        Path entry = directory.resolve(key(operation, arguments));
+        try {
+            if (!Files.isRegularFile(entry)
+                || System.currentTimeMillis() - Files.getLastModifiedTime(entry).toMillis() > ttl) {
+                return null;
+            }
+            return Files.readAllLines(entry, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the response of a call.
+     *
+     * @param operation name of the called operation
+     * @param arguments arguments of the call
+     * @param response the response to store
+     */
+    public void put(String operation, List<String> arguments, List<String> response) {
+        Path entry = directory.resolve(key(operation, arguments));
+        try {
+            write(entry, response);
+        } catch (IOException e) {
+            // a cache that cannot be written only costs another call next time
+        }
+    }
+
+    /**
+     * Replaces a file by the specified lines. The lines are written to a
+     * temporary file in the same directory first, so that concurrent runs
+     * never read a half-written file; the temporary file is deleted if it
+     * cannot be written or moved.
+     *
+     * @param file the file to replace
+     * @param lines the lines to write
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path file, List<String> lines) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (String line : lines) {
+            content.append(line).append(System.lineSeparator());
+        }
+        write(file, content.toString());
+    }
+
+    /**
+     * Replaces a file by the specified text, like {@link #write(Path, List)}.
+     *
+     * @param file the file to replace
+     * @param content the text to write
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path file, String content) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // only left if the file could not be written or moved
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Removes all entries of the cache.
+     *
+     * @throws IOException if an entry cannot be deleted
+     */
+    public void invalidate() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+
+    /**
+     * Returns the file name of the entry for a call.
+     */
+    private String key(String operation, List<String> arguments) {
+        StringBuilder key = new StringBuilder();
+        key.append(operation).append('\n').append(fingerprint);
+        for (String argument : arguments) {
+            key.append('\n').append(argument);
+        }
+        return operation + "-" + hash(key.toString());
+    }
+
+    /**
+     * Returns the hex encoded SHA-1 hash of the text.
+     *
+     * @param text the text to hash
+     * @return the hash
+     */
+    static String hash(String text) {
+        return hash(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the hex encoded SHA-1 hash of the bytes.
+     *
+     * @param bytes the bytes to hash
+     * @return the hash
+     */
+    static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported by this JVM.", e);
+        }
+    }
+
+}
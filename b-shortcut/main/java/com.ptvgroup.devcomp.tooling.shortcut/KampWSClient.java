@@ -1,8 +1,38 @@
 package com.ptvgroup.devcomp.tooling.shortcut;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.WebServiceException;
 
 import edu.kit.ipd.sdq.kampws.client.ChangeSpecificDependencies;
 import edu.kit.ipd.sdq.kampws.client.ChangeSpecificDependenciesService;
@@ -11,26 +41,86 @@ import edu.kit.ipd.sdq.kampws.client.StringArray;
 
 /**
  * Provides the methods exposed by the KAMP web service.
+ * <p>
+ * The client connects on first use. The WSDL of the service is downloaded
+ * once and kept in the user's home directory, so later connections do not
+ * need to fetch it again; they only check that the service answers, within
+ * the connect timeout. The copy is fetched again when it is older than the
+ * time to live of the response cache, or cannot be parsed. Connect and read
+ * timeouts (in milliseconds) can be
+ * set with the system variables "B_SHORTCUT_CONNECT_TIMEOUT" and
+ * "B_SHORTCUT_READ_TIMEOUT".
+ * <p>
+ * "B_SHORTCUT_WSDL" may name several replicas of the service, separated by
+ * commas. Every call goes to the best endpoint according to its
+ * {@link EndpointHealth} first. If that endpoint fails, the call is sent to
+ * the next one. If it does not answer within the 95th percentile of the
+ * latencies of recent calls, the call is hedged: it is sent to the next
+ * endpoint as well and the first answer is taken. The percentile can be set
+ * with "B_SHORTCUT_HEDGE_PERCENTILE". A call fails if no endpoint answers
+ * within the deadline set with "B_SHORTCUT_DEADLINE" (in milliseconds, the
+ * read timeout by default). Attempts still running when another endpoint
+ * answers are cancelled.
+ * <p>
+ * The client may be used by multiple threads concurrently. The asynchronous
+ * variants of the calls are executed by up to eight threads of the client,
+ * the attempts at single endpoints by up to sixteen. Views of a client (see
+ * {@link #newView()}) share these threads.
  * 
  * @author Milena Neumann
  */
 public class KampWSClient {
 
-    private ChangeSpecificDependencies csd;
+    // the endpoints by WSDL, in the configured order
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
 
-    private final String DEFAULT_WSDL = "http://localhost:8080/kamp-ws/services/changeSpecificDependencies?wsdl";
+    private final EndpointHealth health;
 
-    public KampWSClient() throws MalformedURLException {
-        String wsdlVariable = System.getenv("B_SHORTCUT_WSDL");
-        URL wsdl;
-        if (wsdlVariable == null) {
-            wsdl = new URL(DEFAULT_WSDL);
-        } else {
-            wsdl = new URL(wsdlVariable);
-        }
+    // the client whose threads are used, this one unless it is a view
+    private final KampWSClient owner;
+
+    private volatile KampWSCache cache;
+
+    private volatile Metrics metrics;
+
+    private ExecutorService executor;
+
+    private ExecutorService attempts;
+
+    /** Maximum number of concurrent asynchronous requests to the web service. */
+    private static final int MAX_CONCURRENT_REQUESTS = 8;
+
+    /** Maximum number of concurrent attempts at single endpoints, e.g. hedged ones. */
+    private static final int MAX_CONCURRENT_ATTEMPTS = 16;
+
+    private static final String DEFAULT_WSDL =
+        "http://localhost:8080/kamp-ws/services/changeSpecificDependencies?wsdl";
+
+    private static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+
+    private static final int DEFAULT_READ_TIMEOUT = 60000;
 
-        ChangeSpecificDependenciesService service = new ChangeSpecificDependenciesService(wsdl);
-        csd = service.getChangeSpecificDependenciesPort();
+    private static final int DEFAULT_HEDGE_PERCENTILE = 95;
+
+    private final int connectTimeout = getTimeout("B_SHORTCUT_CONNECT_TIMEOUT", DEFAULT_CONNECT_TIMEOUT);
+
+    private final int readTimeout = getTimeout("B_SHORTCUT_READ_TIMEOUT", DEFAULT_READ_TIMEOUT);
+
+    // a call must not give up before a single attempt has timed out
+    private final int deadline = getTimeout("B_SHORTCUT_DEADLINE", readTimeout);
+
+    private final int hedgePercentile = Math.min(100, getTimeout("B_SHORTCUT_HEDGE_PERCENTILE",
+        DEFAULT_HEDGE_PERCENTILE));
+
+    /**
+     * Initialize Client to access the endpoints configured by the system
+     * variable "B_SHORTCUT_WSDL". The health of the endpoints is kept in the
+     * user's home directory.
+     * 
+     * @throws MalformedURLException if a configured WSDL is not a valid URL
+     */
+    public KampWSClient() throws MalformedURLException {
+        this(parseWsdls(System.getenv("B_SHORTCUT_WSDL")), EndpointHealth.load());
     }
 
     /**
@@ -39,8 +129,136 @@ public class KampWSClient {
      * @param wsdl WSDL of the service
      */
     public KampWSClient(URL wsdl) {
-        ChangeSpecificDependenciesService service = new ChangeSpecificDependenciesService(wsdl);
-        csd = service.getChangeSpecificDependenciesPort();
+        this(Collections.singletonList(wsdl), new EndpointHealth());
+    }
+
+    /**
+     * Initialize Client to access the replicas of the web service with the
+     * specified WSDLs.
+     * 
+     * @param wsdls WSDLs of the replicas, preferred ones first
+     * @throws IllegalArgumentException if no WSDL is specified
+     */
+    public KampWSClient(List<URL> wsdls) {
+        this(wsdls, new EndpointHealth());
+    }
+
+    private KampWSClient(List<URL> wsdls, EndpointHealth health) {
+        if (wsdls.isEmpty()) {
+            throw new IllegalArgumentException("No WSDL of the KAMP web service specified.");
+        }
+        for (URL wsdl : wsdls) {
+            endpoints.put(wsdl.toString(), new Endpoint(wsdl, null));
+        }
+        this.health = health;
+        this.owner = this;
+    }
+
+    /**
+     * Initialize Client to call the specified implementation of the service
+     * directly, from all threads.
+     * 
+     * @param wsdl WSDL the responses are cached for
+     * @param port thread-safe implementation of the service
+     */
+    KampWSClient(URL wsdl, ChangeSpecificDependencies port) {
+        this(Collections.singletonMap(wsdl, port), new EndpointHealth());
+    }
+
+    /**
+     * Initialize Client to call the specified implementations of the service
+     * directly, from all threads.
+     * 
+     * @param ports thread-safe implementations of the service by the WSDL
+     *            they stand for, preferred ones first
+     * @param health the health of the endpoints
+     */
+    KampWSClient(Map<URL, ChangeSpecificDependencies> ports, EndpointHealth health) {
+        for (Map.Entry<URL, ChangeSpecificDependencies> port : ports.entrySet()) {
+            endpoints.put(port.getKey().toString(), new Endpoint(port.getKey(), port.getValue()));
+        }
+        this.health = health;
+        this.owner = this;
+    }
+
+    private KampWSClient(KampWSClient owner) {
+        endpoints.putAll(owner.endpoints);
+        this.health = owner.health;
+        this.owner = owner;
+        this.cache = owner.cache;
+    }
+
+    /**
+     * Returns a view of this client calling the same endpoints, e.g. for one
+     * of the commands executed by a daemon. The view shares the connections,
+     * the health of the endpoints and the threads with this client, and
+     * starts with its cache, but records its calls in metrics of its own.
+     *
+     * @return the view, without metrics
+     */
+    public KampWSClient newView() {
+        return new KampWSClient(owner);
+    }
+
+    /**
+     * Connects to the best web service endpoint, unless already connected. All
+     * other methods connect on demand; calling this only reveals connection
+     * problems early.
+     * 
+     * @throws WebServiceException if the WSDL of no endpoint can be loaded
+     */
+    public void connect() throws WebServiceException {
+        WebServiceException failure = null;
+        for (String key : health.rank(new ArrayList<>(endpoints.keySet()))) {
+            try {
+                endpoints.get(key).connect();
+                return;
+            } catch (WebServiceException e) {
+                health.recordFailure(key);
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Stores the health of the endpoints, so that the next process calls the
+     * best endpoint first.
+     * 
+     * @throws IOException if the health cannot be stored
+     */
+    public void saveHealth() throws IOException {
+        health.save();
+    }
+
+    /**
+     * Returns the WSDL of the service this client is bound to. If there are
+     * multiple replicas, the one configured first is returned.
+     * 
+     * @return WSDL of the service
+     */
+    public URL getWsdl() {
+        return endpoints.values().iterator().next().wsdl;
+    }
+
+    /**
+     * Sets the cache to answer calls from; responses of the service are stored
+     * in it. Passing null disables caching.
+     * 
+     * @param cache the cache to use
+     */
+    public void setCache(KampWSCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the metrics to record every call in, including calls answered from
+     * the cache. Passing null disables recording.
+     * 
+     * @param metrics the metrics to use
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
     }
 
     /**
@@ -49,7 +267,23 @@ public class KampWSClient {
      * @return list of project names known to the service
      */
     public List<String> getPossibleProjectNames() {
-        return csd.getPossibleProjectNames().getItem();
+        List<String> arguments = Collections.emptyList();
+        List<String> cached = lookup("getPossibleProjectNames", arguments);
+        if (cached != null) {
+            return cached;
+        }
+        long start = System.nanoTime();
+        try {
+            return store("getPossibleProjectNames", arguments,
+                invoke("getPossibleProjectNames", port -> port.getPossibleProjectNames()), start);
+        } catch (IllegalArgumentException_Exception e) {
+            // not declared by the operation
+            record("getPossibleProjectNames", start, null, false);
+            throw new IllegalStateException(e.getMessage(), e);
+        } catch (WebServiceException e) {
+            record("getPossibleProjectNames", start, null, false);
+            throw e;
+        }
     }
 
     /**
@@ -60,11 +294,22 @@ public class KampWSClient {
      * @throws IllegalArgumentException if project name is not recognized
      */
     public List<String> getChangeScenarios(String projectName) throws IllegalArgumentException {
+        List<String> arguments = Arrays.asList(projectName);
+        List<String> cached = lookup("getChangeScenarios", arguments);
+        if (cached != null) {
+            return cached;
+        }
+        long start = System.nanoTime();
         try {
-            return csd.getChangeScenarios(projectName).getItem();
+            return store("getChangeScenarios", arguments,
+                invoke("getChangeScenarios", port -> port.getChangeScenarios(projectName)), start);
         } catch (IllegalArgumentException_Exception e) {
+            record("getChangeScenarios", start, null, false);
             throw new IllegalArgumentException("Could not find change scenarios for project. (" + e.getMessage()
                 + ")");
+        } catch (WebServiceException e) {
+            record("getChangeScenarios", start, null, false);
+            throw e;
         }
     }
 
@@ -77,12 +322,22 @@ public class KampWSClient {
      *             not recognized
      */
     public List<String> getChangeSpecificDependencies(List<String> changeScenarios) throws IllegalArgumentException {
+        List<String> cached = lookup("getChangeSpecificDependencies", changeScenarios);
+        if (cached != null) {
+            return cached;
+        }
         StringArray input = new StringArray();
         input.getItem().addAll(changeScenarios);
+        long start = System.nanoTime();
         try {
-            return csd.getChangeSpecificDependencies(input).getItem();
+            return store("getChangeSpecificDependencies", changeScenarios,
+                invoke("getChangeSpecificDependencies", port -> port.getChangeSpecificDependencies(input)), start);
         } catch (IllegalArgumentException_Exception e) {
+            record("getChangeSpecificDependencies", start, null, false);
             throw new IllegalArgumentException("Could not resolve dependencies. (" + e.getMessage() + ")");
+        } catch (WebServiceException e) {
+            record("getChangeSpecificDependencies", start, null, false);
+            throw e;
         }
     }
 
@@ -96,12 +351,414 @@ public class KampWSClient {
      *             recognized
      */
     public List<String> getBuildSpecificationPaths(List<String> projectNames) throws IllegalArgumentException {
+        List<String> cached = lookup("getBuildSpecificationPaths", projectNames);
+        if (cached != null) {
+            return cached;
+        }
         StringArray input = new StringArray();
         input.getItem().addAll(projectNames);
+        long start = System.nanoTime();
         try {
-            return csd.getBuildSpecificationPaths(input).getItem();
+            return store("getBuildSpecificationPaths", projectNames,
+                invoke("getBuildSpecificationPaths", port -> port.getBuildSpecificationPaths(input)), start);
         } catch (IllegalArgumentException_Exception e) {
+            record("getBuildSpecificationPaths", start, null, false);
             throw new IllegalArgumentException("Could not find build specification paths. (" + e.getMessage() + ")");
+        } catch (WebServiceException e) {
+            record("getBuildSpecificationPaths", start, null, false);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the change scenarios for the project with the specified name,
+     * without waiting for the response.
+     * 
+     * @param projectName name of the project
+     * @return the future list of change scenarios for the project; completes
+     *         exceptionally with an IllegalArgumentException if the project name
+     *         is not recognized
+     */
+    public CompletableFuture<List<String>> getChangeScenariosAsync(String projectName) {
+        return CompletableFuture.supplyAsync(() -> getChangeScenarios(projectName), executor());
+    }
+
+    /**
+     * Returns the dependent projects for the specified change scenarios,
+     * without waiting for the response.
+     * 
+     * @param changeScenarios the changed projects
+     * @return the future list of projects affected by the changes; completes
+     *         exceptionally with an IllegalArgumentException if one or multiple
+     *         change scenarios are not recognized
+     */
+    public CompletableFuture<List<String>> getChangeSpecificDependenciesAsync(List<String> changeScenarios) {
+        return CompletableFuture.supplyAsync(() -> getChangeSpecificDependencies(changeScenarios), executor());
+    }
+
+    /**
+     * Returns the paths of build specification files for the specified
+     * projects, without waiting for the response.
+     * 
+     * @param projectNames names of the projects of interest
+     * @return the future list of paths of build specification files; completes
+     *         exceptionally with an IllegalArgumentException if one or multiple
+     *         project names are not recognized
+     */
+    public CompletableFuture<List<String>> getBuildSpecificationPathsAsync(List<String> projectNames) {
+        return CompletableFuture.supplyAsync(() -> getBuildSpecificationPaths(projectNames), executor());
+    }
+
+    /**
+     * Returns the cached response for a call, or null if it has to be made.
+     */
+    private List<String> lookup(String operation, List<String> arguments) {
+        if (cache == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        List<String> response = cache.get(operation, arguments);
+        if (response != null) {
+            record(operation, start, response, true);
+        }
+        return response;
+    }
+
+    /**
+     * Stores the response of a call in the cache and returns it.
+     */
+    private List<String> store(String operation, List<String> arguments, List<String> response, long start) {
+        record(operation, start, response, false);
+        if (cache != null) {
+            cache.put(operation, arguments, response);
+        }
+        return response;
+    }
+
+    /**
+     * Records a call started at the specified time, if metrics are recorded.
+     */
+    private void record(String operation, long start, List<String> response, boolean cached) {
+        Metrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordCall(operation, System.nanoTime() - start, response, cached);
+        }
+    }
+
+    /**
+     * Calls an operation of the service at the best endpoint, hedging and
+     * failing over to the other endpoints as described above.
+     */
+    private List<String> invoke(String operation, Call call) throws IllegalArgumentException_Exception {
+        List<String> ranked = health.rank(new ArrayList<>(endpoints.keySet()));
+        long now = System.nanoTime();
+        long deadlineTime = now + TimeUnit.MILLISECONDS.toNanos(deadline);
+        long hedgeDelay = TimeUnit.MILLISECONDS.toNanos(health.getHedgeDelay(ranked.get(0), operation,
+            hedgePercentile));
+        long hedgeTime = now;
+        CompletionService<List<String>> completion = new ExecutorCompletionService<>(attempts());
+        List<Future<List<String>>> submitted = new ArrayList<>();
+        AtomicBoolean finished = new AtomicBoolean();
+        int started = 0;
+        int pending = 0;
+        RuntimeException failure = null;
+        try {
+            while (true) {
+                now = System.nanoTime();
+                if (deadlineTime - now <= 0) {
+                    break;
+                }
+                if (started < ranked.size() && (pending == 0 || now - hedgeTime >= 0)) {
+                    submitted.add(completion.submit(attempt(ranked.get(started++), operation, call, finished)));
+                    pending++;
+                    hedgeTime = now + hedgeDelay;
+                    continue;
+                }
+                if (pending == 0) {
+                    // every endpoint failed
+                    throw failure;
+                }
+
+                long wait = deadlineTime - now;
+                if (started < ranked.size()) {
+                    wait = Math.min(wait, hedgeTime - now);
+                }
+                Future<List<String>> answer = completion.poll(wait, TimeUnit.NANOSECONDS);
+                if (answer == null) {
+                    continue;
+                }
+                pending--;
+                try {
+                    return answer.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IllegalArgumentException_Exception) {
+                        throw (IllegalArgumentException_Exception) e.getCause();
+                    }
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                        : new WebServiceException(e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebServiceException("Interrupted while calling " + operation + ".", e);
+        } finally {
+            // the attempts that lost the race
+            finished.set(true);
+            for (Future<List<String>> attempt : submitted) {
+                attempt.cancel(true);
+            }
+        }
+        throw new WebServiceException("No answer to " + operation + " within " + deadline + "ms from "
+            + ranked.subList(0, started) + (failure != null ? " (" + failure.getMessage() + ")" : "") + ".");
+    }
+
+    /**
+     * Returns a task calling an operation at the specified endpoint and
+     * recording the health of the endpoint. Attempts failing because the call
+     * is finished and they were cancelled do not count as failures.
+     */
+    private Callable<List<String>> attempt(String key, String operation, Call call, AtomicBoolean finished) {
+        Endpoint endpoint = endpoints.get(key);
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                List<String> response = call.call(endpoint.port()).getItem();
+                health.recordSuccess(key, operation, System.nanoTime() - start);
+                return response;
+            } catch (IllegalArgumentException_Exception e) {
+                // the endpoint answered
+                health.recordSuccess(key, operation, System.nanoTime() - start);
+                throw e;
+            } catch (RuntimeException e) {
+                if (!finished.get()) {
+                    // not cancelled because the call is decided
+                    health.recordFailure(key);
+                }
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Returns the executor of the asynchronous calls, creating it on first use.
+     */
+    private synchronized ExecutorService executor() {
+        if (owner != this) {
+            return owner.executor();
+        }
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS, daemonThreads("kampws-"));
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the executor of the calls to single endpoints, creating it on
+     * first use. Its threads are separate from those of the asynchronous
+     * calls, which wait for them, and end when idle.
+     */
+    private synchronized ExecutorService attempts() {
+        if (owner != this) {
+            return owner.attempts();
+        }
+        if (attempts == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_CONCURRENT_ATTEMPTS, MAX_CONCURRENT_ATTEMPTS, 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), daemonThreads("kampws-attempt-"));
+            pool.allowCoreThreadTimeOut(true);
+            attempts = pool;
+        }
+        return attempts;
+    }
+
+    /**
+     * Returns a factory of numbered threads that do not keep the JVM alive.
+     */
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Returns the URLs in the specified comma-separated list, or the default
+     * WSDL if there are none.
+     */
+    private static List<URL> parseWsdls(String wsdlVariable) throws MalformedURLException {
+        List<URL> result = new ArrayList<>();
+        if (wsdlVariable != null) {
+            for (String wsdl : wsdlVariable.split(",")) {
+                if (!wsdl.trim().isEmpty()) {
+                    result.add(new URL(wsdl.trim()));
+                }
+            }
+        }
+        if (result.isEmpty()) {
+            result.add(new URL(DEFAULT_WSDL));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the timeout in milliseconds from the specified system variable.
+     */
+    private static int getTimeout(String variable, int defaultTimeout) {
+        String value = System.getenv(variable);
+        if (value == null) {
+            return defaultTimeout;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid timeout \"" + value + "\" in " + variable + ".");
+            return defaultTimeout;
+        }
+    }
+
+    /**
+     * Calls an operation of the service.
+     */
+    private interface Call {
+        StringArray call(ChangeSpecificDependencies port) throws IllegalArgumentException_Exception;
+    }
+
+    /**
+     * A replica of the service.
+     */
+    private class Endpoint {
+
+        private final URL wsdl;
+
+        // thread-safe implementation used instead of the service, e.g. in tests
+        private final ChangeSpecificDependencies sharedPort;
+
+        private ChangeSpecificDependenciesService service;
+
+        // ports must not be shared between threads
+        private final ThreadLocal<ChangeSpecificDependencies> ports = new ThreadLocal<>();
+
+        Endpoint(URL wsdl, ChangeSpecificDependencies sharedPort) {
+            this.wsdl = wsdl;
+            this.sharedPort = sharedPort;
+        }
+
+        /**
+         * Loads the WSDL of the endpoint, unless already loaded.
+         */
+        synchronized void connect() throws WebServiceException {
+            if (service != null || sharedPort != null) {
+                return;
+            }
+
+            Path copy = getLocalCopy();
+            if (copy == null) {
+                service = new ChangeSpecificDependenciesService(wsdl);
+                return;
+            }
+            boolean fresh = false;
+            try {
+                if (Files.isRegularFile(copy)
+                    && System.currentTimeMillis() - Files.getLastModifiedTime(copy).toMillis()
+                        < KampWSCache.getTimeToLive()) {
+                    // a copy does not prove that the service is running
+                    ping();
+                } else {
+                    download(copy);
+                    fresh = true;
+                }
+                service = new ChangeSpecificDependenciesService(copy.toUri().toURL());
+            } catch (IOException e) {
+                throw new WebServiceException("Could not load WSDL from " + wsdl + " (" + e.getMessage() + ")");
+            } catch (WebServiceException e) {
+                if (fresh) {
+                    throw e;
+                }
+                // the cached copy is damaged or outdated; the service answered
+                // the ping, so fetching it again does not wait in vain
+                try {
+                    download(copy);
+                    service = new ChangeSpecificDependenciesService(copy.toUri().toURL());
+                } catch (IOException e2) {
+                    throw new WebServiceException("Could not load WSDL from " + wsdl + " (" + e2.getMessage()
+                        + ")");
+                }
+            }
+        }
+
+        /**
+         * Returns the port of the calling thread.
+         */
+        ChangeSpecificDependencies port() {
+            if (sharedPort != null) {
+                return sharedPort;
+            }
+            ChangeSpecificDependencies port = ports.get();
+            if (port == null) {
+                connect();
+                port = service.getChangeSpecificDependenciesPort();
+
+                // JAX-WS reference implementation and Apache CXF use different keys
+                Map<String, Object> context = ((BindingProvider) port).getRequestContext();
+                context.put("com.sun.xml.ws.connect.timeout", connectTimeout);
+                context.put("com.sun.xml.ws.request.timeout", readTimeout);
+                context.put("com.sun.xml.internal.ws.connect.timeout", connectTimeout);
+                context.put("com.sun.xml.internal.ws.request.timeout", readTimeout);
+                context.put("javax.xml.ws.client.connectionTimeout", connectTimeout);
+                context.put("javax.xml.ws.client.receiveTimeout", readTimeout);
+                ports.set(port);
+            }
+            return port;
+        }
+
+        /**
+         * Returns the location of the local copy of the WSDL, or null if the
+         * WSDL is not fetched via HTTP and thus used directly.
+         */
+        private Path getLocalCopy() {
+            String protocol = wsdl.getProtocol();
+            if (!protocol.equals("http") && !protocol.equals("https")) {
+                return null;
+            }
+            return Paths.get(System.getProperty("user.home"), KampWSCache.CACHE_DIRECTORY, "wsdl",
+                KampWSCache.hash(wsdl.toString()) + ".wsdl");
+        }
+
+        /**
+         * Downloads the WSDL to the specified local copy.
+         */
+        private void download(Path copy) throws IOException {
+            Files.createDirectories(copy.getParent());
+            Path temp = Files.createTempFile(copy.getParent(), "wsdl", ".tmp");
+            try {
+                URLConnection connection = wsdl.openConnection();
+                connection.setConnectTimeout(connectTimeout);
+                connection.setReadTimeout(readTimeout);
+                try (InputStream in = connection.getInputStream()) {
+                    Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(temp, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        /**
+         * Checks that the service answers at all, waiting no longer than the
+         * connect timeout. Any HTTP response will do, as only the WSDL is
+         * requested.
+         */
+        private void ping() throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) wsdl.openConnection();
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(connectTimeout);
+            connection.setRequestMethod("HEAD");
+            try {
+                connection.getResponseCode();
+            } finally {
+                connection.disconnect();
+            }
         }
     }
 
@@ -0,0 +1,138 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Executes Maven in a child process whose output is copied to a stream of
+ * this process, unlike a process inheriting the console of this process.
+ * <p>
+ * Maven is executed through the "b" wrapper on the path ("b.cmd" on
+ * Windows), like the builds executed by the command itself, so that both
+ * get the same settings. Another executable taking the Maven options can be
+ * given by the system variable "B_SHORTCUT_MVN". The output of Maven is read
+ * as UTF-8 when it is followed line by line.
+ */
+public class MavenProcess {
+
+    private final Path directory;
+
+    /**
+     * Initialize a Maven process executed in the specified directory.
+     *
+     * @param directory the directory to execute Maven in
+     */
+    public MavenProcess(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Executes Maven with the specified options and waits for it to finish.
+     *
+     * @param options the options passed to Maven
+     * @param output the stream to copy standard output and error of Maven to
+     * @return the exit code of Maven
+     * @throws IOException if Maven cannot be started
+     * @throws InterruptedException if interrupted while waiting for Maven
+     */
+    public int execute(List<String> options, PrintStream output) throws IOException, InterruptedException {
+        return execute(options, output, null);
+    }
+
+    /**
+     * Executes Maven with the specified options and waits for it to finish,
+     * passing every line of its output to the specified monitor. Maven is
+     * terminated along with the processes it started as soon as the monitor
+     * asks to abort the build.
+     *
+     * @param options the options passed to Maven
+     * @param output the stream to copy standard output and error of Maven to
+     * @param monitor the monitor following the output, or null
+     * @return the exit code of Maven
+     * @throws IOException if Maven cannot be started
+     * @throws InterruptedException if interrupted while waiting for Maven
+     */
+    public int execute(List<String> options, PrintStream output, BuildMonitor monitor)
+        throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(getExecutable());
+        command.addAll(options);
+
+        Process process = new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true)
+            .start();
+        process.getOutputStream().close();
+        if (monitor == null) {
+            try (InputStream in = process.getInputStream()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    output.write(buffer, 0, read);
+                }
+                output.flush();
+            }
+            return process.waitFor();
+        }
+
+        boolean aborted = false;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(),
+            StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                output.println(line);
+                if (!aborted && !monitor.accept(line)) {
+                    aborted = true;
+                    output.println("[shortcut] Aborting the build: " + monitor.getAbortReason() + ".");
+                    destroyTree(process);
+                }
+            }
+            output.flush();
+        }
+        int exitCode = process.waitFor();
+        monitor.finish(exitCode);
+        return aborted && exitCode == 0 ? 1 : exitCode;
+    }
+
+    /**
+     * Terminates a process and all processes started by it, e.g. the JVM of
+     * Maven started by the wrapper script. The descendants of a process are
+     * only known since Java 9, so they are looked up by reflection; otherwise
+     * only the process itself is terminated.
+     */
+    static void destroyTree(Process process) {
+        try {
+            Class<?> handleType = Class.forName("java.lang.ProcessHandle");
+            Object handle = Process.class.getMethod("toHandle").invoke(process);
+            Object[] descendants = ((Stream<?>) handleType.getMethod("descendants").invoke(handle)).toArray();
+            Method destroy = handleType.getMethod("destroy");
+            for (Object descendant : descendants) {
+                destroy.invoke(descendant);
+            }
+        } catch (ReflectiveOperationException e) {
+            // before Java 9
+        }
+        process.destroy();
+    }
+
+    /**
+     * Returns the executable Maven is executed through.
+     *
+     * @return the executable given by "B_SHORTCUT_MVN", or the "b" wrapper
+     */
+    public static String getExecutable() {
+        String executable = System.getenv("B_SHORTCUT_MVN");
+        if (executable != null && !executable.isEmpty()) {
+            return executable;
+        }
+        return System.getProperty("os.name", "").startsWith("Windows") ? "b.cmd" : "b";
+    }
+
+}
@@ -0,0 +1,242 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records how long the phases of a shortcut run take, along with latency and
+ * payload size of every call to the web service.
+ * <p>
+ * Phases are sequential: starting a phase ends the previous one. Calls may be
+ * recorded by multiple threads concurrently.
+ */
+public class Metrics {
+
+    private final long startTime = System.currentTimeMillis();
+    private final long start = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+    private final List<Call> calls = new ArrayList<>();
+    private String phase;
+    private long phaseStart;
+    private long duration = -1;
+    private int exitCode;
+
+    /**
+     * Ends the current phase, if any, and starts the specified one.
+     *
+     * @param name the name of the phase
+     */
+    public synchronized void startPhase(String name) {
+        endPhase();
+        phase = name;
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * Ends the current phase, if any.
+     */
+    public synchronized void endPhase() {
+        if (phase != null) {
+            phases.add(new Phase(phase, System.nanoTime() - phaseStart));
+            phase = null;
+        }
+    }
+
+    /**
+     * Ends the run.
+     *
+     * @param exitCode the exit code of the run
+     */
+    public synchronized void finish(int exitCode) {
+        endPhase();
+        this.duration = System.nanoTime() - start;
+        this.exitCode = exitCode;
+    }
+
+    /**
+     * Records a call to the web service.
+     *
+     * @param operation the called operation
+     * @param nanos how long the call took, in nanoseconds
+     * @param response the response, or null if the call failed
+     * @param cached whether the response was taken from the cache
+     */
+    public void recordCall(String operation, long nanos, List<String> response, boolean cached) {
+        long bytes = 0;
+        if (response != null) {
+            for (String item : response) {
+                bytes += item.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        Call call = new Call(operation, nanos, response == null ? -1 : response.size(), bytes, cached);
+        synchronized (this) {
+            calls.add(call);
+        }
+    }
+
+    /**
+     * Returns the durations of the ended phases.
+     *
+     * @return the durations in milliseconds by phase, in the order the phases
+     *         ended; the durations of repeated phases are added up
+     */
+    public synchronized Map<String, Double> getPhaseDurations() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Phase p : phases) {
+            result.merge(p.name, millis(p.nanos), Double::sum);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the metrics to the specified file. Files ending with ".prom" are
+     * replaced with the metrics of this run in the Prometheus text format;
+     * other files get one JSON object per phase, call and run appended.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void write(Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(".prom")) {
+            // replace atomically, so collectors never read a partial file
+            StringWriter writer = new StringWriter();
+            writePrometheus(writer);
+            KampWSCache.write(file, writer.toString());
+        } else {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+                writeJsonLines(writer);
+            }
+        }
+    }
+
+    private void writeJsonLines(Writer writer) throws IOException {
+        String run = "{\"run\":" + startTime + ",";
+        for (Phase p : phases) {
+            writer.write(run + "\"type\":\"phase\",\"name\":" + quote(p.name) + ",\"durationMs\":"
+                + format(millis(p.nanos)) + "}\n");
+        }
+        for (Call call : calls) {
+            writer.write(run + "\"type\":\"call\",\"operation\":" + quote(call.operation) + ",\"cached\":"
+                + call.cached + ",\"error\":" + (call.items < 0) + ",\"durationMs\":" + format(millis(call.nanos))
+                + ",\"items\":" + Math.max(0, call.items) + ",\"bytes\":" + call.bytes + "}\n");
+        }
+        writer.write(run + "\"type\":\"run\",\"durationMs\":" + format(millis(duration)) + ",\"exitCode\":"
+            + exitCode + "}\n");
+    }
+
+    private void writePrometheus(Writer writer) throws IOException {
+        writer.write("# HELP shortcut_run_duration_seconds Duration of the last shortcut run.\n");
+        writer.write("# TYPE shortcut_run_duration_seconds gauge\n");
+        writer.write("shortcut_run_duration_seconds " + format(seconds(duration)) + "\n");
+        writer.write("# HELP shortcut_run_exit_code Exit code of the last shortcut run.\n");
+        writer.write("# TYPE shortcut_run_exit_code gauge\n");
+        writer.write("shortcut_run_exit_code " + exitCode + "\n");
+        writer.write("# HELP shortcut_run_timestamp_seconds Start of the last shortcut run.\n");
+        writer.write("# TYPE shortcut_run_timestamp_seconds gauge\n");
+        writer.write("shortcut_run_timestamp_seconds " + startTime / 1000 + "\n");
+
+        writer.write("# HELP shortcut_phase_duration_seconds Duration of the phases of the last shortcut run.\n");
+        writer.write("# TYPE shortcut_phase_duration_seconds gauge\n");
+        for (Map.Entry<String, Double> p : getPhaseDurations().entrySet()) {
+            writer.write("shortcut_phase_duration_seconds{phase=" + label(p.getKey()) + "} "
+                + format(p.getValue() / 1000) + "\n");
+        }
+
+        Map<String, long[]> totals = new TreeMap<>();
+        for (Call call : calls) {
+            String labels = "{operation=" + label(call.operation) + ",cached=\"" + call.cached + "\",error=\""
+                + (call.items < 0) + "\"}";
+            long[] total = totals.computeIfAbsent(labels, key -> new long[5]);
+            total[0]++;
+            total[1] += call.nanos;
+            total[2] = Math.max(total[2], call.nanos);
+            total[3] += Math.max(0, call.items);
+            total[4] += call.bytes;
+        }
+        String[][] series = {
+            { "shortcut_ws_calls", "Number of web service calls in the last shortcut run." },
+            { "shortcut_ws_call_duration_seconds", "Total latency of the web service calls." },
+            { "shortcut_ws_call_duration_max_seconds", "Highest latency of a web service call." },
+            { "shortcut_ws_response_items", "Total number of items returned by the web service." },
+            { "shortcut_ws_response_bytes", "Total size of the items returned by the web service." } };
+        for (int i = 0; i < series.length; i++) {
+            writer.write("# HELP " + series[i][0] + " " + series[i][1] + "\n");
+            writer.write("# TYPE " + series[i][0] + " gauge\n");
+            for (Map.Entry<String, long[]> total : totals.entrySet()) {
+                long value = total.getValue()[i];
+                writer.write(series[i][0] + total.getKey() + " "
+                    + (i == 1 || i == 2 ? format(seconds(value)) : Long.toString(value)) + "\n");
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String quote(String value) {
+        StringBuilder result = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < 0x20) {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    private static String label(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    private static class Phase {
+        private final String name;
+        private final long nanos;
+
+        Phase(String name, long nanos) {
+            this.name = name;
+            this.nanos = nanos;
+        }
+    }
+
+    private static class Call {
+        private final String operation;
+        private final long nanos;
+        private final int items;
+        private final long bytes;
+        private final boolean cached;
+
+        Call(String operation, long nanos, int items, long bytes, boolean cached) {
+            this.operation = operation;
+            this.nanos = nanos;
+            this.items = items;
+            this.bytes = bytes;
+            this.cached = cached;
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The dependencies among a set of modules. Dependencies on modules outside
+ * the set are not part of the graph.
+ */
+public class ModuleGraph {
+
+    private final List<String> modules;
+    private final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+    private final Map<String, Set<String>> externalDependencies = new HashMap<>();
+
+    /**
+     * Initialize the graph of the specified modules.
+     *
+     * @param modules the modules
+     * @param dependencies the modules each module depends on; modules not in
+     *            the set are ignored
+     */
+    public ModuleGraph(List<String> modules, Map<String, ? extends Collection<String>> dependencies) {
+        this.modules = Collections.unmodifiableList(new ArrayList<>(modules));
+        for (String module : modules) {
+            this.dependencies.put(module, new LinkedHashSet<String>());
+        }
+        for (String module : modules) {
+            Collection<String> upstream = dependencies.get(module);
+            if (upstream == null) {
+                continue;
+            }
+            for (String dependency : upstream) {
+                if (this.dependencies.containsKey(dependency) && !dependency.equals(module)) {
+                    this.dependencies.get(module).add(dependency);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the graph of the specified modules from their POM files. A module
+     * depends on the modules it declares as dependencies and on its parent.
+     * Modules whose POM file cannot be read have no dependencies. The declared
+     * dependencies that are none of the modules are kept as external
+     * dependencies.
+     *
+     * @param root the root directory of the checkout
+     * @param modules the module directories, relative to root
+     * @return the graph
+     */
+    public static ModuleGraph read(Path root, List<String> modules) {
+        Map<String, PomInfo> poms = new HashMap<>();
+        Map<String, String> modulesByCoordinates = new HashMap<>();
+        for (String module : modules) {
+            try {
+                PomInfo pom = PomReader.readPomInfo(root.resolve(module).resolve(ModuleIndex.POM_FILE));
+                poms.put(module, pom);
+                modulesByCoordinates.put(pom.getCoordinates(), module);
+            } catch (IOException e) {
+                // built without ordering constraints
+            }
+        }
+
+        Map<String, List<String>> dependencies = new HashMap<>();
+        Map<String, Set<String>> externalDependencies = new HashMap<>();
+        for (Map.Entry<String, PomInfo> pom : poms.entrySet()) {
+            List<String> upstream = new ArrayList<>();
+            Set<String> external = new LinkedHashSet<>();
+            List<String> coordinates = new ArrayList<>(pom.getValue().getDependencies());
+            if (pom.getValue().getParent() != null) {
+                coordinates.add(pom.getValue().getParent());
+            }
+            for (String dependency : coordinates) {
+                String module = modulesByCoordinates.get(dependency);
+                if (module != null) {
+                    upstream.add(module);
+                } else {
+                    external.add(dependency);
+                }
+            }
+            dependencies.put(pom.getKey(), upstream);
+            externalDependencies.put(pom.getKey(), external);
+        }
+        ModuleGraph graph = new ModuleGraph(modules, dependencies);
+        graph.externalDependencies.putAll(externalDependencies);
+        return graph;
+    }
+
+    /**
+     * Returns the graph of a subset of the modules. Dependencies through
+     * modules outside the subset are not retained.
+     *
+     * @param subset modules of this graph
+     * @return the graph of the subset
+     */
+    public ModuleGraph subgraph(Collection<String> subset) {
+        List<String> retained = new ArrayList<>();
+        for (String module : modules) {
+            if (subset.contains(module)) {
+                retained.add(module);
+            }
+        }
+        ModuleGraph graph = new ModuleGraph(retained, dependencies);
+        for (String module : retained) {
+            if (externalDependencies.containsKey(module)) {
+                graph.externalDependencies.put(module, externalDependencies.get(module));
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Returns the modules of the graph.
+     *
+     * @return the modules, in the order given on creation
+     */
+    public List<String> getModules() {
+        return modules;
+    }
+
+    /**
+     * Returns the modules the specified module directly depends on.
+     *
+     * @param module a module of the graph
+     * @return the upstream modules
+     */
+    public Set<String> getDependencies(String module) {
+        return Collections.unmodifiableSet(dependencies.get(module));
+    }
+
+    /**
+     * Returns the dependencies of the specified module that are none of the
+     * modules the graph was read from.
+     *
+     * @param module a module of the graph
+     * @return the coordinates ("groupId:artifactId") of the external
+     *         dependencies and of an external parent
+     */
+    public Set<String> getExternalDependencies(String module) {
+        Set<String> external = externalDependencies.get(module);
+        return external != null ? Collections.unmodifiableSet(external) : Collections.<String> emptySet();
+    }
+
+    /**
+     * Returns the modules ordered by the expected duration of the longest
+     * chain of modules depending on them, including themselves, longest
+     * first. If several modules may be built at once, building them in this
+     * order starts the modules on the critical path first. Every module
+     * comes after the modules it depends on, unless they are expected to
+     * take no time; ties keep the order of the graph.
+     *
+     * @param durations the expected durations of the modules
+     * @return the modules
+     */
+    public List<String> sortByCriticalPath(BuildDurations durations) {
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (String module : modules) {
+            dependents.put(module, new ArrayList<String>());
+        }
+        for (String module : modules) {
+            for (String dependency : dependencies.get(module)) {
+                dependents.get(dependency).add(module);
+            }
+        }
+        Map<String, Double> lengths = new HashMap<>();
+        for (String module : modules) {
+            getChainLength(module, dependents, durations, lengths, new HashSet<String>());
+        }
+        List<String> result = new ArrayList<>(modules);
+        Collections.sort(result, (a, b) -> Double.compare(lengths.get(b), lengths.get(a)));
+        return result;
+    }
+
+    /**
+     * Returns the expected duration of the longest chain of modules starting
+     * with the specified module and going downstream.
+     */
+    private static double getChainLength(String module, Map<String, List<String>> dependents,
+        BuildDurations durations, Map<String, Double> lengths, Set<String> visiting) {
+        Double known = lengths.get(module);
+        if (known != null) {
+            return known;
+        }
+        if (!visiting.add(module)) {
+            // a cycle, which Maven rejects anyway
+            return durations.getExpectedDuration(module);
+        }
+        double longest = 0;
+        for (String dependent : dependents.get(module)) {
+            longest = Math.max(longest, getChainLength(dependent, dependents, durations, lengths, visiting));
+        }
+        visiting.remove(module);
+        double length = durations.getExpectedDuration(module) + longest;
+        lengths.put(module, length);
+        return length;
+    }
+
+}
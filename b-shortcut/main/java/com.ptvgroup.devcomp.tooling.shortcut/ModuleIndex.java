@@ -0,0 +1,464 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Index of the modules (directories with a POM file) of a checkout, mapping
+ * files to the modules containing them and project names to module
+ * directories.
+ * <p>
+ * The module directories are kept in a prefix tree of path segments, so the
+ * owning module of a file is found by walking down the segments of its path
+ * and remembering the deepest module passed.
+ * <p>
+ * The index is persisted in the cache directory of the checkout. Every entry
+ * remembers modification time and size of its POM file; a POM file is only
+ * parsed again if either of them changed.
+ * <p>
+ * If several modules define a project of the same name, the project name is
+ * mapped to the module closest to the root (the first in alphabetical order
+ * among modules of the same depth), no matter in which order they are found;
+ * {@link #getDuplicates()} reports all of them.
+ */
+public class ModuleIndex {
+
+    /** File name of build specifications. */
+    public static final String POM_FILE = "pom.xml";
+
+    /** File below the cache directory in which the index is stored. */
+    public static final String INDEX_FILE = "module-index";
+
+    private static final String HEADER = "# shortcut module index 1";
+
+    // serializes saving, e.g. by a scan in the background and one of the command
+    private static final Object SAVE_LOCK = new Object();
+
+    private final Path root;
+    private final Map<String, Entry> entries = new TreeMap<>();
+    private final Map<String, String> directories = new HashMap<>();
+    private Node rootNode = new Node();
+    private boolean modified;
+
+    /**
+     * Initialize an empty index which is not backed by a checkout.
+     */
+    public ModuleIndex() {
+        this(null);
+    }
+
+    private ModuleIndex(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Loads the index stored in the checkout with the specified root
+     * directory, without scanning the checkout. Entries are validated when
+     * they are looked up with {@link #getProjectName(String)}.
+     *
+     * @param root the root directory of the checkout
+     * @return the stored index, or an empty index if there is none
+     * @throws IOException if the stored index cannot be read
+     */
+    public static ModuleIndex load(Path root) throws IOException {
+        ModuleIndex index = new ModuleIndex(root);
+        Path file = getIndexFile(root);
+        if (!Files.isRegularFile(file)) {
+            return index;
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+            // written by another version; rebuilt on the next scan
+            return index;
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length == 4) {
+                index.put(fields[0], new Entry(fields[1].isEmpty() ? null : fields[1], Long.parseLong(fields[2]),
+                    Long.parseLong(fields[3])));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of the checkout with the specified root directory,
+     * brought up to date with a scan of the checkout. Build output directories
+     * ("target"), hidden directories and source directories ("src") are
+     * skipped; the POM files below source directories are test data, e.g. of
+     * integration tests or archetypes, rather than modules. Only new or
+     * changed POM files are parsed, on all cores; the updated index is
+     * stored.
+     *
+     * @param root the root directory of the checkout
+     * @return the index of the checkout
+     * @throws IOException if the checkout cannot be read
+     */
+    public static ModuleIndex scan(Path root) throws IOException {
+        final ModuleIndex stored = load(root);
+        final ModuleIndex index = new ModuleIndex(root);
+        final Map<String, Entry> found = new LinkedHashMap<>();
+        final Map<String, Supplier<Entry>> changed = new HashMap<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                String name = dir.getFileName() == null ? "" : dir.getFileName().toString();
+                if (!dir.equals(root) && (name.startsWith(".") || name.equals("target") || name.equals("src"))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                Path pom = dir.resolve(POM_FILE);
+                if (Files.isRegularFile(pom)) {
+                    String directory = toRelativePath(root, dir);
+                    Entry entry = stored.entries.get(directory);
+                    BasicFileAttributes pomAttributes = Files.readAttributes(pom, BasicFileAttributes.class);
+                    if (entry == null || !entry.matches(pomAttributes)) {
+                        changed.put(directory, () -> parse(pom, pomAttributes));
+                        entry = null;
+                    }
+                    found.put(directory, entry);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        final Map<String, Entry> parsed = new ConcurrentHashMap<>();
+        changed.entrySet().parallelStream().forEach(pom -> parsed.put(pom.getKey(), pom.getValue().get()));
+        for (Map.Entry<String, Entry> entry : found.entrySet()) {
+            index.put(entry.getKey(), entry.getValue() != null ? entry.getValue() : parsed.get(entry.getKey()));
+        }
+
+        index.modified = !index.entries.equals(stored.entries);
+        try {
+            index.save();
+        } catch (IOException e) {
+            // an index that cannot be stored is only built again next time
+        }
+        return index;
+    }
+
+    /**
+     * Stores the index in the checkout, if it has been modified.
+     *
+     * @throws IOException if the index cannot be written
+     */
+    public void save() throws IOException {
+        if (!modified || root == null) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<>(entries.size() + 1);
+        lines.add(HEADER);
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            Entry value = entry.getValue();
+            lines.add(entry.getKey() + "\t" + (value.projectName == null ? "" : value.projectName) + "\t"
+                + value.lastModified + "\t" + value.size);
+        }
+
+        Path file = getIndexFile(root);
+        synchronized (SAVE_LOCK) {
+            KampWSCache.write(file, lines);
+        }
+        modified = false;
+    }
+
+    /**
+     * Adds a module to the index.
+     *
+     * @param directory directory of the module, relative to the checkout root
+     *            and separated by '/' ("" for the root directory)
+     * @param projectName name of the project defined in the module
+     */
+    public void add(String directory, String projectName) {
+        put(directory, new Entry(projectName, 0, 0));
+    }
+
+    /**
+     * Returns the name of the project defined in the specified module
+     * directory. The POM file is only parsed if it changed since it was
+     * indexed.
+     *
+     * @param directory directory of the module, relative to the checkout root
+     *            and separated by '/'
+     * @return the project name
+     * @throws IOException if the POM file cannot be read or is not a valid POM
+     */
+    public String getProjectName(String directory) throws IOException {
+        Entry entry = entries.get(directory);
+        if (root == null) {
+            if (entry == null || entry.projectName == null) {
+                throw new IOException("There is no project in directory " + directory + ".");
+            }
+            return entry.projectName;
+        }
+
+        Path pom = root.resolve(directory).resolve(POM_FILE);
+        BasicFileAttributes attributes = Files.readAttributes(pom, BasicFileAttributes.class);
+        if (entry == null || !entry.matches(attributes)) {
+            entry = parse(pom, attributes);
+            put(directory, entry);
+            modified = true;
+        }
+        if (entry.projectName == null) {
+            // report the actual problem
+            return PomReader.readProjectName(pom);
+        }
+        return entry.projectName;
+    }
+
+    /**
+     * Returns the directory of the module defining the project with the
+     * specified name.
+     *
+     * @param projectName name of the project
+     * @return directory of the module relative to the checkout root, or null if
+     *         the project is not in the index
+     */
+    public String getModuleDirectory(String projectName) {
+        return directories.get(projectName);
+    }
+
+    /**
+     * Returns the names of all projects in the index.
+     *
+     * @return the project names, in alphabetical order
+     */
+    public Set<String> getProjectNames() {
+        return new TreeSet<>(directories.keySet());
+    }
+
+    /**
+     * Returns a fingerprint of the modules and their project names, which
+     * changes whenever a module is added or removed or its project name
+     * changes.
+     *
+     * @return the hash of the modules
+     */
+    public String getFingerprint() {
+        StringBuilder modules = new StringBuilder();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().projectName != null) {
+                modules.append(entry.getKey()).append('\t').append(entry.getValue().projectName).append('\n');
+            }
+        }
+        return KampWSCache.hash(modules.toString());
+    }
+
+    /**
+     * Returns the project names defined by more than one module, e.g. by a
+     * copy of a module used as test data.
+     *
+     * @return the directories of the modules by project name, in alphabetical
+     *         order; empty if all project names are unique
+     */
+    public Map<String, List<String>> getDuplicates() {
+        Map<String, List<String>> modules = new TreeMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            String projectName = entry.getValue().projectName;
+            if (projectName != null) {
+                modules.computeIfAbsent(projectName, name -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        modules.values().removeIf(directories -> directories.size() < 2);
+        return modules;
+    }
+
+    /**
+     * Returns the directory of the module containing the specified file.
+     *
+     * @param file path of the file, relative to the checkout root and separated
+     *            by '/'
+     * @return directory of the module relative to the checkout root, or null if
+     *         the file is not part of any module
+     */
+    public String getOwningModule(String file) {
+        Node owner = findOwner(file);
+        return owner == null ? null : owner.directory;
+    }
+
+    /**
+     * Returns the names of the projects containing the specified files. Files
+     * not belonging to any module are ignored.
+     *
+     * @param files paths of the files, relative to the checkout root and
+     *            separated by '/'
+     * @return the project names, in the order of their first changed file
+     */
+    public Set<String> getProjectNames(Collection<String> files) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String file : files) {
+            Node owner = findOwner(file);
+            if (owner != null) {
+                result.add(entries.get(owner.directory).projectName);
+            }
+        }
+        return result;
+    }
+
+    private void put(String directory, Entry entry) {
+        Entry previous = entries.put(directory, entry);
+        if (previous != null && previous.projectName != null
+            && directory.equals(directories.get(previous.projectName))) {
+            directories.remove(previous.projectName);
+            // another module of the same name takes over
+            for (Map.Entry<String, Entry> other : entries.entrySet()) {
+                if (previous.projectName.equals(other.getValue().projectName)) {
+                    map(previous.projectName, other.getKey());
+                }
+            }
+        }
+        if (entry.projectName == null) {
+            if (previous != null && previous.projectName != null) {
+                // modules are only removed from the prefix tree by rebuilding it
+                rebuildPrefixTree();
+            }
+            return;
+        }
+        map(entry.projectName, directory);
+
+        Node node = rootNode;
+        for (String segment : segments(directory)) {
+            Node child = node.children.get(segment);
+            if (child == null) {
+                child = new Node();
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        node.directory = directory;
+    }
+
+    /**
+     * Maps the project name to the directory, unless it is mapped to a module
+     * closer to the root already.
+     */
+    private void map(String projectName, String directory) {
+        String mapped = directories.get(projectName);
+        if (mapped == null || compareModules(directory, mapped) < 0) {
+            directories.put(projectName, directory);
+        }
+    }
+
+    private static int compareModules(String directory, String other) {
+        int depth = Integer.compare(segments(directory).length, segments(other).length);
+        return depth != 0 ? depth : directory.compareTo(other);
+    }
+
+    private void rebuildPrefixTree() {
+        rootNode = new Node();
+        Map<String, Entry> all = new TreeMap<>(entries);
+        entries.clear();
+        directories.clear();
+        for (Map.Entry<String, Entry> entry : all.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private Node findOwner(String file) {
+        Node node = rootNode;
+        Node owner = node.directory != null ? node : null;
+        for (String segment : segments(file)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                break;
+            }
+            if (node.directory != null) {
+                owner = node;
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * Parses the POM file; files without a project name yield an entry without
+     * name, so they aren't parsed again until they change.
+     */
+    private static Entry parse(Path pom, BasicFileAttributes attributes) {
+        String projectName;
+        try {
+            projectName = PomReader.readProjectName(pom);
+        } catch (IOException e) {
+            projectName = null;
+        }
+        return new Entry(projectName, attributes.lastModifiedTime().toMillis(), attributes.size());
+    }
+
+    private static String[] segments(String path) {
+        return path.isEmpty() ? new String[0] : path.split("/");
+    }
+
+    private static Path getIndexFile(Path root) {
+        return KampWSCache.getCacheDirectory(root).resolve(INDEX_FILE);
+    }
+
+    /**
+     * Returns the path relative to root, separated by '/'.
+     *
+     * @param root the root directory of the checkout
+     * @param path a path below root
+     * @return the relative path
+     */
+    public static String toRelativePath(Path root, Path path) {
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private String directory;
+    }
+
+    private static class Entry {
+        private final String projectName;
+        private final long lastModified;
+        private final long size;
+
+        Entry(String projectName, long lastModified, long size) {
+            this.projectName = projectName;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return attributes.lastModifiedTime().toMillis() == lastModified && attributes.size() == size;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) other;
+            return lastModified == entry.lastModified && size == entry.size
+                && (projectName == null ? entry.projectName == null : projectName.equals(entry.projectName));
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (lastModified ^ size);
+        }
+    }
+
+}
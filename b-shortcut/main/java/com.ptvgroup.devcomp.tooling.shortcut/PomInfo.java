@@ -0,0 +1,85 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parts of a POM file shortcut needs to relate modules to each other.
+ * Coordinates are given as "groupId:artifactId".
+ */
+public class PomInfo {
+
+    private final String groupId;
+    private final String artifactId;
+    private final String name;
+    private final String parent;
+    private final List<String> dependencies;
+    private final List<String> modules;
+
+    PomInfo(String groupId, String artifactId, String name, String parent, List<String> dependencies,
+        List<String> modules) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.name = name;
+        this.parent = parent;
+        this.dependencies = Collections.unmodifiableList(dependencies);
+        this.modules = Collections.unmodifiableList(modules);
+    }
+
+    /**
+     * Returns the coordinates of the project.
+     *
+     * @return groupId (inherited from the parent if not declared) and
+     *         artifactId
+     */
+    public String getCoordinates() {
+        return groupId + ":" + artifactId;
+    }
+
+    /**
+     * Returns the artifactId of the project.
+     *
+     * @return the artifactId
+     */
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    /**
+     * Returns the name of the project, or its artifactId if it has no name.
+     *
+     * @return the project name
+     */
+    public String getProjectName() {
+        return name.isEmpty() ? artifactId : name;
+    }
+
+    /**
+     * Returns the coordinates of the parent project.
+     *
+     * @return the parent's coordinates, or null if there is no parent
+     */
+    public String getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the coordinates of the declared dependencies. Dependencies
+     * declared in dependency management or profiles are not included.
+     *
+     * @return coordinates of the dependencies
+     */
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Returns the declared modules.
+     *
+     * @return module paths relative to the POM's directory
+     */
+    public List<String> getModules() {
+        return modules;
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads information from POM files without building a document: the file is
+ * streamed only as far as needed.
+ * <p>
+ * POM files may be read by multiple threads concurrently; every thread uses a
+ * parser factory of its own.
+ */
+public class PomReader {
+
+    // factories are not guaranteed to be thread-safe
+    private static final ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(PomReader::createFactory);
+
+    /** Elements of the project and its parent read by readPomInfo. */
+    private static final Set<String> VALUES = new HashSet<>(Arrays.asList("groupId", "artifactId", "name"));
+
+    /**
+     * Returns the project name read from the specified POM file, or the
+     * artifactId if no name is found. Reading stops at the name.
+     *
+     * @param pomFile Path of the POM file
+     * @return name of the project
+     * @throws IOException If the file cannot be read or is not a valid POM.
+     */
+    public static String readProjectName(Path pomFile) throws IOException {
+        String exceptionText = "Could not parse required information in file " + pomFile.toString()
+            + ". Is that file a valid POM?";
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(pomFile))) {
+            XMLStreamReader reader = FACTORY.get().createXMLStreamReader(in);
+            try {
+                if (!nextStartElement(reader) || !reader.getLocalName().equals("project")) {
+                    throw new IOException(exceptionText);
+                }
+
+                // only direct children of <project> are of interest
+                String artifactId = "";
+                int depth = 1;
+                while (depth > 0 && reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        if (depth == 1 && reader.getLocalName().equals("name")) {
+                            String name = reader.getElementText().trim();
+                            if (!name.isEmpty()) {
+                                return name;
+                            }
+                        } else if (depth == 1 && reader.getLocalName().equals("artifactId")) {
+                            artifactId = reader.getElementText().trim();
+                        } else {
+                            depth++;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                    }
+                }
+
+                if (artifactId.isEmpty()) {
+                    throw new IOException(exceptionText);
+                }
+                return artifactId;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(exceptionText);
+        }
+    }
+
+    /**
+     * Returns the coordinates, parent, dependencies and modules declared in
+     * the specified POM file.
+     *
+     * @param pomFile Path of the POM file
+     * @return the information read from the POM file
+     * @throws IOException If the file cannot be read or is not a valid POM.
+     */
+    public static PomInfo readPomInfo(Path pomFile) throws IOException {
+        String exceptionText = "Could not parse required information in file " + pomFile.toString()
+            + ". Is that file a valid POM?";
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(pomFile))) {
+            XMLStreamReader reader = FACTORY.get().createXMLStreamReader(in);
+            try {
+                if (!nextStartElement(reader) || !reader.getLocalName().equals("project")) {
+                    throw new IOException(exceptionText);
+                }
+
+                Map<String, String> values = new HashMap<>();
+                List<String[]> dependencies = new ArrayList<>();
+                List<String> modules = new ArrayList<>();
+                String[] dependency = null;
+
+                Deque<String> path = new ArrayDeque<>();
+                path.push("project");
+                while (!path.isEmpty() && reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String element = reader.getLocalName();
+                        String parent = path.peek();
+                        if (path.size() == 1 && VALUES.contains(element)) {
+                            values.put(element, reader.getElementText().trim());
+                        } else if (path.size() == 2 && parent.equals("parent") && VALUES.contains(element)) {
+                            values.put("parent." + element, reader.getElementText().trim());
+                        } else if (path.size() == 2 && parent.equals("modules") && element.equals("module")) {
+                            modules.add(reader.getElementText().trim());
+                        } else if (path.size() == 3 && parent.equals("dependency") && dependency != null
+                            && (element.equals("groupId") || element.equals("artifactId"))) {
+                            dependency[element.equals("groupId") ? 0 : 1] = reader.getElementText().trim();
+                        } else {
+                            if (path.size() == 2 && parent.equals("dependencies") && element.equals("dependency")) {
+                                dependency = new String[] { "", "" };
+                            }
+                            path.push(element);
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        if (path.pop().equals("dependency") && dependency != null && path.size() == 2) {
+                            dependencies.add(dependency);
+                            dependency = null;
+                        }
+                    }
+                }
+
+                String artifactId = get(values, "artifactId");
+                if (artifactId.isEmpty()) {
+                    throw new IOException(exceptionText);
+                }
+                String parentGroupId = get(values, "parent.groupId");
+                String groupId = get(values, "groupId").isEmpty() ? parentGroupId : get(values, "groupId");
+                String parent = get(values, "parent.artifactId").isEmpty() ? null
+                    : parentGroupId + ":" + get(values, "parent.artifactId");
+
+                List<String> coordinates = new ArrayList<>(dependencies.size());
+                for (String[] declared : dependencies) {
+                    String dependencyGroupId = declared[0];
+                    if (dependencyGroupId.equals("${project.groupId}") || dependencyGroupId.equals("${groupId}")) {
+                        dependencyGroupId = groupId;
+                    } else if (dependencyGroupId.equals("${project.parent.groupId}")) {
+                        dependencyGroupId = parentGroupId;
+                    }
+                    coordinates.add(dependencyGroupId + ":" + declared[1]);
+                }
+
+                return new PomInfo(groupId, artifactId, get(values, "name"), parent, coordinates, modules);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(exceptionText);
+        }
+    }
+
+    private static String get(Map<String, String> values, String key) {
+        String value = values.get(key);
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Moves the reader to the next start element.
+     *
+     * @return false if there is none
+     */
+    private static boolean nextStartElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+}
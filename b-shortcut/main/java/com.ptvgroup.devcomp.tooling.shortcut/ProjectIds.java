@@ -0,0 +1,80 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns project names to consecutive ids, so that sets of projects can be
+ * stored as bit sets (see {@link ImpactSet}).
+ * <p>
+ * Ids are assigned in the order the names are first seen. The table may be
+ * used by multiple threads concurrently.
+ */
+public class ProjectIds {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    // whether the ids are in the alphabetical order of the names
+    private boolean sorted = true;
+
+    /**
+     * Returns the id of the project with the specified name, assigning the
+     * next free id if the name is new.
+     *
+     * @param name the name of the project
+     * @return the id of the project
+     */
+    public synchronized int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (!names.isEmpty() && names.get(names.size() - 1).compareTo(name) > 0) {
+            sorted = false;
+        }
+        ids.put(name, names.size());
+        names.add(name);
+        return names.size() - 1;
+    }
+
+    /**
+     * Returns the id of the project with the specified name.
+     *
+     * @param name the name of the project
+     * @return the id of the project, or -1 if the name was not interned
+     */
+    public synchronized int getId(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the name of the project with the specified id.
+     *
+     * @param id the id of the project
+     * @return the name of the project
+     * @throws IndexOutOfBoundsException if no project has the id
+     */
+    public synchronized String getName(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * Returns the number of interned names.
+     *
+     * @return the number of names
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+
+    /**
+     * Returns whether the ids are in the alphabetical order of the names.
+     */
+    synchronized boolean isSorted() {
+        return sorted;
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The module directories resolved for a list of projects, along with the
+ * projects whose POM file is missing in the checkout.
+ */
+public class ProjectPaths {
+
+    private final List<String> relativePaths = new ArrayList<>();
+    private final Map<String, String> missing = new LinkedHashMap<>();
+
+    /**
+     * Adds the module directory of a project.
+     *
+     * @param relativePath directory of the module, relative to the checkout root
+     */
+    void addPath(String relativePath) {
+        relativePaths.add(relativePath);
+    }
+
+    /**
+     * Adds a project whose POM file is missing.
+     *
+     * @param projectName name of the project
+     * @param relativePath directory in which the POM file was expected
+     */
+    void addMissing(String projectName, String relativePath) {
+        missing.put(projectName, relativePath);
+    }
+
+    /**
+     * Returns the module directories of all projects with a POM file.
+     *
+     * @return directories relative to the checkout root
+     */
+    public List<String> getRelativePaths() {
+        return Collections.unmodifiableList(relativePaths);
+    }
+
+    /**
+     * Returns the projects whose POM file is missing.
+     *
+     * @return the directories in which the POM files were expected, by project
+     *         name
+     */
+    public Map<String, String> getMissing() {
+        return Collections.unmodifiableMap(missing);
+    }
+
+    /**
+     * Returns whether the POM files of all projects were found.
+     *
+     * @return whether no POM file is missing
+     */
+    public boolean isComplete() {
+        return missing.isEmpty();
+    }
+
+}
@@ -0,0 +1,316 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selects a set of modules for a Maven build by a generated reactor POM
+ * instead of a long "-pl" list.
+ * <p>
+ * A module listed in a reactor POM brings along all modules it aggregates,
+ * recursively. The generated POM therefore only lists the selected modules
+ * that are not aggregated by another selected module; a selected aggregator
+ * whose modules are all selected stands for its complete subtree. Aggregated
+ * modules that are not selected are excluded with "-pl !module".
+ * <p>
+ * Every build gets a POM file of its own in the directory "reactor" in the
+ * cache directory of the checkout, so that concurrent builds in the checkout
+ * do not overwrite each other's selection; it is deleted after the build.
+ * Since "-f" makes the directory of the POM the top directory of the build,
+ * the checkout root is passed as "maven.multiModuleProjectDirectory". A
+ * reactor POM is only used for selections of at least 20 modules (set with
+ * the system variable "B_SHORTCUT_REACTOR_THRESHOLD"), and only if fewer
+ * characters end up on the command line than with "-pl".
+ */
+public class ReactorSelection {
+
+    /** Directory in the cache directory holding the generated reactor POM. */
+    public static final String REACTOR_DIRECTORY = "reactor";
+
+    private static final int DEFAULT_THRESHOLD = 20;
+
+    // from the reactor directory to the checkout root
+    private static final String TO_ROOT = "../..";
+
+    private final Path root;
+    private final List<String> selected;
+    private final int threshold;
+    private final List<String> reactorModules = new ArrayList<>();
+    private final List<String> excludedModules = new ArrayList<>();
+    private final Map<String, List<String>> aggregated = new HashMap<>();
+    private Path reactorPom;
+
+    private ReactorSelection(Path root, List<String> selected, int threshold) {
+        this.root = root.toAbsolutePath().normalize();
+        this.selected = selected;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Computes the reactor of the specified modules, unless there are too few
+     * of them for a reactor POM to be considered.
+     *
+     * @param root the root directory of the checkout
+     * @param modules the selected module directories, relative to root ("."
+     *            for the root module)
+     * @return the reactor selection
+     */
+    public static ReactorSelection compute(Path root, List<String> modules) {
+        return compute(root, modules, getThreshold());
+    }
+
+    /**
+     * Computes the reactor of the specified modules regardless of how many
+     * there are, so that Maven builds them in the given order where their
+     * dependencies allow it.
+     * <p>
+     * Maven orders the projects of "-pl" as they are aggregated, and only
+     * falls back to the order of the reactor POM among modules that do not
+     * depend on each other. Modules aggregated by a selected aggregator keep
+     * the order of the aggregator.
+     *
+     * @param root the root directory of the checkout
+     * @param modules the selected module directories, relative to root ("."
+     *            for the root module), in the order they should be built
+     * @return the reactor selection
+     */
+    public static ReactorSelection computeOrdered(Path root, List<String> modules) {
+        return compute(root, modules, 1);
+    }
+
+    /**
+     * Computes the reactor of the specified modules, if there are at least as
+     * many as specified.
+     */
+    static ReactorSelection compute(Path root, List<String> modules, int threshold) {
+        List<String> selected = new ArrayList<>(modules.size());
+        for (String module : new LinkedHashSet<>(modules)) {
+            selected.add(module.equals(".") ? "" : module);
+        }
+        ReactorSelection selection = new ReactorSelection(root, selected, threshold);
+        if (selected.size() >= threshold) {
+            selection.compute();
+        }
+        return selection;
+    }
+
+    private void compute() {
+        Set<String> selectedSet = new HashSet<>(selected);
+        // modules brought along by the ones listed so far
+        Set<String> covered = new HashSet<>();
+        List<String> byDepth = new ArrayList<>(selected);
+        Collections.sort(byDepth, (a, b) -> Integer.compare(depth(a), depth(b)));
+        for (String module : byDepth) {
+            if (covered.contains(module)) {
+                continue;
+            }
+            reactorModules.add(module);
+            for (String member : getSubtree(module)) {
+                if (covered.add(member) && !selectedSet.contains(member)) {
+                    excludedModules.add(member);
+                }
+            }
+        }
+        // keep the given order, which is also Maven's tie-break
+        List<String> ordered = new ArrayList<>(selected);
+        ordered.retainAll(reactorModules);
+        reactorModules.clear();
+        reactorModules.addAll(ordered);
+        Collections.sort(excludedModules);
+    }
+
+    /**
+     * Returns the modules listed in the reactor POM.
+     *
+     * @return module directories relative to the checkout root, empty if the
+     *         reactor was not computed
+     */
+    public List<String> getReactorModules() {
+        return reactorModules;
+    }
+
+    /**
+     * Returns the modules brought along by the reactor POM that are not
+     * selected.
+     *
+     * @return module directories relative to the checkout root
+     */
+    public List<String> getExcludedModules() {
+        return excludedModules;
+    }
+
+    /**
+     * Returns whether the reactor POM should be used instead of "-pl".
+     *
+     * @return whether enough modules are selected and the command line gets
+     *         shorter
+     */
+    public boolean isWorthwhile() {
+        if (selected.size() < threshold) {
+            return false;
+        }
+        int projectListLength = 0;
+        for (String module : selected) {
+            projectListLength += Math.max(1, module.length()) + 1;
+        }
+        int exclusionLength = 0;
+        for (String module : excludedModules) {
+            exclusionLength += toReactorPath(module).length() + 2;
+        }
+        return exclusionLength < projectListLength;
+    }
+
+    /**
+     * Writes the reactor POM and returns the Maven options building the
+     * selected modules with it. The POM is deleted by
+     * {@link #deleteReactor()}.
+     *
+     * @return the options, relative to the checkout root
+     * @throws IOException if the POM cannot be written
+     */
+    public List<String> writeReactor() throws IOException {
+        Path directory = KampWSCache.getCacheDirectory(root).resolve(REACTOR_DIRECTORY);
+        Files.createDirectories(directory);
+        Path pom = Files.createTempFile(directory, "pom-", ".xml");
+        reactorPom = pom;
+        try (Writer writer = Files.newBufferedWriter(pom, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<!-- generated by shortcut; modules selected: " + selected.size() + " -->\n");
+            writer.write("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+            writer.write("    <modelVersion>4.0.0</modelVersion>\n");
+            writer.write("    <groupId>shortcut</groupId>\n");
+            writer.write("    <artifactId>shortcut-reactor</artifactId>\n");
+            writer.write("    <version>1</version>\n");
+            writer.write("    <packaging>pom</packaging>\n");
+            writer.write("    <properties>\n");
+            writer.write("        <maven.install.skip>true</maven.install.skip>\n");
+            writer.write("        <maven.deploy.skip>true</maven.deploy.skip>\n");
+            writer.write("    </properties>\n");
+            writer.write("    <modules>\n");
+            for (String module : reactorModules) {
+                writer.write("        <module>" + escape(toReactorPath(module)) + "</module>\n");
+            }
+            writer.write("    </modules>\n");
+            writer.write("</project>\n");
+        }
+
+        List<String> options = new ArrayList<>();
+        options.add("-f");
+        options.add(ModuleIndex.toRelativePath(root, pom));
+        // e.g. for "${maven.multiModuleProjectDirectory}" in the POMs of the checkout
+        options.add("-Dmaven.multiModuleProjectDirectory=" + root);
+        if (!excludedModules.isEmpty()) {
+            // relative to the directory of the reactor POM
+            StringBuilder exclusions = new StringBuilder();
+            for (String module : excludedModules) {
+                exclusions.append(exclusions.length() == 0 ? "" : ",").append('!').append(toReactorPath(module));
+            }
+            options.add("-pl");
+            options.add(exclusions.toString());
+        }
+        return options;
+    }
+
+    /**
+     * Deletes the reactor POM written by {@link #writeReactor()}, if any.
+     *
+     * @throws IOException if the POM cannot be deleted
+     */
+    public void deleteReactor() throws IOException {
+        if (reactorPom != null) {
+            Files.deleteIfExists(reactorPom);
+            reactorPom = null;
+        }
+    }
+
+    /**
+     * Returns the module and all modules it aggregates, recursively.
+     */
+    private List<String> getSubtree(String module) {
+        List<String> result = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        List<String> pending = new ArrayList<>(Collections.singletonList(module));
+        while (!pending.isEmpty()) {
+            String next = pending.remove(pending.size() - 1);
+            if (visited.add(next)) {
+                result.add(next);
+                pending.addAll(getAggregatedModules(next));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the modules declared in the POM of a module.
+     */
+    private List<String> getAggregatedModules(String module) {
+        List<String> result = aggregated.get(module);
+        if (result != null) {
+            return result;
+        }
+        result = new ArrayList<>();
+        Path directory = root.resolve(module);
+        try {
+            for (String declared : PomReader.readPomInfo(directory.resolve(ModuleIndex.POM_FILE)).getModules()) {
+                Path path = directory.resolve(declared.trim()).normalize();
+                if (Files.isRegularFile(path)) {
+                    path = path.getParent();
+                }
+                if (path.startsWith(root)) {
+                    result.add(ModuleIndex.toRelativePath(root, path));
+                }
+            }
+        } catch (IOException e) {
+            // Maven will fail on it anyway
+        }
+        aggregated.put(module, result);
+        return result;
+    }
+
+    private static String toReactorPath(String module) {
+        return module.isEmpty() ? TO_ROOT : TO_ROOT + "/" + module;
+    }
+
+    private static int depth(String module) {
+        int depth = module.isEmpty() ? 0 : 1;
+        for (int i = 0; i < module.length(); i++) {
+            if (module.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * Returns the minimum number of selected modules for which a reactor POM
+     * is considered.
+     */
+    private static int getThreshold() {
+        String value = System.getenv("B_SHORTCUT_REACTOR_THRESHOLD");
+        if (value == null) {
+            return DEFAULT_THRESHOLD;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid threshold \"" + value + "\" in B_SHORTCUT_REACTOR_THRESHOLD.");
+            return DEFAULT_THRESHOLD;
+        }
+    }
+
+}
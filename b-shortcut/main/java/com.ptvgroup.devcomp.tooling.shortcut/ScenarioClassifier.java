@@ -0,0 +1,357 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Selects the change scenario of a project from the changes made to it,
+ * without asking the user.
+ * <p>
+ * A scenario is valid for a change if all changed files of the project are
+ * allowed by its rule. A rule applies to the scenarios whose name equals its
+ * key or ends with "_" followed by its key, e.g. "documentation_change"
+ * applies to "shortcut_documentation_change". It allows files
+ * <ul>
+ * <li>matching one of the globs given as "&lt;key&gt;.files", relative to the
+ * module directory; globs without '/' are matched against the file name,
+ * globs starting with '/' only against the files of the module directory
+ * itself, or</li>
+ * <li>whose added and removed lines all match the regular expression given as
+ * "&lt;key&gt;.lines". A line inside a block comment, as far as the context
+ * of the diff shows, is also allowed if the expression matches it wrapped
+ * into a complete block comment ("/*" + line + "*&#47;"), unless it opens or
+ * closes a comment itself.</li>
+ * </ul>
+ * Default scenarios ("_default") are always valid. Among the valid scenarios,
+ * the one with the fewest change-specific dependencies is selected.
+ * <p>
+ * Rules are read from the file named by the system variable
+ * "B_SHORTCUT_RULES", defaulting to "shortcut-rules.properties" in the
+ * checkout root. Rules given there replace the built-in rule of the same key.
+ */
+public class ScenarioClassifier {
+
+    /** Name of the rules file in the checkout root. */
+    public static final String RULES_FILE = "shortcut-rules.properties";
+
+    /** Suffix of the scenario building everything that depends on a project. */
+    public static final String DEFAULT_SUFFIX = "_default";
+
+    private static final String FILES = ".files";
+    private static final String LINES = ".lines";
+
+    private final Map<String, Rule> rules;
+    private final ModuleIndex index;
+    private final Map<String, List<String>> diff;
+    private final Function<List<String>, List<String>> dependencies;
+
+    /**
+     * Initialize a classifier for the specified changes.
+     *
+     * @param rules the rules by key
+     * @param index the modules of the checkout
+     * @param diff the hunks of the changes by file, relative to the checkout
+     *            root, as returned by {@link Git#getDiff(String)}
+     * @param dependencies determines the change-specific dependencies of
+     *            scenarios
+     */
+    public ScenarioClassifier(Map<String, Rule> rules, ModuleIndex index, Map<String, List<String>> diff,
+        Function<List<String>, List<String>> dependencies) {
+        this.rules = rules;
+        this.index = index;
+        this.diff = diff;
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * Returns the built-in rules, extended by the rules configured for the
+     * checkout with the specified root directory.
+     *
+     * @param root the root directory of the checkout
+     * @return the rules by key
+     * @throws IOException if the rules file cannot be read
+     * @throws IllegalArgumentException if a rule is malformed
+     */
+    public static Map<String, Rule> loadRules(Path root) throws IOException {
+        Properties properties = new Properties();
+        // text and HTML files elsewhere may be resources of the module
+        properties.setProperty("documentation_change" + FILES,
+            "*.md, *.adoc, /*.txt, /*.html, src/site/**, docs/**");
+        // blank lines and lines of comment text; a line opening or closing a block comment without
+        // closing or opening it again may turn code into a comment or back, e.g. when un-commenting
+        properties.setProperty("documentation_change" + LINES,
+            "\\s*(//.*|/\\*((?!\\*/).)*\\*/|<!--((?!-->).)*-->)?\\s*");
+
+        Path file = getRulesFile(root);
+        if (Files.isRegularFile(file)) {
+            Properties custom = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                custom.load(reader);
+            }
+            for (String key : custom.stringPropertyNames()) {
+                String ruleKey = key.substring(0, Math.max(0, key.lastIndexOf('.')));
+                properties.remove(ruleKey + FILES);
+                properties.remove(ruleKey + LINES);
+            }
+            properties.putAll(custom);
+        }
+
+        Map<String, Rule> rules = new LinkedHashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            String ruleKey;
+            if (key.endsWith(FILES)) {
+                ruleKey = key.substring(0, key.length() - FILES.length());
+            } else if (key.endsWith(LINES)) {
+                ruleKey = key.substring(0, key.length() - LINES.length());
+            } else {
+                throw new IllegalArgumentException("Unknown classification rule property " + key + " in " + file
+                    + "; expected <scenario>" + FILES + " or <scenario>" + LINES + ".");
+            }
+            if (!rules.containsKey(ruleKey)) {
+                rules.put(ruleKey, new Rule(properties.getProperty(ruleKey + FILES),
+                    properties.getProperty(ruleKey + LINES)));
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Returns the file configuring the rules of the checkout with the
+     * specified root directory: the file given by the system variable
+     * "B_SHORTCUT_RULES", or "shortcut-rules.properties" in the root
+     * directory.
+     *
+     * @param root the root directory of the checkout
+     * @return the rules file, which need not exist
+     */
+    public static Path getRulesFile(Path root) {
+        String configured = System.getenv("B_SHORTCUT_RULES");
+        return configured != null ? Paths.get(configured) : root.resolve(RULES_FILE);
+    }
+
+    /**
+     * Selects the change scenario of a project.
+     *
+     * @param projectName the name of the project
+     * @param changeScenarios the scenarios available for the project
+     * @return the narrowest valid scenario, or null if the changes of the
+     *         project are unknown or no scenario other than the default one
+     *         is valid
+     */
+    public String classify(String projectName, List<String> changeScenarios) {
+        String directory = index.getModuleDirectory(projectName);
+        List<String> files = getChangedFiles(directory);
+        if (files.isEmpty()) {
+            return null;
+        }
+
+        List<String> candidates = new ArrayList<>();
+        for (String scenario : changeScenarios) {
+            Rule rule = getRule(scenario);
+            if (rule != null && rule.allows(directory, files, diff)) {
+                candidates.add(scenario);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        String defaultScenario = getDefaultScenario(changeScenarios);
+        if (defaultScenario != null) {
+            candidates.add(defaultScenario);
+        }
+
+        String result = null;
+        int narrowest = Integer.MAX_VALUE;
+        for (String scenario : candidates) {
+            int size = dependencies.apply(Collections.singletonList(scenario)).size();
+            if (size < narrowest) {
+                narrowest = size;
+                result = scenario;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the default scenario among the specified ones.
+     *
+     * @param changeScenarios the scenarios available for a project
+     * @return the default scenario, or null if there is none
+     */
+    public static String getDefaultScenario(List<String> changeScenarios) {
+        for (String scenario : changeScenarios) {
+            if (scenario.endsWith(DEFAULT_SUFFIX)) {
+                return scenario;
+            }
+        }
+        return null;
+    }
+
+    private Rule getRule(String scenario) {
+        Rule rule = rules.get(scenario);
+        if (rule != null) {
+            return rule;
+        }
+        for (Map.Entry<String, Rule> entry : rules.entrySet()) {
+            if (scenario.endsWith("_" + entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the changed files belonging to the module, not to a module
+     * nested in it.
+     */
+    private List<String> getChangedFiles(String directory) {
+        List<String> result = new ArrayList<>();
+        if (directory == null) {
+            return result;
+        }
+        for (String file : diff.keySet()) {
+            if (directory.equals(index.getOwningModule(file))) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The changes a scenario is valid for.
+     */
+    public static class Rule {
+
+        private final List<PathMatcher> pathMatchers = new ArrayList<>();
+        private final List<PathMatcher> nameMatchers = new ArrayList<>();
+        private final Pattern lines;
+
+        /**
+         * Initialize a rule.
+         *
+         * @param files comma-separated globs of the allowed files, or null
+         * @param lines regular expression all changed lines of other allowed
+         *            files match, or null
+         * @throws IllegalArgumentException if a glob or the regular
+         *             expression is malformed
+         */
+        public Rule(String files, String lines) {
+            if (files != null) {
+                for (String glob : files.split(",")) {
+                    glob = glob.trim();
+                    if (glob.startsWith("/")) {
+                        // "*" does not match across directories
+                        pathMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob.substring(1)));
+                    } else if (!glob.isEmpty()) {
+                        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+                        (glob.contains("/") ? pathMatchers : nameMatchers).add(matcher);
+                    }
+                }
+            }
+            try {
+                this.lines = lines == null ? null : Pattern.compile(lines);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid classification rule: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Returns whether the rule allows all specified files of a module.
+         *
+         * @param directory the module directory, relative to the checkout root
+         * @param files the changed files of the module, relative to the
+         *            checkout root
+         * @param diff the hunks of the changes by file
+         * @return whether the scenario is valid for the files
+         */
+        boolean allows(String directory, List<String> files, Map<String, List<String>> diff) {
+            for (String file : files) {
+                String relativePath = directory.isEmpty() ? file : file.substring(directory.length() + 1);
+                if (!allows(Paths.get(relativePath), diff.get(file))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean allows(Path path, List<String> hunks) {
+            for (PathMatcher matcher : nameMatchers) {
+                if (matcher.matches(path.getFileName())) {
+                    return true;
+                }
+            }
+            for (PathMatcher matcher : pathMatchers) {
+                if (matcher.matches(path)) {
+                    return true;
+                }
+            }
+            if (lines == null || hunks == null) {
+                return false;
+            }
+            boolean changed = false;
+            for (int i = 0; i < hunks.size(); i++) {
+                String line = hunks.get(i);
+                if (!line.startsWith("+") && !line.startsWith("-")) {
+                    continue;
+                }
+                changed = true;
+                String text = line.substring(1);
+                if (!lines.matcher(text).matches() && !(!text.contains("/*") && !text.contains("*/")
+                    && isInBlockComment(hunks, i) && lines.matcher("/*" + text + "*/").matches())) {
+                    return false;
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Returns whether the context of the hunk shows that a changed line
+         * is inside a block comment: the lines of the same side before it open
+         * a block comment, or the lines after it close one.
+         */
+        private static boolean isInBlockComment(List<String> hunks, int index) {
+            char side = hunks.get(index).charAt(0);
+            for (int i = index - 1; i >= 0 && !hunks.get(i).startsWith("@@"); i--) {
+                String line = hunks.get(i);
+                if (line.charAt(0) == side || line.charAt(0) == ' ') {
+                    int open = line.lastIndexOf("/*");
+                    int close = line.lastIndexOf("*/");
+                    if (open >= 0 && open > close) {
+                        return true;
+                    } else if (close >= 0) {
+                        return false;
+                    }
+                }
+            }
+            for (int i = index + 1; i < hunks.size() && !hunks.get(i).startsWith("@@"); i++) {
+                String line = hunks.get(i);
+                if (line.charAt(0) == side || line.charAt(0) == ' ') {
+                    int open = line.indexOf("/*");
+                    int close = line.indexOf("*/");
+                    if (close >= 0 && (open < 0 || close < open)) {
+                        return true;
+                    } else if (open >= 0) {
+                        return false;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+}
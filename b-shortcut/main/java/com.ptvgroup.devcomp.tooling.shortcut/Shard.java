@@ -0,0 +1,226 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.beust.jcommander.IStringConverter;
+import com.beust.jcommander.ParameterException;
+
+/**
+ * One of n parts of a build, so that the affected modules can be built on n
+ * machines at once.
+ * <p>
+ * Modules depending on each other, directly or indirectly, stay in the same
+ * part, unless such a group is expected to take longer than a part should;
+ * that group is cut into its modules. The groups and modules are distributed
+ * by their expected durations (see {@link BuildDurations}), the longest first,
+ * each to the part expected to finish first. The machines must therefore use
+ * the same durations to agree on the parts, e.g. by sharing the file
+ * "build-durations" of the cache directory.
+ * <p>
+ * A part builds only its own modules. The modules it depends on that belong
+ * to other parts are taken from the repository, like unaffected modules, and
+ * therefore do not count towards its expected duration.
+ */
+public class Shard {
+
+    private final int index;
+    private final int count;
+
+    /**
+     * Initialize the part with the specified number.
+     *
+     * @param index the number of the part, from 1 to count
+     * @param count the number of parts
+     * @throws IllegalArgumentException if the number is out of range
+     */
+    public Shard(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("Shard " + index + "/" + count + " does not exist.");
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Parses a part given as "i/n".
+     *
+     * @param value the number of the part and the number of parts, separated
+     *            by '/'
+     * @return the part
+     * @throws IllegalArgumentException if the value is malformed or the number
+     *             is out of range
+     */
+    public static Shard parse(String value) {
+        String[] fields = value.trim().split("/");
+        if (fields.length != 2) {
+            throw new IllegalArgumentException("Expected a shard like \"2/4\" instead of \"" + value + "\".");
+        }
+        try {
+            return new Shard(Integer.parseInt(fields[0].trim()), Integer.parseInt(fields[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a shard like \"2/4\" instead of \"" + value + "\".");
+        }
+    }
+
+    /**
+     * Returns the number of this part.
+     *
+     * @return the number, from 1 to {@link #getCount()}
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the number of parts.
+     *
+     * @return the number of parts
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the modules of this part.
+     *
+     * @param graph the affected modules and their dependencies
+     * @param durations the durations of previous builds
+     * @return the modules, in the order of the graph
+     */
+    public List<String> select(ModuleGraph graph, BuildDurations durations) {
+        return partition(graph, durations, count).get(index - 1);
+    }
+
+    /**
+     * Distributes the modules of the graph to the specified number of parts.
+     *
+     * @param graph the affected modules and their dependencies
+     * @param durations the durations of previous builds
+     * @param count the number of parts
+     * @return the modules of each part, in the order of the graph
+     */
+    public static List<List<String>> partition(ModuleGraph graph, BuildDurations durations, int count) {
+        double total = 0;
+        for (String module : graph.getModules()) {
+            total += durations.getExpectedDuration(module);
+        }
+        // groups longer than a part are cut, as the modules of other parts are not built along
+        final List<List<String>> groups = new ArrayList<>();
+        final List<Double> expected = new ArrayList<>();
+        for (List<String> group : getConnectedModules(graph)) {
+            double duration = 0;
+            for (String module : group) {
+                duration += durations.getExpectedDuration(module);
+            }
+            if (duration <= total / count) {
+                groups.add(group);
+                expected.add(duration);
+                continue;
+            }
+            for (String module : group) {
+                groups.add(Collections.singletonList(module));
+                expected.add(durations.getExpectedDuration(module));
+            }
+        }
+        List<Integer> byDuration = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            byDuration.add(i);
+        }
+        // the longest first, otherwise in the order of the graph, so that every machine gets the same parts
+        Collections.sort(byDuration, (a, b) -> Double.compare(expected.get(b), expected.get(a)));
+
+        double[] loads = new double[count];
+        List<Set<String>> parts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            parts.add(new HashSet<String>());
+        }
+        for (int group : byDuration) {
+            int lightest = 0;
+            for (int i = 1; i < count; i++) {
+                if (loads[i] < loads[lightest]) {
+                    lightest = i;
+                }
+            }
+            loads[lightest] += expected.get(group);
+            parts.get(lightest).addAll(groups.get(group));
+        }
+
+        List<List<String>> result = new ArrayList<>(count);
+        for (Set<String> part : parts) {
+            List<String> ordered = new ArrayList<>(graph.getModules());
+            ordered.retainAll(part);
+            result.add(ordered);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the groups of modules connected by dependencies, each in the
+     * order of the graph, ordered by their first module.
+     */
+    private static List<List<String>> getConnectedModules(ModuleGraph graph) {
+        Map<String, Set<String>> neighbours = new HashMap<>();
+        for (String module : graph.getModules()) {
+            for (String dependency : graph.getDependencies(module)) {
+                neighbours.computeIfAbsent(module, key -> new HashSet<>()).add(dependency);
+                neighbours.computeIfAbsent(dependency, key -> new HashSet<>()).add(module);
+            }
+        }
+
+        Map<String, Integer> groupOf = new HashMap<>();
+        int count = 0;
+        for (String module : graph.getModules()) {
+            if (groupOf.containsKey(module)) {
+                continue;
+            }
+            Deque<String> pending = new ArrayDeque<>(Collections.singleton(module));
+            while (!pending.isEmpty()) {
+                String next = pending.removeFirst();
+                if (!groupOf.containsKey(next)) {
+                    groupOf.put(next, count);
+                    pending.addAll(neighbours.getOrDefault(next, Collections.<String> emptySet()));
+                }
+            }
+            count++;
+        }
+
+        List<List<String>> groups = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            groups.add(new ArrayList<String>());
+        }
+        for (String module : graph.getModules()) {
+            groups.get(groupOf.get(module)).add(module);
+        }
+        return groups;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+
+    /**
+     * Converts the value of the option "--shard".
+     */
+    public static class Converter implements IStringConverter<Shard> {
+
+        @Override
+        public Shard convert(String value) {
+            try {
+                return parse(value);
+            } catch (IllegalArgumentException e) {
+                throw new ParameterException(e.getMessage());
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,343 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A long-lived process executing shortcut commands on behalf of other
+ * processes, so that the web service client, the cached responses and the
+ * module index stay warm between invocations.
+ * <p>
+ * The daemon listens on a loopback port. Port and a random access token are
+ * published in the file "daemon" in the cache directory of the checkout; only
+ * clients that can read that file are served. Commands are executed one at a
+ * time. The daemon confirms each command it accepts; a client that gets no
+ * confirmation in time, because the daemon hangs, is busy or does not know
+ * the token, executes the command itself. While a command is executed, its
+ * standard output and error are sent to the client, and the client's standard
+ * input is used as standard input.
+ */
+public class ShortcutDaemon {
+
+    /**
+     * Executes a command.
+     */
+    public interface Handler {
+
+        /**
+         * Executes a command with the specified arguments.
+         *
+         * @param workingDirectory the working directory of the client
+         * @param arguments the arguments of the command
+         * @return the exit code
+         * @throws Exception if the command fails
+         */
+        int handle(Path workingDirectory, List<String> arguments) throws Exception;
+    }
+
+    /** Name of the file in the cache directory naming port and token of the daemon. */
+    public static final String DAEMON_FILE = "daemon";
+
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final int HEADER_TIMEOUT = 10000;
+    private static final int HANDSHAKE_TIMEOUT = 5000;
+
+    private static final int EXIT = 0;
+    private static final int OUT = 1;
+    private static final int ERR = 2;
+    private static final int ACCEPTED = 3;
+
+    private final Path root;
+
+    /**
+     * Initialize a daemon for the checkout with the specified root directory.
+     *
+     * @param root the root directory of the checkout
+     */
+    public ShortcutDaemon(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Serves commands until the process is terminated.
+     *
+     * @param handler executes the commands
+     * @throws IOException if the daemon cannot listen or publish its port
+     */
+    public void serve(Handler handler) throws IOException {
+        byte[] token = new byte[16];
+        new SecureRandom().nextBytes(token);
+        String tokenString = toHex(token);
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Path file = publish(server.getLocalPort(), tokenString);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // a stale file is detected by the clients
+                }
+            }));
+            System.out.println("Serving shortcut commands for " + root + " on port " + server.getLocalPort()
+                + ". Press Ctrl+C to stop.");
+
+            while (true) {
+                try (Socket socket = server.accept()) {
+                    serve(socket, tokenString, handler);
+                } catch (IOException e) {
+                    System.err.println("Lost connection to client: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket, String token, Handler handler) throws IOException {
+        socket.setSoTimeout(HEADER_TIMEOUT);
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+        String clientToken;
+        Path workingDirectory;
+        List<String> arguments = new ArrayList<>();
+        try {
+            clientToken = in.readUTF();
+            if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                clientToken.getBytes(StandardCharsets.UTF_8))) {
+                return;
+            }
+            workingDirectory = Paths.get(in.readUTF());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                arguments.add(in.readUTF());
+            }
+        } catch (SocketTimeoutException e) {
+            return;
+        }
+        socket.setSoTimeout(0);
+        out.writeByte(ACCEPTED);
+        out.flush();
+
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        InputStream stdin = System.in;
+        int exitCode;
+        try (PrintStream clientOut = new PrintStream(new FrameOutputStream(out, OUT), true, "UTF-8");
+            PrintStream clientErr = new PrintStream(new FrameOutputStream(out, ERR), true, "UTF-8")) {
+            System.setOut(clientOut);
+            System.setErr(clientErr);
+            System.setIn(new FilterInputStream(in) {
+                @Override
+                public void close() {
+                    // closing the socket is up to the daemon
+                }
+            });
+            try {
+                exitCode = handler.handle(workingDirectory, arguments);
+            } catch (Exception e) {
+                System.err.println(e.getMessage());
+                exitCode = 1;
+            }
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+            System.setIn(stdin);
+        }
+
+        synchronized (out) {
+            out.writeByte(EXIT);
+            out.writeInt(exitCode);
+            out.flush();
+        }
+    }
+
+    private Path publish(int port, String token) throws IOException {
+        Path directory = KampWSCache.getCacheDirectory(root);
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, DAEMON_FILE, ".tmp");
+        try {
+            Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // the cache directory is expected to be private on such file systems
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("port", Integer.toString(port));
+        properties.setProperty("token", token);
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "shortcut daemon");
+        }
+        Path file = directory.resolve(DAEMON_FILE);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    /**
+     * Executes a command by the daemon of the checkout, if one is running.
+     * Standard input, output and error of this process are forwarded.
+     *
+     * @param root the root directory of the checkout
+     * @param workingDirectory the directory to execute the command in
+     * @param arguments the arguments of the command
+     * @return the exit code of the command, or null if no daemon accepted it
+     * @throws IOException if the connection to the daemon is lost after it
+     *             accepted the command
+     */
+    public static Integer forward(Path root, Path workingDirectory, List<String> arguments) throws IOException {
+        return forward(root, workingDirectory, arguments, HANDSHAKE_TIMEOUT);
+    }
+
+    /**
+     * Executes a command by the daemon of the checkout, waiting at most the
+     * specified time for the daemon to accept it.
+     */
+    static Integer forward(Path root, Path workingDirectory, List<String> arguments, int handshakeTimeout)
+        throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(KampWSCache.getCacheDirectory(root).resolve(DAEMON_FILE),
+            StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        int port;
+        try {
+            port = Integer.parseInt(properties.getProperty("port", ""));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        try (Socket socket = new Socket()) {
+            try {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT);
+            } catch (ConnectException | SocketTimeoutException e) {
+                // the daemon is gone
+                return null;
+            }
+
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            try {
+                socket.setSoTimeout(handshakeTimeout);
+                out.writeUTF(properties.getProperty("token", ""));
+                out.writeUTF(workingDirectory.toAbsolutePath().normalize().toString());
+                out.writeInt(arguments.size());
+                for (String argument : arguments) {
+                    out.writeUTF(argument);
+                }
+                out.flush();
+                if (in.readByte() != ACCEPTED) {
+                    return null;
+                }
+                socket.setSoTimeout(0);
+            } catch (IOException e) {
+                // the daemon hangs, is busy with another command, or was replaced by another process
+                return null;
+            }
+
+            Thread input = new Thread(() -> {
+                byte[] buffer = new byte[1024];
+                try {
+                    int read;
+                    while ((read = System.in.read(buffer)) >= 0) {
+                        out.write(buffer, 0, read);
+                        out.flush();
+                    }
+                    socket.shutdownOutput();
+                } catch (IOException e) {
+                    // the command finished
+                }
+            }, "shortcut-stdin");
+            input.setDaemon(true);
+            input.start();
+
+            while (true) {
+                int channel = in.readByte();
+                if (channel == EXIT) {
+                    return in.readInt();
+                }
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                PrintStream target = channel == ERR ? System.err : System.out;
+                target.write(data);
+                target.flush();
+            }
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Sends everything written to it as frames of one channel.
+     */
+    private static class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final int channel;
+
+        FrameOutputStream(DataOutputStream out, int channel) {
+            this.out = out;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(channel);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+}
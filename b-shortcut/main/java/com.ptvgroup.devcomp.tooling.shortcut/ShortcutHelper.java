@@ -6,47 +6,266 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Answers the queries of the shortcut command with the KAMP web service or
+ * the change impact model.
+ * <p>
+ * A helper may be used by multiple threads concurrently, and several helpers
+ * may share a client of the web service. Responses fetched speculatively and
+ * the loaded impact model belong to a single helper.
+ * 
  * @author Milena Neumann
  */
 public class ShortcutHelper {
 
-    static private XPath xpath;
-    static private DocumentBuilder builder;
-    static private DocumentBuilderFactory factory;
-    static private KampWSClient kampws;
+    // the helper whose client is used instead of an own one, or null
+    private final ShortcutHelper shared;
 
-    static {
-        xpath = XPathFactory.newInstance().newXPath();
-        factory = DocumentBuilderFactory.newInstance();
-        try {
-            builder = factory.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            e.printStackTrace();
+    // guarded by this; a view of the client of the shared helper, if any
+    private KampWSClient kampws;
+    private boolean kampwsInitialized;
+
+    private volatile ImpactModel impactModel;
+
+    // whether the impact model was loaded to work without the web service, rather than synced from it
+    private volatile boolean offline;
+    private volatile Metrics metrics;
+
+    // interns the projects named by the web service; not shared with other helpers, so that it is
+    // dropped with the helper of a command rather than growing for the lifetime of a daemon
+    private final ProjectIds projectIds = new ProjectIds();
+
+    // the module index of the checkout, scanned once for all queries of the helper
+    private final Object indexLock = new Object();
+    private ModuleIndex moduleIndex;
+    private Path moduleIndexRoot;
+
+    // responses fetched speculatively, see prefetch(Collection, Path)
+    private final Map<String, CompletableFuture<ImpactSet>> prefetchedDependencies = new ConcurrentHashMap<>();
+    private final Map<String, String> prefetchedPaths = new ConcurrentHashMap<>();
+
+    /**
+     * Initialize a helper connecting to the web service configured by the
+     * system variables on first use.
+     */
+    public ShortcutHelper() {
+        this.shared = null;
+    }
+
+    /**
+     * Initialize a helper answering all queries with the specified client,
+     * e.g. one shared with other helpers.
+     *
+     * @param client the client to use
+     */
+    public ShortcutHelper(KampWSClient client) {
+        this.shared = null;
+        this.kampws = client;
+        this.kampwsInitialized = true;
+    }
+
+    private ShortcutHelper(ShortcutHelper shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Returns a new helper sharing the web service client of this helper and
+     * nothing else, e.g. for the next command executed by a daemon: it starts
+     * without an impact model, speculatively fetched responses or metrics.
+     * It calls the web service through a view of the client (see
+     * {@link KampWSClient#newView()}), so that its metrics only record its
+     * own calls.
+     * If no client could be created so far, the new helper tries again on
+     * first use.
+     *
+     * @return the new helper
+     */
+    public synchronized ShortcutHelper newHelper() {
+        if (shared != null) {
+            return shared.newHelper();
         }
-        try {
-            kampws = new KampWSClient();
-        } catch (Exception e) {
-            kampws = null;
+        if (kampwsInitialized && kampws == null) {
+            kampwsInitialized = false;
+        }
+        return new ShortcutHelper(this);
+    }
+
+    /**
+     * Returns whether a client of the web service is configured, creating it
+     * on first use. The service is not contacted: the client connects on the
+     * first call its response cache cannot answer, so that runs answered from
+     * the cache make no network calls. The result of the first check is kept
+     * for the lifetime of the helper.
+     *
+     * @return whether the web service can be used
+     */
+    public boolean webServiceAvailable() {
+        return (getClient() != null);
+    }
+
+    /**
+     * Returns the client of the web service, creating it on first use.
+     * 
+     * @return the client, or null if the web service is not configured
+     */
+    private KampWSClient getClient() {
+        synchronized (this) {
+            if (shared != null) {
+                if (kampws == null) {
+                    KampWSClient client = shared.getClient();
+                    if (client != null) {
+                        kampws = client.newView();
+                        kampws.setMetrics(metrics);
+                    }
+                }
+                return kampws;
+            }
+            if (!kampwsInitialized) {
+                kampwsInitialized = true;
+                try {
+                    // connects on demand
+                    KampWSClient client = new KampWSClient();
+                    client.setMetrics(metrics);
+                    kampws = client;
+                } catch (Exception e) {
+                    kampws = null;
+                }
+            }
+            return kampws;
+        }
+    }
+
+    /**
+     * Records the calls to the web service made by this helper in the
+     * specified metrics.
+     *
+     * @param metrics the metrics to record calls in, or null
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        KampWSClient client = getConnectedClient();
+        if (client != null) {
+            client.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Stores the health of the web service endpoints, if the web service was
+     * used, so that later runs call the best endpoint first.
+     *
+     * @throws IOException if the health cannot be stored
+     */
+    public void saveEndpointHealth() throws IOException {
+        KampWSClient client = getConnectedClient();
+        if (client != null) {
+            client.saveHealth();
         }
     }
 
-    public static boolean webServiceAvailable() {
-        return (kampws != null);
+    /**
+     * Returns the client of the web service if it is connected already.
+     */
+    private KampWSClient getConnectedClient() {
+        synchronized (this) {
+            return kampws;
+        }
+    }
+
+    /**
+     * Lets the web service client answer calls from the response cache of the
+     * specified checkout.
+     *
+     * @param root the root directory of the checkout
+     * @param clear whether to discard all cached responses first
+     * @throws IOException if the cache cannot be cleared
+     */
+    public void useCache(Path root, boolean clear) throws IOException {
+        KampWSCache cache = KampWSCache.forCheckout(root, getClient().getWsdl().toString());
+        if (clear) {
+            cache.invalidate();
+        }
+        getClient().setCache(cache);
+    }
+
+    /**
+     * Downloads the change impact model from the web service and stores it in
+     * the specified checkout. Afterwards, the model is used to answer queries.
+     *
+     * @param root the root directory of the checkout
+     * @throws IOException if the model cannot be stored
+     */
+    public void syncImpactModel(Path root) throws IOException {
+        ImpactModel model = ImpactModel.download(getClient());
+        model.save(KampWSCache.getCacheDirectory(root).resolve(ImpactModel.MODEL_FILE));
+        impactModel = model;
+        offline = false;
+    }
+
+    /**
+     * Lets queries be answered by the change impact model stored in the
+     * specified checkout instead of the web service. Combinations of change
+     * scenarios the model cannot resolve (see
+     * {@link ImpactModel#combinesByUnion(List)}) are rejected.
+     *
+     * @param root the root directory of the checkout
+     * @return whether a model was found
+     * @throws IOException if the stored model cannot be read
+     */
+    public boolean useImpactModel(Path root) throws IOException {
+        Path file = KampWSCache.getCacheDirectory(root).resolve(ImpactModel.MODEL_FILE);
+        if (!Files.exists(file)) {
+            return false;
+        }
+        impactModel = ImpactModel.load(file);
+        offline = true;
+        return true;
+    }
+
+    /**
+     * Returns the module index of the specified checkout. The checkout is
+     * scanned on first use only, so that all queries of a command share one
+     * scan; helpers created with {@link #newHelper()} scan again.
+     *
+     * @param root the root directory of the checkout
+     * @return the module index
+     * @throws IOException if the checkout cannot be read
+     */
+    public ModuleIndex getModuleIndex(Path root) throws IOException {
+        Path normalized = root.toAbsolutePath().normalize();
+        synchronized (indexLock) {
+            if (moduleIndex == null || !normalized.equals(moduleIndexRoot)) {
+                moduleIndex = ModuleIndex.scan(normalized);
+                moduleIndexRoot = normalized;
+            }
+            return moduleIndex;
+        }
+    }
+
+    /**
+     * Scans the specified checkout again, e.g. after POM files changed, and
+     * returns the updated module index.
+     *
+     * @param root the root directory of the checkout
+     * @return the module index
+     * @throws IOException if the checkout cannot be read
+     */
+    public ModuleIndex rescanModuleIndex(Path root) throws IOException {
+        synchronized (indexLock) {
+            moduleIndex = null;
+            return getModuleIndex(root);
+        }
     }
 
     /**
@@ -58,22 +277,7 @@ public class ShortcutHelper {
      * @throws IOException If IO errors occur while parsing the POM file.
      */
     public static String getProjectNameFromPom(Path pomFile) throws IOException {
-        String name = "";
-        String exceptionText = "Could not parse required information in file " + pomFile.toString()
-            + ". Is that file a valid POM?";
-        try {
-            Document pom = builder.parse(pomFile.toFile());
-            name = xpath.evaluate("/project/name", pom);
-            if (name.equals("")) {
-                name = xpath.evaluate("/project/artifactId", pom);
-            }
-            if (name.equals("")) {
-                throw new IOException(exceptionText);
-            }
-            return name;
-        } catch (SAXException | XPathExpressionException e) {
-            throw new IOException(exceptionText);
-        }
+        return PomReader.readProjectName(pomFile);
     }
 
     /**
@@ -84,13 +288,137 @@ public class ShortcutHelper {
      * @return The change scenario for the project
      * @throws IllegalArgumentException if the project name is invalid
      */
-    public static String getChangeScenarioForProject(String projectName) throws IllegalArgumentException {
+    public String getChangeScenarioForProject(String projectName) throws IllegalArgumentException {
         // get the change scenarios available for this projectName
-        List<String> changeScenarios = kampws.getChangeScenarios(projectName);
+        List<String> changeScenarios = getAvailableChangeScenarios(projectName);
         // ask user for the applicable change scenario
         return ShortcutHelper.getChangeScenarioByUserInput(changeScenarios, projectName);
     }
 
+    /**
+     * Returns the applicable change scenario for the specified project among
+     * the specified change scenarios (determined by user input).
+     * 
+     * @param projectName name of the project of interest
+     * @param changeScenarios the change scenarios available for the project
+     * @return The change scenario for the project
+     */
+    public static String getChangeScenarioForProject(String projectName, List<String> changeScenarios) {
+        return ShortcutHelper.getChangeScenarioByUserInput(changeScenarios, projectName);
+    }
+
+    /**
+     * Returns the change scenarios available for each of the specified
+     * projects. The web service is queried for all projects concurrently.
+     * 
+     * @param projectNames names of the projects of interest
+     * @return the change scenarios, by project name
+     * @throws IllegalArgumentException if a project name is invalid
+     */
+    public Map<String, List<String>> getChangeScenarios(List<String> projectNames)
+        throws IllegalArgumentException {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        if (impactModel != null || projectNames.size() == 1) {
+            for (String projectName : projectNames) {
+                result.put(projectName, getAvailableChangeScenarios(projectName));
+            }
+            return result;
+        }
+
+        Map<String, CompletableFuture<List<String>>> requests = new LinkedHashMap<>();
+        for (String projectName : projectNames) {
+            requests.put(projectName, getClient().getChangeScenariosAsync(projectName));
+        }
+        for (Map.Entry<String, CompletableFuture<List<String>>> request : requests.entrySet()) {
+            result.put(request.getKey(), join(request.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Waits for the response of an asynchronous call.
+     */
+    private static List<String> join(CompletableFuture<List<String>> request) throws IllegalArgumentException {
+        try {
+            return request.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Starts fetching the change-specific dependencies of each of the
+     * specified change scenarios, and the build specification paths of the
+     * dependencies, in the background. Later queries for these scenarios and
+     * paths are answered from the fetched responses. Does nothing if queries
+     * are answered by the impact model.
+     * <p>
+     * The dependencies of multiple change scenarios are taken as the union of
+     * the prefetched dependencies of each scenario only if none of them is a
+     * generic scenario like "shortcut_skip_systemTests"; otherwise the web
+     * service is asked.
+     * 
+     * @param changeScenarios the change scenarios that may be selected
+     * @param root the root directory of the checkout
+     */
+    public void prefetch(Collection<String> changeScenarios, Path root) {
+        KampWSClient client = impactModel == null ? getClient() : null;
+        if (client == null) {
+            return;
+        }
+        CompletableFuture<ModuleIndex> index = CompletableFuture.supplyAsync(() -> {
+            try {
+                return getModuleIndex(root);
+            } catch (IOException e) {
+                return new ModuleIndex();
+            }
+        });
+        for (String scenario : changeScenarios) {
+            prefetchedDependencies.computeIfAbsent(scenario, key -> {
+                CompletableFuture<ImpactSet> dependencies = client.getChangeSpecificDependenciesAsync(
+                    Collections.singletonList(key)).thenApply(projectNames -> ImpactSet.of(projectIds, projectNames));
+                dependencies.thenAcceptBoth(index, (projectNames, modules) -> prefetchPaths(client, projectNames,
+                    modules));
+                return dependencies;
+            });
+        }
+    }
+
+    /**
+     * Fetches the build specification paths of the specified projects that are
+     * not in the module index and have not been fetched yet.
+     */
+    private void prefetchPaths(KampWSClient client, ImpactSet projectNames, ModuleIndex index) {
+        List<String> unknown = new ArrayList<>();
+        for (String projectName : projectNames) {
+            if (index.getModuleDirectory(projectName) == null && !prefetchedPaths.containsKey(projectName)) {
+                unknown.add(projectName);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return;
+        }
+        client.getBuildSpecificationPathsAsync(unknown).thenAccept(paths -> {
+            // the service answers with one path per requested project
+            if (paths.size() == unknown.size()) {
+                for (int i = 0; i < paths.size(); i++) {
+                    prefetchedPaths.put(unknown.get(i), paths.get(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the change scenarios available for the specified project.
+     */
+    private List<String> getAvailableChangeScenarios(String projectName) throws IllegalArgumentException {
+        return impactModel != null ? impactModel.getChangeScenarios(projectName)
+            : getClient().getChangeScenarios(projectName);
+    }
+
     /**
      * Asks the user to select one of the change scenarios specified in the
      * list.
@@ -164,9 +492,55 @@ public class ShortcutHelper {
      * @return the list of dependent projects
      * @throws IllegalArgumentException if a change scenario is invalid
      */
-    public static List<String> getChangeSpecificDependencies(List<String> changeScenarios)
+    public List<String> getChangeSpecificDependencies(List<String> changeScenarios)
         throws IllegalArgumentException {
-        return kampws.getChangeSpecificDependencies(changeScenarios);
+        return getImpactSet(changeScenarios).toList();
+    }
+
+    /**
+     * Returns the set of change-specific dependencies for the specified list
+     * of change scenarios.
+     * 
+     * @param changeScenarios the list of change scenarios
+     * @return the dependent projects, without duplicates
+     * @throws IllegalArgumentException if a change scenario is invalid, or
+     *             the scenarios cannot be resolved together offline
+     */
+    public ImpactSet getImpactSet(List<String> changeScenarios) throws IllegalArgumentException {
+        ImpactModel model = impactModel;
+        if (model != null && (offline || ImpactModel.combinesByUnion(changeScenarios))) {
+            return model.getImpactSet(changeScenarios);
+        }
+        ImpactSet prefetched = getPrefetchedImpactSet(changeScenarios);
+        if (prefetched != null) {
+            return prefetched;
+        }
+        return ImpactSet.of(projectIds, getClient().getChangeSpecificDependencies(changeScenarios));
+    }
+
+    /**
+     * Returns the union of the prefetched dependencies of the specified change
+     * scenarios, waiting for pending responses, or null if the dependencies of
+     * a scenario were not prefetched successfully.
+     */
+    private ImpactSet getPrefetchedImpactSet(List<String> changeScenarios) {
+        if (!ImpactModel.combinesByUnion(changeScenarios)) {
+            return null;
+        }
+        ImpactSet result = ImpactSet.empty(projectIds);
+        for (String scenario : changeScenarios) {
+            CompletableFuture<ImpactSet> dependencies = prefetchedDependencies.get(scenario);
+            if (dependencies == null) {
+                return null;
+            }
+            try {
+                result = result.union(dependencies.join());
+            } catch (CompletionException e) {
+                // asked again, so that errors are reported as usual
+                return null;
+            }
+        }
+        return changeScenarios.isEmpty() ? null : result;
     }
 
     /**
@@ -178,18 +552,119 @@ public class ShortcutHelper {
      * @throws IllegalArgumentException if a project name was invalid
      * @throws FileNotFoundException if a POM file for a project name is missing
      */
-    public static List<String> getRelativeProjectPaths(List<String> projectNames, Path root)
+    public List<String> getRelativeProjectPaths(List<String> projectNames, Path root)
         throws IllegalArgumentException, FileNotFoundException {
 
-        List<String> result = new ArrayList<>();
-        List<String> pomPaths = kampws.getBuildSpecificationPaths(projectNames);
-        for (String pomPath : pomPaths) {
-            String folderPath = pomPath.replace("/pom.xml", "");
-            if (!pomAtPathExists(pomPath, root)) {
-                throw new FileNotFoundException("There is no pom.xml in directory " + root + "/"
-                    + folderPath + ". Did you forget to initialize?");
+        ModuleIndex index;
+        try {
+            index = getModuleIndex(root);
+        } catch (IOException e) {
+            // the web service knows all paths as well
+            index = new ModuleIndex();
+        }
+
+        ProjectPaths paths = resolveProjectPaths(projectNames, index, root);
+        if (!paths.isComplete()) {
+            StringBuilder message = new StringBuilder();
+            for (String folderPath : paths.getMissing().values()) {
+                message.append("There is no pom.xml in directory " + root + "/" + folderPath + ".\n");
+            }
+            message.append("Did you forget to initialize?");
+            throw new FileNotFoundException(message.toString());
+        }
+        return paths.getRelativePaths();
+    }
+
+    /**
+     * Resolves the project paths of all specified projects at once. Projects
+     * found in the module index are resolved locally; only the others are
+     * looked up with the web service (or the impact model). Projects defined
+     * by several modules of the checkout are looked up as well, to pick the
+     * module the service knows; if it knows none of them, the module chosen
+     * by the index is built and the ambiguity is reported.
+     * 
+     * @param projectNames projects of interest
+     * @param index the module index of the checkout
+     * @param root the root directory
+     * @return relative project paths and the projects whose POM file is missing
+     * @throws IllegalArgumentException if a project name was invalid
+     */
+    public ProjectPaths resolveProjectPaths(List<String> projectNames, ModuleIndex index, Path root)
+        throws IllegalArgumentException {
+
+        Map<String, List<String>> duplicates = index.getDuplicates();
+        Map<String, String> pomPaths = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        List<String> ambiguous = new ArrayList<>();
+        for (String projectName : projectNames) {
+            if (index.getModuleDirectory(projectName) == null) {
+                String prefetched = impactModel == null ? prefetchedPaths.get(projectName) : null;
+                if (prefetched != null) {
+                    pomPaths.put(projectName, prefetched);
+                } else {
+                    unknown.add(projectName);
+                }
+            } else if (duplicates.containsKey(projectName)) {
+                ambiguous.add(projectName);
+            }
+        }
+
+        if (!unknown.isEmpty()) {
+            pomPaths.putAll(getBuildSpecificationPaths(unknown));
+        }
+        if (!ambiguous.isEmpty() && (impactModel != null || getClient() != null)) {
+            try {
+                pomPaths.putAll(getBuildSpecificationPaths(ambiguous));
+            } catch (IllegalArgumentException e) {
+                // not known to the service; the index decides
+            }
+        }
+
+        ProjectPaths result = new ProjectPaths();
+        for (String projectName : projectNames) {
+            String folderPath = index.getModuleDirectory(projectName);
+            if (folderPath != null && duplicates.containsKey(projectName)) {
+                String pomPath = pomPaths.get(projectName);
+                String known = pomPath == null ? null : pomPath.replace("/pom.xml", "");
+                if (duplicates.get(projectName).contains(known)) {
+                    folderPath = known;
+                } else {
+                    System.err.println("Warning: the project " + projectName + " is defined in several modules ("
+                        + String.join(", ", duplicates.get(projectName)) + "). Building " + folderPath + ".");
+                }
             }
-            result.add(folderPath);
+            if (folderPath != null) {
+                // Maven expects "." for the root project
+                result.addPath(folderPath.isEmpty() ? "." : folderPath);
+                continue;
+            }
+
+            String pomPath = pomPaths.get(projectName);
+            if (pomPath == null) {
+                throw new IllegalArgumentException("Could not find build specification paths. (No path for "
+                    + projectName + ")");
+            }
+            folderPath = pomPath.replace("/pom.xml", "");
+            if (pomAtPathExists(pomPath, root)) {
+                result.addPath(folderPath);
+            } else {
+                result.addMissing(projectName, folderPath);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the build specification paths of the specified projects known
+     * to the impact model or the web service.
+     */
+    private Map<String, String> getBuildSpecificationPaths(List<String> projectNames)
+        throws IllegalArgumentException {
+        List<String> response = impactModel != null ? impactModel.getBuildSpecificationPaths(projectNames)
+            : getClient().getBuildSpecificationPaths(projectNames);
+        Map<String, String> result = new HashMap<>();
+        for (int i = 0; i < projectNames.size() && i < response.size(); i++) {
+            result.put(projectNames.get(i), response.get(i));
         }
         return result;
     }
@@ -0,0 +1,489 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the test classes affected by changes to Java sources, so that only
+ * those run in a build.
+ * <p>
+ * The dependencies between classes are read from the constant pools of the
+ * compiled classes in "target/classes" and "target/test-classes" of the built
+ * modules. A test class is affected if it depends on a changed class, directly
+ * or through other classes. A changed test source of a built module is
+ * selected itself, even if it was not compiled yet. The dependencies read from
+ * each class file are stored in the file "test-impact" in the cache directory
+ * of the checkout, and reused as long as the class file is unchanged.
+ * <p>
+ * All tests have to run if no Java source changed, if any other file changed,
+ * if a changed file belongs to no module, if the compiled classes do not
+ * reflect the unchanged sources (e.g. because a module was not compiled yet),
+ * or if the Surefire plugin of a module may be configured with includes or
+ * excludes of its own; the test classes are recognized by Surefire's default
+ * includes. Dependencies on constants inlined by the compiler are not visible
+ * in class files and therefore not considered.
+ */
+public class TestSelector {
+
+    /** Name of the file in the cache directory storing the class dependencies. */
+    public static final String MAP_FILE = "test-impact";
+
+    private static final String HEADER = "# shortcut test impact 1";
+
+    private static final String[] SOURCE_DIRECTORIES = { "src/main/java/", "src/test/java/" };
+    private static final String[] CLASS_DIRECTORIES = { "target/classes", "target/test-classes" };
+    private static final String TEST_CLASSES = "target/test-classes";
+
+    /** Test classes run by the Surefire plugin by default. */
+    private static final Pattern TEST_NAME = Pattern.compile("Test.*|.*Test|.*Tests|.*TestCase");
+
+    /** The artifact of the Surefire plugin, as declared in a POM. */
+    private static final String SUREFIRE = "<artifactId>maven-surefire-plugin</artifactId>";
+
+    /** Classes referenced by field and method descriptors and signatures. */
+    private static final Pattern DESCRIPTOR = Pattern.compile("L([^;<>()\\[:]+)[;<]");
+
+    private final Path root;
+    // by path of the class file, relative to the checkout root
+    private final Map<String, ClassEntry> classes = new TreeMap<>();
+    private boolean modified = false;
+
+    private TestSelector(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Loads the class dependencies stored in the checkout with the specified
+     * root directory.
+     *
+     * @param root the root directory of the checkout
+     * @return the stored dependencies, or none if there are none
+     * @throws IOException if the stored dependencies cannot be read
+     */
+    public static TestSelector load(Path root) throws IOException {
+        TestSelector selector = new TestSelector(root);
+        Path file = KampWSCache.getCacheDirectory(root).resolve(MAP_FILE);
+        if (!Files.isRegularFile(file)) {
+            return selector;
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+            // written by another version; all classes are read again
+            return selector;
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length == 4) {
+                try {
+                    List<String> dependencies = fields[3].isEmpty() ? Collections.<String> emptyList()
+                        : Arrays.asList(fields[3].split(" "));
+                    selector.classes.put(fields[0], new ClassEntry(Long.parseLong(fields[1]), fields[2],
+                        dependencies));
+                } catch (NumberFormatException e) {
+                    // read again
+                }
+            }
+        }
+        return selector;
+    }
+
+    /**
+     * Stores the class dependencies in the checkout, if any were read.
+     * Dependencies of class files that no longer exist are dropped.
+     *
+     * @throws IOException if the dependencies cannot be written
+     */
+    public void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<>(classes.size() + 1);
+        lines.add(HEADER);
+        for (Iterator<Map.Entry<String, ClassEntry>> i = classes.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<String, ClassEntry> entry = i.next();
+            if (!Files.isRegularFile(root.resolve(entry.getKey()))) {
+                i.remove();
+                continue;
+            }
+            ClassEntry value = entry.getValue();
+            lines.add(entry.getKey() + "\t" + value.lastModified + "\t" + value.className + "\t"
+                + String.join(" ", value.dependencies));
+        }
+
+        Path file = KampWSCache.getCacheDirectory(root).resolve(MAP_FILE);
+        KampWSCache.write(file, lines);
+        modified = false;
+    }
+
+    /**
+     * Selects the test classes of the specified modules affected by the
+     * specified changes.
+     *
+     * @param index the modules of the checkout
+     * @param modules the modules to be built, relative to the checkout root
+     * @param changedFiles the changed files, relative to the checkout root
+     * @return the selection
+     * @throws IOException if the sources or classes cannot be read
+     */
+    public Selection select(ModuleIndex index, Collection<String> modules, Collection<String> changedFiles)
+        throws IOException {
+        // the changed classes
+        Set<String> changed = new HashSet<>();
+        Set<String> changedSources = new HashSet<>();
+        Set<String> changedTests = new TreeSet<>();
+        for (String file : changedFiles) {
+            String module = index.getOwningModule(file);
+            if (module == null) {
+                return Selection.all(file + " belongs to no module.");
+            }
+            String path = module.isEmpty() ? file : file.substring(module.length() + 1);
+            String className = toClassName(path);
+            if (className == null) {
+                return Selection.all(file + " is no Java source.");
+            }
+            changed.add(className);
+            changedSources.add(file);
+            String simpleName = className.substring(className.lastIndexOf('.') + 1);
+            if (path.startsWith(SOURCE_DIRECTORIES[1]) && TEST_NAME.matcher(simpleName).matches()
+                && modules.contains(module.isEmpty() ? "." : module) && Files.isRegularFile(root.resolve(file))) {
+                // new tests have no class file before the build
+                changedTests.add(className);
+            }
+        }
+        if (changed.isEmpty()) {
+            return Selection.all("No Java source changed.");
+        }
+
+        // the dependencies of all classes of the modules
+        Map<String, Set<String>> dependents = new HashMap<>();
+        Set<String> testClasses = new TreeSet<>();
+        Map<Path, Boolean> customized = new HashMap<>();
+        for (String module : modules) {
+            String directory = module.equals(".") ? "" : module;
+            String stale = findStaleSource(directory, changedSources);
+            if (stale != null) {
+                return Selection.all(stale);
+            }
+            String custom = findCustomTests(directory, customized);
+            if (custom != null) {
+                return Selection.all(custom);
+            }
+            for (String classDirectory : CLASS_DIRECTORIES) {
+                String relative = directory.isEmpty() ? classDirectory : directory + "/" + classDirectory;
+                for (ClassEntry entry : readClasses(root.resolve(relative))) {
+                    for (String dependency : entry.dependencies) {
+                        dependents.computeIfAbsent(dependency, key -> new HashSet<>()).add(entry.className);
+                    }
+                    String simpleName = entry.className.substring(entry.className.lastIndexOf('.') + 1);
+                    if (classDirectory.equals(TEST_CLASSES) && TEST_NAME.matcher(simpleName).matches()) {
+                        testClasses.add(entry.className);
+                    }
+                }
+            }
+        }
+
+        // everything depending on the changed classes
+        Set<String> affected = new HashSet<>(changed);
+        Deque<String> pending = new ArrayDeque<>(changed);
+        while (!pending.isEmpty()) {
+            Set<String> next = dependents.get(pending.removeFirst());
+            if (next != null) {
+                for (String className : next) {
+                    if (affected.add(className)) {
+                        pending.addLast(className);
+                    }
+                }
+            }
+        }
+        testClasses.retainAll(affected);
+        testClasses.addAll(changedTests);
+        return new Selection(new ArrayList<>(testClasses), null);
+    }
+
+    /**
+     * Returns why the classes of a module do not reflect its unchanged
+     * sources, or null if they do.
+     */
+    private String findStaleSource(String module, Set<String> changedSources) throws IOException {
+        Path directory = root.resolve(module);
+        if (!Files.isDirectory(directory.resolve("target"))) {
+            return (module.isEmpty() ? "The root module" : module) + " was not compiled yet.";
+        }
+        for (int i = 0; i < SOURCE_DIRECTORIES.length; i++) {
+            Path sources = directory.resolve(SOURCE_DIRECTORIES[i]);
+            if (!Files.isDirectory(sources)) {
+                continue;
+            }
+            Path classDirectory = directory.resolve(CLASS_DIRECTORIES[i]);
+            final List<Path> files = new ArrayList<>();
+            Files.walkFileTree(sources, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".java") && !name.equals("package-info.java")
+                        && !name.equals("module-info.java")) {
+                        files.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            for (Path file : files) {
+                if (changedSources.contains(ModuleIndex.toRelativePath(root, file))) {
+                    continue;
+                }
+                String relative = ModuleIndex.toRelativePath(sources, file);
+                Path classFile = classDirectory.resolve(relative.substring(0, relative.length() - 5) + ".class");
+                if (!Files.isRegularFile(classFile)
+                    || Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(classFile)) > 0) {
+                    return ModuleIndex.toRelativePath(root, file) + " was not compiled since it changed.";
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns which POM may configure the tests run by Surefire in a module
+     * with includes or excludes of its own, or null if none does. The POM
+     * files of the module and of the directories above it in the checkout are
+     * considered, as the parents of a module usually live there.
+     */
+    private String findCustomTests(String module, Map<Path, Boolean> customized) throws IOException {
+        Path top = root.toAbsolutePath().normalize();
+        for (Path directory = top.resolve(module).normalize(); directory != null && directory.startsWith(top);
+            directory = directory.getParent()) {
+            Path pom = directory.resolve(ModuleIndex.POM_FILE);
+            Boolean custom = customized.get(pom);
+            if (custom == null) {
+                custom = Files.isRegularFile(pom) && configuresTests(new String(Files.readAllBytes(pom),
+                    StandardCharsets.UTF_8));
+                customized.put(pom, custom);
+            }
+            if (custom) {
+                return ModuleIndex.toRelativePath(top, pom) + " configures the tests run by Surefire.";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the Surefire plugin is declared with includes or
+     * excludes in the specified POM.
+     */
+    static boolean configuresTests(String pom) {
+        for (int start = pom.indexOf(SUREFIRE); start >= 0; start = pom.indexOf(SUREFIRE, start + 1)) {
+            int end = pom.indexOf("</plugin>", start);
+            String plugin = pom.substring(start, end < 0 ? pom.length() : end);
+            if (plugin.contains("<includes") || plugin.contains("<excludes") || plugin.contains("<test>")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the classes in a class directory, reading changed class files.
+     */
+    private List<ClassEntry> readClasses(Path directory) throws IOException {
+        final List<ClassEntry> result = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return result;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (file.getFileName().toString().endsWith(".class")) {
+                    String key = ModuleIndex.toRelativePath(root, file);
+                    long lastModified = attrs.lastModifiedTime().toMillis();
+                    ClassEntry entry = classes.get(key);
+                    if (entry == null || entry.lastModified != lastModified) {
+                        entry = readClass(file, lastModified);
+                        classes.put(key, entry);
+                        modified = true;
+                    }
+                    result.add(entry);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Reads the name of a class and the top-level classes it references from
+     * its constant pool. Nested classes are attributed to their top-level
+     * class.
+     */
+    static ClassEntry readClass(Path file, long lastModified) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != 0xCAFEBABE) {
+                throw new IOException(file + " is no class file.");
+            }
+            in.readUnsignedShort();
+            in.readUnsignedShort();
+            int count = in.readUnsignedShort();
+            String[] utf8 = new String[count];
+            int[] classNames = new int[count];
+            for (int i = 1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                case 1:
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7:
+                    classNames[i] = in.readUnsignedShort();
+                    break;
+                case 8: case 16: case 19: case 20:
+                    in.readUnsignedShort();
+                    break;
+                case 15:
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                    in.readInt();
+                    break;
+                case 5: case 6:
+                    in.readLong();
+                    // takes two entries
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag + " in " + file + ".");
+                }
+            }
+            in.readUnsignedShort();
+            String className = toTopLevel(utf8[classNames[in.readUnsignedShort()]]);
+
+            Set<String> dependencies = new TreeSet<>();
+            for (int i = 1; i < count; i++) {
+                if (classNames[i] != 0 && !utf8[classNames[i]].startsWith("[")) {
+                    dependencies.add(toTopLevel(utf8[classNames[i]]));
+                } else if (utf8[i] != null && utf8[i].indexOf(';') >= 0) {
+                    Matcher matcher = DESCRIPTOR.matcher(utf8[i]);
+                    while (matcher.find()) {
+                        dependencies.add(toTopLevel(matcher.group(1)));
+                    }
+                }
+            }
+            dependencies.remove(className);
+            return new ClassEntry(lastModified, className, new ArrayList<>(dependencies));
+        }
+    }
+
+    /**
+     * Returns the name of the class defined in a Java source, or null if the
+     * path is no Java source.
+     */
+    private static String toClassName(String path) {
+        for (String directory : SOURCE_DIRECTORIES) {
+            if (path.startsWith(directory) && path.endsWith(".java")) {
+                return path.substring(directory.length(), path.length() - 5).replace('/', '.');
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of the top-level class of an internal class name.
+     */
+    private static String toTopLevel(String internalName) {
+        int nested = internalName.indexOf('$');
+        return (nested < 0 ? internalName : internalName.substring(0, nested)).replace('/', '.');
+    }
+
+    /**
+     * The classes referenced by a class file.
+     */
+    static class ClassEntry {
+        private final long lastModified;
+        private final String className;
+        private final List<String> dependencies;
+
+        ClassEntry(long lastModified, String className, List<String> dependencies) {
+            this.lastModified = lastModified;
+            this.className = className;
+            this.dependencies = dependencies;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        List<String> getDependencies() {
+            return dependencies;
+        }
+    }
+
+    /**
+     * The tests to run.
+     */
+    public static class Selection {
+
+        private final List<String> tests;
+        private final String reason;
+
+        private Selection(List<String> tests, String reason) {
+            this.tests = tests;
+            this.reason = reason;
+        }
+
+        private static Selection all(String reason) {
+            return new Selection(null, reason);
+        }
+
+        /**
+         * Returns whether all tests have to run.
+         *
+         * @return whether the affected tests are unknown
+         */
+        public boolean isAll() {
+            return tests == null;
+        }
+
+        /**
+         * Returns the affected test classes.
+         *
+         * @return the fully qualified names of the test classes, in
+         *         alphabetical order, or null if all tests have to run
+         */
+        public List<String> getTests() {
+            return tests;
+        }
+
+        /**
+         * Returns why all tests have to run.
+         *
+         * @return the reason, or null if only the affected tests run
+         */
+        public String getReason() {
+            return reason;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.ptvgroup.devcomp.tooling.creator.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.beust.jcommander.JCommander;
+import com.ptvgroup.devcomp.tooling.shortcut.Git;
+import com.ptvgroup.devcomp.tooling.shortcut.KampWSStandIn;
+import com.ptvgroup.devcomp.tooling.shortcut.ModuleIndex;
+import com.ptvgroup.devcomp.tooling.shortcut.ScenarioClassifier;
+import com.ptvgroup.devcomp.tooling.shortcut.ShortcutHelper;
+import com.ptvgroup.devcomp.tooling.shortcut.SyntheticCheckout;
+
+/**
+ * Tests for the Shortcut command.
+ */
+public class ShortcutTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGetArguments_Defaults() {
+        // options left at their default are not forwarded
+        assertEquals(Arrays.asList("install"), parse("install").getArguments());
+        assertEquals(Arrays.asList("--parallel", "4", "-DskipTests", "install"),
+            parse("--parallel", "4", "-DskipTests", "install").getArguments());
+    }
+
+    @Test
+    public void testGetArguments_RoundTrip() {
+        Shortcut sc = parse("--projectNames", "lbc,xs-frontend", "--diff", "origin/master...HEAD",
+            "--nonInteractive", "--shard", "2/3", "--dryRun", "-Dmaven.test.failure.ignore=true", "clean",
+            "install");
+        List<String> arguments = sc.getArguments();
+        assertEquals(arguments, parse(arguments.toArray(new String[arguments.size()])).getArguments());
+        assertEquals(Arrays.asList("clean", "install"), arguments.subList(arguments.size() - 2, arguments.size()));
+        assertEquals(11, arguments.size());
+    }
+
+    @Test
+    public void testBuildCommits() throws Exception {
+        Path root = folder.newFolder("checkout").toPath();
+        SyntheticCheckout checkout = new SyntheticCheckout(20, 2, 1.5, 42);
+        checkout.write(root);
+        Git git = new Git(root);
+        try {
+            git.run("init", "-q");
+            git.run("config", "user.name", "test");
+            git.run("config", "user.email", "test@localhost");
+        } catch (IOException e) {
+            Assume.assumeNoException(e);
+        }
+        // the root commit adds every module
+        git.run("add", "-A");
+        git.run("commit", "-q", "-m", "root");
+        String projectName = checkout.getProjectNames().get(0);
+        commitChange(git, root, projectName);
+        // the aggregators are projects as well
+        List<String> projectNames = new ArrayList<>(ModuleIndex.scan(root).getProjectNames());
+        Map<String, List<String>> affected = new HashMap<>();
+        affected.put(projectName + ScenarioClassifier.DEFAULT_SUFFIX,
+            new ArrayList<>(checkout.getAffected(projectName)));
+        ShortcutHelper helper = new ShortcutHelper(new KampWSStandIn(projectNames,
+            Collections.<String, List<String>> emptyMap(), affected).createClient());
+        String changed = " commits in HEAD change " + projectNames.size() + " projects; ";
+
+        String output = buildCommits(root, helper);
+        assertTrue(output, output.contains("2" + changed + "2 of them were analysed"));
+        for (String dependent : checkout.getAffected(projectName)) {
+            assertTrue(dependent, output.contains(dependent));
+        }
+
+        // known since the last run
+        output = buildCommits(root, helper);
+        assertTrue(output, output.contains("2" + changed + "0 of them were analysed"));
+
+        commitChange(git, root, checkout.getProjectNames().get(1));
+        output = buildCommits(root, helper);
+        assertTrue(output, output.contains("3" + changed + "1 of them were analysed"));
+    }
+
+    private static void commitChange(Git git, Path root, String projectName) throws IOException {
+        Path source = root.resolve(SyntheticCheckout.getModuleDirectory(projectName))
+            .resolve("src/main/java/Module.java");
+        Files.write(source, "class Module { int changed; }\n".getBytes(StandardCharsets.UTF_8));
+        git.run("commit", "-q", "-a", "-m", "change " + projectName);
+    }
+
+    /**
+     * Builds the projects affected by the commits of the checkout on a dry
+     * run.
+     *
+     * @return the output of the command
+     */
+    private static String buildCommits(Path root, ShortcutHelper helper) throws Exception {
+        JCommander jc = new JCommander();
+        Shortcut sc = Shortcut.create(jc, root, helper);
+        jc.parse(sc.getDefaultName(), "--commits", "HEAD", "--nonInteractive", "--noDaemon", "--dryRun", "install");
+        PrintStream out = System.out;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(buffer, true, "UTF-8"));
+        try {
+            assertEquals(0, sc.execute());
+        } finally {
+            System.setOut(out);
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Shortcut parse(String... arguments) {
+        JCommander jc = new JCommander();
+        Shortcut sc = Shortcut.create(jc, Paths.get("."), new ShortcutHelper());
+        List<String> args = new ArrayList<>();
+        args.add(sc.getDefaultName());
+        args.addAll(Arrays.asList(arguments));
+        jc.parse(args.toArray(new String[args.size()]));
+        return sc;
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the BuildCache.
+ */
+public class BuildCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final List<String> OPTIONS = Arrays.asList("install");
+
+    private Path root;
+    private ModuleGraph graph;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("shortcut-build").toPath();
+        write("base/pom.xml", "<project/>");
+        write("base/src/main/java/Base.java", "class Base {}");
+        write("app/pom.xml", "<project/>");
+        write("app/src/main/java/App.java", "class App {}");
+        graph = new ModuleGraph(Arrays.asList("base", "app"),
+            Collections.singletonMap("app", Arrays.asList("base")));
+    }
+
+    private void write(String file, String content) throws IOException {
+        Path path = root.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFingerprint_Stable() throws IOException {
+        BuildCache cache = BuildCache.load(root);
+        assertEquals(cache.fingerprint(graph, graph.getModules(), OPTIONS),
+            cache.fingerprint(graph, graph.getModules(), OPTIONS));
+    }
+
+    @Test
+    public void testFingerprint_UpstreamChange() throws IOException {
+        BuildCache cache = BuildCache.load(root);
+        Map<String, String> before = cache.fingerprint(graph, graph.getModules(), OPTIONS);
+        write("base/src/main/java/Base.java", "class Base { int changed; }");
+        Map<String, String> after = cache.fingerprint(graph, graph.getModules(), OPTIONS);
+
+        assertNotEquals(before.get("base"), after.get("base"));
+        assertNotEquals(before.get("app"), after.get("app"));
+    }
+
+    @Test
+    public void testFingerprint_UpstreamNotBuilt() throws IOException {
+        BuildCache cache = BuildCache.load(root);
+        List<String> modules = Arrays.asList("app");
+        Map<String, String> before = cache.fingerprint(graph, modules, OPTIONS);
+        write("base/src/main/java/Base.java", "class Base { int changed; }");
+        Map<String, String> after = cache.fingerprint(graph, modules, OPTIONS);
+
+        assertEquals(modules, new ArrayList<>(after.keySet()));
+        assertNotEquals(before.get("app"), after.get("app"));
+    }
+
+    @Test
+    public void testFingerprint_ExternalDependency() throws IOException {
+        Path repository = folder.newFolder("repository").toPath();
+        write("lib/pom.xml", "<project><groupId>g</groupId><artifactId>lib</artifactId>"
+            + "<dependencies><dependency><groupId>org.example</groupId><artifactId>util</artifactId>"
+            + "</dependency></dependencies></project>");
+        ModuleGraph libGraph = ModuleGraph.read(root, Arrays.asList("lib"));
+        BuildCache cache = BuildCache.load(root, repository);
+        Map<String, String> before = cache.fingerprint(libGraph, libGraph.getModules(), OPTIONS);
+
+        Path artifact = repository.resolve("org/example/util/1.0/util-1.0.jar");
+        Files.createDirectories(artifact.getParent());
+        Files.write(artifact, "jar".getBytes(StandardCharsets.UTF_8));
+        Map<String, String> installed = cache.fingerprint(libGraph, libGraph.getModules(), OPTIONS);
+        assertNotEquals(before, installed);
+        assertEquals(installed, cache.fingerprint(libGraph, libGraph.getModules(), OPTIONS));
+
+        // a new snapshot of the same version
+        Files.write(artifact, "new jar".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(installed, cache.fingerprint(libGraph, libGraph.getModules(), OPTIONS));
+    }
+
+    @Test
+    public void testFingerprint_IgnoresBuildOutput() throws IOException {
+        BuildCache cache = BuildCache.load(root);
+        Map<String, String> before = cache.fingerprint(graph, graph.getModules(), OPTIONS);
+        write("app/target/classes/App.class", "binary");
+
+        assertEquals(before, cache.fingerprint(graph, graph.getModules(), OPTIONS));
+        assertNotEquals(before, cache.fingerprint(graph, graph.getModules(), Arrays.asList("test")));
+    }
+
+    @Test
+    public void testRecord() throws IOException {
+        BuildCache cache = BuildCache.load(root);
+        Map<String, String> fingerprints = cache.fingerprint(graph, graph.getModules(), OPTIONS);
+        cache.record("base", fingerprints.get("base"));
+        cache.save();
+
+        BuildCache loaded = BuildCache.load(root);
+        assertTrue(loaded.isUpToDate("base", fingerprints.get("base")));
+        assertFalse(loaded.isUpToDate("app", fingerprints.get("app")));
+    }
+
+}
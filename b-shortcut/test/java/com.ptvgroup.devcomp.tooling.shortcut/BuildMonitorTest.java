@@ -0,0 +1,105 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the BuildMonitor, on output of Maven 3.6.
+ */
+public class BuildMonitorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ByteArrayOutputStream progress;
+    private BuildMonitor monitor;
+
+    @Before
+    public void setUp() throws IOException {
+        progress = new ByteArrayOutputStream();
+        monitor = new BuildMonitor(Arrays.asList("base", "core", "app"),
+            new BuildDurations(folder.newFolder("shortcut-monitor").toPath()), new PrintStream(progress, true));
+        monitor.addModule("base", "base", "Base");
+        monitor.addModule("core", "core", "Core Library");
+        monitor.addModule("app", "app", "Application");
+    }
+
+    @Test
+    public void testAccept() {
+        assertTrue(monitor.accept("[INFO] ------------------------< com.example:base >-------------------------"));
+        assertTrue(monitor.accept("[INFO] Building Base 1.0-SNAPSHOT                                      [1/3]"));
+        assertTrue(monitor.accept("[INFO] Building jar: /work/base/target/base-1.0-SNAPSHOT.jar"));
+        assertTrue(monitor.accept("[INFO] \u001B[1m------------------------< \u001B[0;36mcom.example:core"
+            + "\u001B[0;1m >-------------------------\u001B[m"));
+        assertTrue(monitor.accept("[INFO] Building Core Library 1.0-SNAPSHOT                              [2/3]"));
+        assertTrue(monitor.accept("[ERROR] Tests run: 4, Failures: 1, Errors: 0, Skipped: 0"));
+        assertTrue(monitor.accept("[INFO] Reactor Summary for Parent 1.0-SNAPSHOT:"));
+        assertTrue(monitor.accept("[INFO] BUILD FAILURE"));
+        assertTrue(monitor.accept("[ERROR] Failed to execute goal org.apache.maven.plugins:maven-surefire-plugin:"
+            + "2.22.2:test (default-test) on project core: There are test failures."));
+        monitor.finish(1);
+
+        Map<String, BuildResult.Status> expected = new LinkedHashMap<>();
+        expected.put("base", BuildResult.Status.SUCCESS);
+        expected.put("core", BuildResult.Status.FAILURE);
+        assertEquals(expected, monitor.getResult().getStatuses());
+        assertNull(monitor.getAbortReason());
+        String output = new String(progress.toByteArray());
+        assertTrue(output, output.contains("[shortcut] Built 1 of 3 modules, about "));
+        assertTrue(output, output.contains("[shortcut] Built 2 of 3 modules, core failed, about "));
+    }
+
+    @Test
+    public void testAccept_FailFast() {
+        monitor.setFailFast(Arrays.asList("core"));
+        assertTrue(monitor.accept("[INFO] Building Base 1.0-SNAPSHOT"));
+        assertTrue(monitor.accept("[ERROR] COMPILATION ERROR : "));
+        assertTrue(monitor.accept("[INFO] Building Core Library 1.0-SNAPSHOT"));
+        assertTrue(monitor.accept("[ERROR] Tests run: 4, Failures: 0, Errors: 0, Skipped: 1"));
+        assertFalse(monitor.accept("[ERROR] COMPILATION ERROR : "));
+        assertEquals("changed module core failed", monitor.getAbortReason());
+    }
+
+    @Test
+    public void testAccept_ReactorSummary() throws IOException {
+        // modules built by several threads
+        assertTrue(monitor.accept("[INFO] Building Base 1.0-SNAPSHOT                                      [1/3]"));
+        assertTrue(monitor.accept("[INFO] Building Core Library 1.0-SNAPSHOT                              [2/3]"));
+        assertTrue(monitor.accept("[INFO] Building Application 1.0-SNAPSHOT                               [3/3]"));
+        assertTrue(monitor.accept("[INFO] Reactor Summary for Base 1.0-SNAPSHOT:"));
+        assertTrue(monitor.accept("[INFO] Base 1.0-SNAPSHOT ................................. SUCCESS [  1.234 s]"));
+        assertTrue(monitor.accept("[INFO] Core Library ...................................... FAILURE [01:02 min]"));
+        assertTrue(monitor.accept("[INFO] Application 1.0-SNAPSHOT .......................... SKIPPED"));
+        assertTrue(monitor.accept("[INFO] BUILD FAILURE"));
+        monitor.finish(1);
+
+        Map<String, BuildResult.Status> expected = new LinkedHashMap<>();
+        expected.put("base", BuildResult.Status.SUCCESS);
+        expected.put("core", BuildResult.Status.FAILURE);
+        expected.put("app", BuildResult.Status.SKIPPED);
+        assertEquals(expected, monitor.getResult().getStatuses());
+        assertEquals(Long.valueOf(1234), monitor.getResult().getDurations().get("base"));
+        assertEquals(Long.valueOf(62000), monitor.getResult().getDurations().get("core"));
+    }
+
+    @Test
+    public void testFormatDuration() {
+        assertEquals("3s", BuildMonitor.formatDuration(2600));
+        assertEquals("2m 5s", BuildMonitor.formatDuration(125000));
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the CommitImpactCache.
+ */
+public class CommitImpactCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+    private static final String EMPTY_COMMIT = "89abcdef0123456789abcdef0123456789abcdef";
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("shortcut-commits").toPath();
+    }
+
+    @Test
+    public void testSave() throws IOException {
+        CommitImpactCache cache = CommitImpactCache.load(root, "model-1", TTL);
+        cache.put(COMMIT, Arrays.asList("xs-frontend"), Arrays.asList("xs-frontend_default"),
+            Arrays.asList("xs-frontend", "xs-frontend-dashboard"));
+        cache.put(EMPTY_COMMIT, Collections.<String> emptyList(), Collections.<String> emptyList(),
+            Collections.<String> emptyList());
+        cache.save();
+
+        CommitImpactCache loaded = CommitImpactCache.load(root, "model-1", TTL);
+        CommitImpactCache.Entry impact = loaded.get(COMMIT);
+        assertEquals(Arrays.asList("xs-frontend"), impact.getChangedProjects());
+        assertEquals(Arrays.asList("xs-frontend_default"), impact.getChangeScenarios());
+        assertEquals(Arrays.asList("xs-frontend", "xs-frontend-dashboard"), impact.getAffectedProjects());
+        assertEquals(Collections.emptyList(), loaded.get(EMPTY_COMMIT).getAffectedProjects());
+
+        // analysed against another architecture model
+        assertNull(CommitImpactCache.load(root, "model-2", TTL).get(COMMIT));
+    }
+
+    @Test
+    public void testLoad_Expired() throws IOException {
+        CommitImpactCache cache = CommitImpactCache.load(root, "", TTL);
+        cache.put(COMMIT, Arrays.asList("lbc"), Arrays.asList("lbc_default"), Arrays.asList("lbc"));
+        cache.save();
+
+        assertNull(CommitImpactCache.load(root, "", -1).get(COMMIT));
+    }
+
+    @Test
+    public void testLoad_Inputs() throws IOException {
+        ModuleIndex index = new ModuleIndex();
+        index.add("lbc", "lbc");
+        CommitImpactCache cache = CommitImpactCache.load(root, index, false);
+        cache.put(COMMIT, Arrays.asList("lbc"), Arrays.asList("lbc_default"), Arrays.asList("lbc"));
+        cache.save();
+        assertEquals(Arrays.asList("lbc"), CommitImpactCache.load(root, index, false).get(COMMIT)
+            .getAffectedProjects());
+
+        // answered by the impact model instead of the web service
+        assertNull(CommitImpactCache.load(root, index, true).get(COMMIT));
+        // another module
+        index.add("xs/frontend", "xs-frontend");
+        assertNull(CommitImpactCache.load(root, index, false).get(COMMIT));
+        // other classification rules
+        ModuleIndex same = new ModuleIndex();
+        same.add("lbc", "lbc");
+        Files.write(root.resolve(ScenarioClassifier.RULES_FILE),
+            "test_change.files = src/test/**\n".getBytes(StandardCharsets.UTF_8));
+        assertNull(CommitImpactCache.load(root, same, false).get(COMMIT));
+    }
+
+    @Test
+    public void testClear() throws IOException {
+        CommitImpactCache cache = CommitImpactCache.load(root, "", TTL);
+        cache.put(COMMIT, Arrays.asList("lbc"), Arrays.asList("lbc_default"), Arrays.asList("lbc"));
+        cache.save();
+
+        cache = CommitImpactCache.load(root, "", TTL);
+        cache.clear();
+        cache.save();
+        assertNull(CommitImpactCache.load(root, "", TTL).get(COMMIT));
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the EndpointHealth.
+ */
+public class EndpointHealthTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final List<String> ENDPOINTS = Arrays.asList("http://a/ws?wsdl", "http://b/ws?wsdl",
+        "http://c/ws?wsdl");
+
+    @Test
+    public void testRank() {
+        EndpointHealth health = new EndpointHealth();
+        assertEquals(ENDPOINTS, health.rank(ENDPOINTS));
+
+        health.recordSuccess(ENDPOINTS.get(0), "getChangeScenarios", TimeUnit.MILLISECONDS.toNanos(300));
+        health.recordSuccess(ENDPOINTS.get(1), "getChangeScenarios", TimeUnit.MILLISECONDS.toNanos(100));
+        health.recordSuccess(ENDPOINTS.get(2), "getChangeScenarios", TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(Arrays.asList(ENDPOINTS.get(1), ENDPOINTS.get(2), ENDPOINTS.get(0)), health.rank(ENDPOINTS));
+
+        health.recordFailure(ENDPOINTS.get(1));
+        assertEquals(Arrays.asList(ENDPOINTS.get(2), ENDPOINTS.get(0), ENDPOINTS.get(1)), health.rank(ENDPOINTS));
+    }
+
+    @Test
+    public void testGetHedgeDelay() {
+        EndpointHealth health = new EndpointHealth();
+        String endpoint = ENDPOINTS.get(0);
+        assertEquals(1000, health.getHedgeDelay(endpoint, "getChangeScenarios", 95));
+
+        health.recordSuccess(endpoint, "getChangeScenarios", TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(200, health.getHedgeDelay(endpoint, "getChangeScenarios", 95));
+
+        for (int i = 2; i <= 20; i++) {
+            health.recordSuccess(endpoint, "getChangeScenarios", TimeUnit.MILLISECONDS.toNanos(100 * i));
+        }
+        assertEquals(1900, health.getHedgeDelay(endpoint, "getChangeScenarios", 95));
+        assertEquals(1000, health.getHedgeDelay(endpoint, "getChangeScenarios", 50));
+    }
+
+    @Test
+    public void testSave() throws IOException {
+        Path file = folder.getRoot().toPath().resolve(EndpointHealth.HEALTH_FILE);
+        EndpointHealth health = EndpointHealth.load(file);
+        health.recordSuccess(ENDPOINTS.get(0), "getChangeScenarios", TimeUnit.MILLISECONDS.toNanos(500));
+        health.recordSuccess(ENDPOINTS.get(1), "getChangeScenarios", TimeUnit.MILLISECONDS.toNanos(50));
+        health.recordFailure(ENDPOINTS.get(2));
+        health.save();
+
+        EndpointHealth loaded = EndpointHealth.load(file);
+        assertEquals(Arrays.asList(ENDPOINTS.get(1), ENDPOINTS.get(0), ENDPOINTS.get(2)), loaded.rank(ENDPOINTS));
+        assertEquals(1000, loaded.getHedgeDelay(ENDPOINTS.get(0), "getChangeScenarios", 95));
+    }
+
+    @Test
+    public void testSave_Latencies() throws IOException {
+        Path file = folder.getRoot().toPath().resolve(EndpointHealth.HEALTH_FILE);
+        EndpointHealth health = EndpointHealth.load(file);
+        for (int i = 1; i <= 20; i++) {
+            health.recordSuccess(ENDPOINTS.get(0), "getChangeScenarios", TimeUnit.MILLISECONDS.toNanos(100 * i));
+        }
+        health.save();
+
+        // the next process hedges after the percentile of the calls of the last one
+        EndpointHealth loaded = EndpointHealth.load(file);
+        assertEquals(1900, loaded.getHedgeDelay(ENDPOINTS.get(1), "getChangeScenarios", 95));
+        assertEquals(1000, loaded.getHedgeDelay(ENDPOINTS.get(1), "getChangeScenarios", 50));
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the FileWatcher.
+ */
+public class FileWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAwaitChanges() throws IOException, InterruptedException {
+        Path root = folder.newFolder("shortcut-watch").toPath();
+        Files.createDirectories(root.resolve("core/src"));
+        Files.createDirectories(root.resolve(".git"));
+        Files.write(root.resolve("core/pom.xml"), new byte[1]);
+
+        try (FileWatcher watcher = new FileWatcher(root)) {
+            Files.write(root.resolve("core/src/A.java"), new byte[1]);
+            Files.createDirectories(root.resolve("core/src/sub"));
+            Files.write(root.resolve("core/src/sub/B.java"), new byte[1]);
+            Files.createDirectories(root.resolve("core/target"));
+            Files.write(root.resolve("core/target/A.class"), new byte[1]);
+            Files.write(root.resolve(".git/index"), new byte[1]);
+            // a package, not the build output of a module
+            Files.createDirectories(root.resolve("core/src/target"));
+            Files.write(root.resolve("core/src/target/C.java"), new byte[1]);
+
+            Set<String> changed = watcher.awaitChanges(500);
+            assertTrue(String.valueOf(changed), changed.contains("core/src/A.java"));
+            assertTrue(String.valueOf(changed), changed.contains("core/src/sub/B.java"));
+            assertFalse(String.valueOf(changed), changed.contains("core/target"));
+            assertFalse(String.valueOf(changed), changed.contains("core/target/A.class"));
+            assertFalse(String.valueOf(changed), changed.contains(".git/index"));
+            assertTrue(String.valueOf(changed), changed.contains("core/src/target/C.java"));
+
+            Files.delete(root.resolve("core/src/sub/B.java"));
+            changed = watcher.awaitChanges(500);
+            assertTrue(String.valueOf(changed), changed.contains("core/src/sub/B.java"));
+        }
+    }
+
+    @Test
+    public void testDiscardChanges() throws IOException, InterruptedException {
+        Path root = folder.newFolder("shortcut-discard").toPath();
+        Files.createDirectories(root.resolve("core/src"));
+
+        try (FileWatcher watcher = new FileWatcher(root)) {
+            // written by a build
+            Files.write(root.resolve("core/src/Generated.java"), new byte[1]);
+            Files.createDirectories(root.resolve("core/src/generated"));
+            watcher.discardChanges(500);
+
+            Files.write(root.resolve("core/src/generated/A.java"), new byte[1]);
+            Set<String> changed = watcher.awaitChanges(500);
+            assertEquals(new TreeSet<>(Arrays.asList("core/src/generated/A.java")), changed);
+        }
+    }
+
+}
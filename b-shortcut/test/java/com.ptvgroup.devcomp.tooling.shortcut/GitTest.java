@@ -0,0 +1,136 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for Git, in a repository created for each test. Skipped if git is
+ * not installed.
+ */
+public class GitTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private Git git;
+
+    @Before
+    public void setUp() {
+        root = folder.getRoot().toPath();
+        git = new Git(root);
+        try {
+            git.run("init", "-q");
+            git.run("config", "user.name", "test");
+            git.run("config", "user.email", "test@localhost");
+        } catch (IOException e) {
+            Assume.assumeNoException(e);
+        }
+    }
+
+    @Test
+    public void testGetCommits() throws IOException {
+        String first = commit("README.md", "first");
+        git.run("checkout", "-q", "-b", "topic");
+        String second = commit("lbc/Base.java", "second");
+        git.run("checkout", "-q", "-");
+        git.run("merge", "-q", "--no-ff", "-m", "merge", "topic");
+        String third = commit("README.md", "third");
+
+        // oldest first, without the merge commit
+        assertEquals(Arrays.asList(first, second, third), git.getCommits("HEAD"));
+        assertEquals(Arrays.asList(second, third), git.getCommits(first + "..HEAD"));
+        assertEquals(Arrays.asList(), git.getCommits("HEAD..HEAD"));
+    }
+
+    @Test
+    public void testGetParent() throws IOException {
+        String first = commit("README.md", "first");
+        String second = commit("lbc/Base.java", "second");
+
+        assertEquals(first, git.getParent(second));
+        assertEquals(Git.EMPTY_TREE, git.getParent(first));
+        // the changes of the root commit
+        assertEquals(Arrays.asList("README.md"), git.getChangedFiles(git.getParent(first) + ".." + first));
+    }
+
+    @Test
+    public void testFromMergeBase() throws IOException {
+        String base = commit("README.md", "base");
+        git.run("checkout", "-q", "-b", "topic");
+        commit("lbc/Base.java", "topic");
+        git.run("checkout", "-q", "-");
+        commit("README.md", "master");
+
+        assertEquals("master...topic", Git.fromMergeBase("master..topic"));
+        assertEquals("master...topic", Git.fromMergeBase("master...topic"));
+        assertEquals("HEAD", Git.fromMergeBase("HEAD"));
+        // only the changes of the topic branch
+        String master = git.run("rev-parse", "--abbrev-ref", "HEAD").get(0);
+        assertEquals(Arrays.asList("README.md", "lbc/Base.java"), git.getChangedFiles(master + "..topic"));
+        assertEquals(Arrays.asList("lbc/Base.java"), git.getChangedFiles(Git.fromMergeBase(master + "..topic")));
+        assertEquals(Arrays.asList(base), git.run("merge-base", master, "topic"));
+    }
+
+    @Test
+    public void testGetDiff() throws IOException {
+        commit("lbc/Base.java", "a\nb\nc\n");
+        Files.write(root.resolve("lbc/Base.java"), "a\nB\nc\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("lbc/New.java"), "x\n".getBytes(StandardCharsets.UTF_8));
+
+        Map<String, List<String>> diff = git.getDiff("HEAD");
+        assertEquals(Arrays.asList("lbc/Base.java", "lbc/New.java"), new ArrayList<>(diff.keySet()));
+        assertEquals(Arrays.asList("@@ -1,3 +1,3 @@", " a", "-b", "+B", " c"), diff.get("lbc/Base.java"));
+        // untracked files are added
+        assertEquals(Arrays.asList("@@ -0,0 +1,1 @@", "+x"), diff.get("lbc/New.java"));
+    }
+
+    @Test(timeout = 60000)
+    public void testRun_ManyErrors() throws IOException {
+        // more than fits into the pipe of the error stream
+        assertEquals(Arrays.asList("done"),
+            git.run("-c", "alias.flood=!yes warning | head -c 1000000 >&2; echo done", "flood"));
+    }
+
+    @Test
+    public void testRun_Failure() {
+        try {
+            git.run("rev-parse", "--verify", "no-such-revision");
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("no-such-revision"));
+        }
+    }
+
+    /**
+     * Commits a change of the specified file.
+     *
+     * @return the hash of the commit
+     */
+    private String commit(String file, String content) throws IOException {
+        Path path = root.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        git.run("add", file);
+        git.run("commit", "-q", "-m", content);
+        List<String> output = git.run("rev-parse", "HEAD");
+        return output.get(0);
+    }
+
+}
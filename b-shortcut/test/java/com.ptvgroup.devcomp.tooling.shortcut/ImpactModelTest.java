@@ -0,0 +1,212 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import edu.kit.ipd.sdq.kampws.client.IllegalArgumentException_Exception;
+import edu.kit.ipd.sdq.kampws.client.StringArray;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the ImpactModel.
+ */
+public class ImpactModelTest {
+
+    private static final Path CONFIG = Paths.get("src/test/resources/shortcuttest/config.properties");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ImpactModel model;
+
+    @Before
+    public void initialize() {
+        Map<String, List<String>> changeScenarios = new LinkedHashMap<>();
+        changeScenarios.put("xs-frontend", Arrays.asList("xs-frontend_default", "shortcut_skip_systemTests"));
+        changeScenarios.put("xs-generation", Arrays.asList("xs-generation-model_default",
+            "shortcut_documentation_change"));
+        changeScenarios.put("xs-server-services", Arrays.asList("xs-server-services_default"));
+        changeScenarios.put("xs-server-container", Collections.<String> emptyList());
+
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        dependencies.put("xs-frontend_default", Arrays.asList("xs-frontend", "xs-server-services",
+            "xs-server-container"));
+        dependencies.put("shortcut_skip_systemTests", Arrays.asList("xs-frontend"));
+        dependencies.put("xs-generation-model_default", Arrays.asList("xs-generation", "xs-frontend",
+            "xs-server-container"));
+        dependencies.put("shortcut_documentation_change", Arrays.asList("xs-generation"));
+        dependencies.put("xs-server-services_default", Arrays.asList("xs-server-services", "unknown-project"));
+
+        Map<String, String> paths = new HashMap<>();
+        paths.put("xs-frontend", "xs/frontend/pom.xml");
+        paths.put("xs-server-services", "xs/server/services/pom.xml");
+
+        model = ImpactModel.build(changeScenarios, dependencies, paths);
+    }
+
+    @Test
+    public void testGetChangeScenarios() {
+        assertEquals(Arrays.asList("xs-frontend_default", "shortcut_skip_systemTests"),
+            model.getChangeScenarios("xs-frontend"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetChangeScenarios_Invalid() {
+        model.getChangeScenarios("invalid");
+    }
+
+    @Test
+    public void testGetChangeSpecificDependencies() {
+        assertEquals(Arrays.asList("xs-frontend", "xs-server-container", "xs-server-services"),
+            model.getChangeSpecificDependencies(Arrays.asList("xs-frontend_default")));
+    }
+
+    @Test
+    public void testGetChangeSpecificDependencies_Union() {
+        assertEquals(Arrays.asList("unknown-project", "xs-frontend", "xs-generation", "xs-server-container",
+            "xs-server-services"), model.getChangeSpecificDependencies(Arrays.asList("xs-generation-model_default",
+                "xs-server-services_default")));
+    }
+
+    @Test
+    public void testGetChangeSpecificDependencies_GenericScenario() {
+        // alone, a generic scenario is resolved like any other
+        assertEquals(Arrays.asList("xs-frontend"),
+            model.getChangeSpecificDependencies(Arrays.asList("shortcut_skip_systemTests")));
+        try {
+            // it modifies the scenario selected with it, so the union would be wrong
+            model.getChangeSpecificDependencies(Arrays.asList("xs-frontend_default", "shortcut_skip_systemTests"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("shortcut_skip_systemTests"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetChangeSpecificDependencies_Invalid() {
+        model.getChangeSpecificDependencies(Arrays.asList("xs-frontend_default", "invalid"));
+    }
+
+    @Test
+    public void testGetBuildSpecificationPaths() {
+        assertEquals(Arrays.asList("xs/server/services/pom.xml", "xs/frontend/pom.xml"),
+            model.getBuildSpecificationPaths(Arrays.asList("xs-server-services", "xs-frontend")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetBuildSpecificationPaths_Unknown() {
+        model.getBuildSpecificationPaths(Arrays.asList("xs-server-container"));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        Path file = folder.newFolder("shortcut-model").toPath().resolve(ImpactModel.MODEL_FILE);
+        model.save(file);
+        ImpactModel loaded = ImpactModel.load(file);
+
+        assertEquals(model.getPossibleProjectNames(), loaded.getPossibleProjectNames());
+        assertEquals(model.getChangeScenarios("xs-generation"), loaded.getChangeScenarios("xs-generation"));
+        assertEquals(model.getChangeSpecificDependencies(Arrays.asList("xs-generation-model_default")),
+            loaded.getChangeSpecificDependencies(Arrays.asList("xs-generation-model_default")));
+        assertEquals(model.getBuildSpecificationPaths(Arrays.asList("xs-frontend")),
+            loaded.getBuildSpecificationPaths(Arrays.asList("xs-frontend")));
+    }
+
+    @Test
+    public void testSyncAndUse() throws IOException {
+        KampWSStandIn service = KampWSStandIn.fromConfig(CONFIG);
+        Path root = folder.getRoot().toPath();
+        new ShortcutHelper(service.createClient()).syncImpactModel(root);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(KampWSCache.getCacheDirectory(root))) {
+            // no temporary files left behind
+            for (Path file : files) {
+                assertEquals(ImpactModel.MODEL_FILE, file.getFileName().toString());
+            }
+        }
+
+        ShortcutHelper offline = new ShortcutHelper(service.createClient());
+        assertTrue(offline.useImpactModel(root));
+        int calls = service.getCalls("getChangeSpecificDependencies");
+        List<String> scenarios = Arrays.asList("xs-frontend_default");
+        assertEquals(new TreeSet<>(service.createClient().getChangeSpecificDependencies(scenarios)),
+            new TreeSet<>(offline.getChangeSpecificDependencies(scenarios)));
+        assertEquals(service.createClient().getChangeScenarios("lbc"),
+            offline.getChangeScenarios(Arrays.asList("lbc")).get("lbc"));
+        // answered by the model, only the calls for the comparison reached the service
+        assertEquals(calls + 1, service.getCalls("getChangeSpecificDependencies"));
+    }
+
+    @Test
+    public void testSyncAndUse_GenericScenario() throws IOException {
+        KampWSStandIn service = KampWSStandIn.fromConfig(CONFIG);
+        Path root = folder.getRoot().toPath();
+        ShortcutHelper synced = new ShortcutHelper(service.createClient());
+        synced.syncImpactModel(root);
+        List<String> scenarios = Arrays.asList("xs-frontend_default", "shortcut_skip_systemTests");
+
+        // resolved together by the service while it is used
+        assertEquals(new TreeSet<>(service.createClient().getChangeSpecificDependencies(scenarios)),
+            new TreeSet<>(synced.getChangeSpecificDependencies(scenarios)));
+
+        ShortcutHelper offline = new ShortcutHelper(service.createClient());
+        assertTrue(offline.useImpactModel(root));
+        int calls = service.getCalls("getChangeSpecificDependencies");
+        try {
+            offline.getChangeSpecificDependencies(scenarios);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // the model cannot resolve them, and the service must not be asked offline
+            assertEquals(calls, service.getCalls("getChangeSpecificDependencies"));
+        }
+    }
+
+    @Test
+    public void testBuild_UnknownAffectedProject() {
+        // still built, but has no change scenarios of its own
+        assertTrue(model.getPossibleProjectNames().contains("unknown-project"));
+        assertEquals(Collections.emptyList(), model.getChangeScenarios("unknown-project"));
+    }
+
+    @Test
+    public void testDownload_RejectedProject() throws IOException {
+        Map<String, List<String>> dependencies = new HashMap<>();
+        dependencies.put("a_default", Arrays.asList("a", "b", "c"));
+        KampWSStandIn service = new KampWSStandIn(Arrays.asList("a", "b", "c"),
+            Collections.<String, List<String>> emptyMap(), dependencies) {
+            @Override
+            public StringArray getBuildSpecificationPaths(StringArray projectNames)
+                throws IllegalArgumentException_Exception {
+                if (projectNames.getItem().contains("b")) {
+                    // no path known for b
+                    projectNames.getItem().add("unknown");
+                }
+                return super.getBuildSpecificationPaths(projectNames);
+            }
+        };
+        ImpactModel downloaded = ImpactModel.download(service.createClient());
+
+        assertEquals(Arrays.asList("a", "b", "c"),
+            downloaded.getChangeSpecificDependencies(Arrays.asList("a_default")));
+        assertEquals(Arrays.asList("a/pom.xml", "c/pom.xml"),
+            downloaded.getBuildSpecificationPaths(Arrays.asList("a", "c")));
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests the ImpactSet.
+ */
+public class ImpactSetTest {
+
+    private final ProjectIds ids = new ProjectIds();
+
+    @Test
+    public void testOf() {
+        ImpactSet set = ImpactSet.of(ids, Arrays.asList("xs-server", "lbc", "xs-frontend", "lbc"));
+
+        assertEquals(Arrays.asList("lbc", "xs-frontend", "xs-server"), set.toList());
+        assertEquals(3, set.size());
+        assertTrue(set.contains("lbc"));
+        assertFalse(set.contains("common"));
+    }
+
+    @Test
+    public void testToList_Cached() {
+        ImpactSet set = ImpactSet.of(ids, Arrays.asList("xs-server", "lbc"));
+        // listed and sorted once
+        assertSame(set.toList(), set.toList());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testToList_Unmodifiable() {
+        ImpactSet.of(ids, Arrays.asList("lbc")).toList().add("xs-server");
+    }
+
+    @Test
+    public void testSetOperations() {
+        ImpactSet first = ImpactSet.of(ids, Arrays.asList("xs-frontend", "xs-server", "lbc"));
+        ImpactSet second = ImpactSet.of(ids, Arrays.asList("common", "lbc"));
+
+        assertEquals(Arrays.asList("common", "lbc", "xs-frontend", "xs-server"), first.union(second).toList());
+        assertEquals(Arrays.asList("lbc"), first.intersection(second).toList());
+        assertEquals(Arrays.asList("xs-frontend", "xs-server"), first.difference(second).toList());
+        assertEquals(first, first.union(ImpactSet.empty(ids)));
+        assertTrue(first.difference(first).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnion_DifferentTables() {
+        ImpactSet.of(ids, Arrays.asList("lbc")).union(ImpactSet.of(new ProjectIds(), Arrays.asList("lbc")));
+    }
+
+}
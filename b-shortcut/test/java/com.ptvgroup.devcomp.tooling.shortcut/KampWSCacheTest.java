@@ -0,0 +1,150 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.xml.ws.WebServiceException;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the KampWSCache.
+ */
+public class KampWSCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void initialize() throws IOException {
+        directory = folder.newFolder("shortcut-cache").toPath();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        KampWSCache cache = new KampWSCache(directory, "rev1", TimeUnit.HOURS.toMillis(1));
+        List<String> response = Arrays.asList("xs-frontend", "xs-server-services");
+        cache.put("getChangeSpecificDependencies", Arrays.asList("xs-frontend_default"), response);
+
+        assertEquals(response, cache.get("getChangeSpecificDependencies", Arrays.asList("xs-frontend_default")));
+    }
+
+    @Test
+    public void testGetEmptyResponse() {
+        KampWSCache cache = new KampWSCache(directory, "rev1", TimeUnit.HOURS.toMillis(1));
+        cache.put("getPossibleProjectNames", Collections.<String> emptyList(), Collections.<String> emptyList());
+
+        List<String> result = cache.get("getPossibleProjectNames", Collections.<String> emptyList());
+        assertTrue(result != null && result.isEmpty());
+    }
+
+    @Test
+    public void testGet_Miss() {
+        KampWSCache cache = new KampWSCache(directory, "rev1", TimeUnit.HOURS.toMillis(1));
+        cache.put("getChangeScenarios", Arrays.asList("xs-frontend"), Arrays.asList("xs-frontend_default"));
+
+        assertNull(cache.get("getChangeScenarios", Arrays.asList("xs-generation")));
+        assertNull(cache.get("getBuildSpecificationPaths", Arrays.asList("xs-frontend")));
+    }
+
+    @Test
+    public void testGet_OtherFingerprint() {
+        new KampWSCache(directory, "rev1", TimeUnit.HOURS.toMillis(1))
+            .put("getChangeScenarios", Arrays.asList("xs-frontend"), Arrays.asList("xs-frontend_default"));
+
+        KampWSCache cache = new KampWSCache(directory, "rev2", TimeUnit.HOURS.toMillis(1));
+        assertNull(cache.get("getChangeScenarios", Arrays.asList("xs-frontend")));
+    }
+
+    @Test
+    public void testGet_Expired() {
+        KampWSCache cache = new KampWSCache(directory, "rev1", -1);
+        cache.put("getChangeScenarios", Arrays.asList("xs-frontend"), Arrays.asList("xs-frontend_default"));
+
+        assertNull(cache.get("getChangeScenarios", Arrays.asList("xs-frontend")));
+    }
+
+    @Test
+    public void testWrite_Failure() throws IOException {
+        // a non-empty directory cannot be replaced by a file
+        Path file = directory.resolve("build-cache");
+        Files.createDirectories(file.resolve("entry"));
+        try {
+            KampWSCache.write(file, Arrays.asList("line"));
+            fail("Replaced a directory.");
+        } catch (IOException e) {
+            // expected
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(Arrays.asList(file), files.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        KampWSCache cache = new KampWSCache(directory, "rev1", TimeUnit.HOURS.toMillis(1));
+        cache.put("getChangeScenarios", Arrays.asList("xs-frontend"), Arrays.asList("xs-frontend_default"));
+        cache.invalidate();
+
+        assertNull(cache.get("getChangeScenarios", Arrays.asList("xs-frontend")));
+    }
+
+    @Test
+    public void testGetModelRevision() throws IOException {
+        Assume.assumeTrue(System.getenv("B_SHORTCUT_MODEL_REVISION") == null);
+        // no model synced, so the entries only expire
+        assertEquals("", KampWSCache.getModelRevision(directory));
+
+        Path model = KampWSCache.getCacheDirectory(directory).resolve(ImpactModel.MODEL_FILE);
+        Files.createDirectories(model.getParent());
+        Files.write(model, new byte[] { 1, 2, 3 });
+        String revision = KampWSCache.getModelRevision(directory);
+        assertFalse(revision.isEmpty());
+        assertEquals(revision, KampWSCache.getModelRevision(directory));
+
+        Files.write(model, new byte[] { 1, 2, 4 });
+        assertFalse(revision.equals(KampWSCache.getModelRevision(directory)));
+    }
+
+    @Test
+    public void testCachedWithoutService() throws IOException {
+        // nothing listens on the discard port
+        KampWSClient client = new KampWSClient(new URL("http://127.0.0.1:9/kamp-ws?wsdl"));
+        KampWSCache.forCheckout(directory, client.getWsdl().toString())
+            .put("getChangeScenarios", Arrays.asList("xs-frontend"), Arrays.asList("xs-frontend_default"));
+        ShortcutHelper helper = new ShortcutHelper(client);
+
+        // the service is only contacted for calls the cache cannot answer
+        assertTrue(helper.webServiceAvailable());
+        helper.useCache(directory, false);
+        assertEquals(Arrays.asList("xs-frontend_default"),
+            helper.getChangeScenarios(Arrays.asList("xs-frontend")).get("xs-frontend"));
+        try {
+            helper.getChangeScenarios(Arrays.asList("xs-generation"));
+            fail();
+        } catch (WebServiceException e) {
+            // expected
+        }
+    }
+
+}
@@ -30,7 +30,10 @@ public class KampWSClientTest {
     public static void initialize() throws MalformedURLException {
         try {
             client = new KampWSClient();
-        } catch (Exception e) {} ;
+            client.connect();
+        } catch (Exception e) {
+            client = null;
+        }
 
         assumeTrue(client != null);
     }
@@ -0,0 +1,293 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import javax.xml.ws.WebServiceException;
+
+import edu.kit.ipd.sdq.kampws.client.ChangeSpecificDependencies;
+import edu.kit.ipd.sdq.kampws.client.IllegalArgumentException;
+import edu.kit.ipd.sdq.kampws.client.IllegalArgumentException_Exception;
+import edu.kit.ipd.sdq.kampws.client.StringArray;
+
+/**
+ * An in-process stand-in for the KAMP web service, serving the data set of
+ * the test configuration. Latency, jitter, failures and the size of the
+ * responses can be configured to test the client without a server.
+ * <p>
+ * Like the service, the stand-in resolves scenarios selected together to the
+ * union of their dependencies, except for generic scenarios modifying the
+ * scenarios selected with them: "shortcut_skip_systemTests" leaves out the
+ * system tests of the others.
+ * <p>
+ * The stand-in may be called by multiple threads concurrently.
+ */
+public class KampWSStandIn implements ChangeSpecificDependencies {
+
+    /**
+     * Scenarios whose dependencies are given in the test configuration, by
+     * the key of their expected response.
+     */
+    private static final String[][] RESPONSES = {
+        { "frontend.default", "xs-frontend_default" },
+        { "frontend.default", "xs-frontend_include_submodules" },
+        { "frontend.shortcut", "shortcut_skip_systemTests" },
+        { "generation.default", "xs-generation-model_default" },
+        { "generation.documentation.shortcut", "shortcut_documentation_change" },
+        { "generation.change.shortcut", "shortcut_model_change" } };
+
+    /**
+     * Generic scenarios modifying the scenarios selected with them, by the
+     * projects they leave out.
+     */
+    private static final Map<String, Pattern> MODIFIERS = Collections.singletonMap("shortcut_skip_systemTests",
+        Pattern.compile(".*-systemTest(-.*)?|.*-test"));
+
+    private final List<String> projectNames;
+    private final Map<String, List<String>> changeScenarios;
+    private final Map<String, List<String>> dependencies;
+
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final Random random = new Random(42);
+
+    private volatile long latency = 0;
+    private volatile long jitter = 0;
+    private volatile double errorRate = 0;
+    private volatile int payloadScale = 1;
+
+    /**
+     * Initialize a stand-in serving the specified data.
+     *
+     * @param projectNames the known projects
+     * @param changeScenarios the change scenarios by project; projects
+     *            without entry have a default scenario only
+     * @param dependencies the change-specific dependencies by scenario;
+     *            default scenarios without entry affect their project only
+     */
+    public KampWSStandIn(List<String> projectNames, Map<String, List<String>> changeScenarios,
+        Map<String, List<String>> dependencies) {
+        this.projectNames = new ArrayList<>(projectNames);
+        this.changeScenarios = new LinkedHashMap<>(changeScenarios);
+        this.dependencies = new LinkedHashMap<>(dependencies);
+        for (String projectName : projectNames) {
+            if (!this.changeScenarios.containsKey(projectName)) {
+                this.changeScenarios.put(projectName, Arrays.asList(projectName + ScenarioClassifier.DEFAULT_SUFFIX));
+            }
+            if (!this.dependencies.containsKey(projectName + ScenarioClassifier.DEFAULT_SUFFIX)) {
+                this.dependencies.put(projectName + ScenarioClassifier.DEFAULT_SUFFIX, Arrays.asList(projectName));
+            }
+        }
+    }
+
+    /**
+     * Creates a stand-in serving the data set of the specified test
+     * configuration.
+     *
+     * @param config path of the configuration, e.g.
+     *            "src/test/resources/shortcuttest/config.properties"
+     * @return the stand-in
+     * @throws IOException if the configuration cannot be read
+     */
+    public static KampWSStandIn fromConfig(Path config) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(config, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        Map<String, List<String>> changeScenarios = new LinkedHashMap<>();
+        String prefix = "expected.change.scenarios.";
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                changeScenarios.put(key.substring(prefix.length()).replace('.', '-'), split(properties, key));
+            }
+        }
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        for (String[] response : RESPONSES) {
+            dependencies.put(response[1], split(properties, "expected.response." + response[0]));
+        }
+        return new KampWSStandIn(split(properties, "project.names"), changeScenarios, dependencies);
+    }
+
+    private static List<String> split(Properties properties, String key) {
+        List<String> result = new ArrayList<>();
+        for (String value : properties.getProperty(key, "").split(",")) {
+            if (!value.trim().isEmpty()) {
+                result.add(value.trim());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a client calling this stand-in directly.
+     *
+     * @return the client
+     * @throws MalformedURLException never
+     */
+    public KampWSClient createClient() throws MalformedURLException {
+        return new KampWSClient(new URL("http://localhost/stand-in?wsdl"), this);
+    }
+
+    /**
+     * Sets how long every call takes.
+     *
+     * @param latency the base latency in milliseconds
+     * @param jitter the maximum random latency added, in milliseconds
+     */
+    public void setLatency(long latency, long jitter) {
+        this.latency = latency;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Sets the share of calls failing with a WebServiceException, as if the
+     * connection failed.
+     *
+     * @param errorRate the share of failing calls, from 0 to 1
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Sets how many times larger the lists of projects returned by
+     * getPossibleProjectNames and getChangeSpecificDependencies are. The
+     * additional entries are numbered copies of the actual ones.
+     *
+     * @param payloadScale the factor, at least 1
+     */
+    public void setPayloadScale(int payloadScale) {
+        this.payloadScale = payloadScale;
+    }
+
+    /**
+     * Returns how often an operation was called, including failed calls.
+     *
+     * @param operation the name of the operation
+     * @return the number of calls
+     */
+    public int getCalls(String operation) {
+        AtomicInteger count = calls.get(operation);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public StringArray getPossibleProjectNames() {
+        call("getPossibleProjectNames");
+        return toStringArray(scale(projectNames));
+    }
+
+    @Override
+    public StringArray getChangeScenarios(String projectName) throws IllegalArgumentException_Exception {
+        call("getChangeScenarios");
+        List<String> result = changeScenarios.get(projectName);
+        if (result == null) {
+            throw fault("Unknown project " + projectName);
+        }
+        return toStringArray(result);
+    }
+
+    @Override
+    public StringArray getChangeSpecificDependencies(StringArray changeScenarios)
+        throws IllegalArgumentException_Exception {
+        call("getChangeSpecificDependencies");
+        List<String> scenarios = changeScenarios.getItem();
+        Set<String> result = new LinkedHashSet<>();
+        List<Pattern> modifiers = new ArrayList<>();
+        for (String scenario : scenarios) {
+            List<String> affected = dependencies.get(scenario);
+            if (affected == null) {
+                throw fault("Unknown change scenario " + scenario);
+            }
+            Pattern modifier = MODIFIERS.get(scenario);
+            if (modifier != null && scenarios.size() > 1) {
+                modifiers.add(modifier);
+            } else {
+                result.addAll(affected);
+            }
+        }
+        for (Pattern modifier : modifiers) {
+            result.removeIf(projectName -> modifier.matcher(projectName).matches());
+        }
+        return toStringArray(scale(new ArrayList<>(result)));
+    }
+
+    @Override
+    public StringArray getBuildSpecificationPaths(StringArray projectNames)
+        throws IllegalArgumentException_Exception {
+        call("getBuildSpecificationPaths");
+        List<String> result = new ArrayList<>();
+        for (String projectName : projectNames.getItem()) {
+            if (!changeScenarios.containsKey(projectName)) {
+                throw fault("Unknown project " + projectName);
+            }
+            result.add(projectName.replace('-', '/') + "/" + ModuleIndex.POM_FILE);
+        }
+        return toStringArray(result);
+    }
+
+    /**
+     * Counts the call, waits for the configured latency and fails randomly.
+     */
+    private void call(String operation) {
+        calls.computeIfAbsent(operation, key -> new AtomicInteger()).incrementAndGet();
+        long delay;
+        boolean fail;
+        synchronized (random) {
+            delay = latency + (jitter > 0 ? (long) (random.nextDouble() * jitter) : 0);
+            fail = random.nextDouble() < errorRate;
+        }
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebServiceException("Interrupted", e);
+            }
+        }
+        if (fail) {
+            throw new WebServiceException("Injected failure of " + operation);
+        }
+    }
+
+    private List<String> scale(List<String> items) {
+        List<String> result = new ArrayList<>(items);
+        for (int copy = 1; copy < payloadScale; copy++) {
+            for (String item : items) {
+                result.add(item + "-copy" + copy);
+            }
+        }
+        return result;
+    }
+
+    private static StringArray toStringArray(List<String> items) {
+        StringArray result = new StringArray();
+        result.getItem().addAll(items);
+        return result;
+    }
+
+    private static IllegalArgumentException_Exception fault(String message) {
+        IllegalArgumentException faultInfo = new IllegalArgumentException();
+        faultInfo.setMessage(message);
+        return new IllegalArgumentException_Exception(message, faultInfo);
+    }
+
+}
@@ -0,0 +1,364 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.ws.WebServiceException;
+
+import edu.kit.ipd.sdq.kampws.client.ChangeSpecificDependencies;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the KampWSClient and ShortcutHelper against the KampWSStandIn.
+ */
+public class KampWSStandInTest {
+
+    private static final Path CONFIG = Paths.get("src/test/resources/shortcuttest/config.properties");
+    private static final String PRIMARY = "http://primary/stand-in?wsdl";
+    private static final String REPLICA = "http://replica/stand-in?wsdl";
+
+    private KampWSStandIn service;
+    private KampWSClient client;
+    private ShortcutHelper helper;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws IOException {
+        service = KampWSStandIn.fromConfig(CONFIG);
+        client = service.createClient();
+        helper = new ShortcutHelper(client);
+    }
+
+    @Test
+    public void testGetChangeScenarios() {
+        assertEquals(Arrays.asList("xs-frontend_default", "xs-frontend_include_submodules",
+            "shortcut_skip_systemTests"), client.getChangeScenarios("xs-frontend"));
+        assertEquals(Arrays.asList("lbc_default"), client.getChangeScenarios("lbc"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetChangeScenarios_Invalid() {
+        client.getChangeScenarios("invalid");
+    }
+
+    @Test
+    public void testGetChangeSpecificDependencies_Scaled() {
+        List<String> response = client.getChangeSpecificDependencies(Arrays.asList("shortcut_skip_systemTests"));
+        service.setPayloadScale(3);
+        assertEquals(3 * response.size(),
+            client.getChangeSpecificDependencies(Arrays.asList("shortcut_skip_systemTests")).size());
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        client.setCache(new KampWSCache(folder.newFolder("shortcut-cache").toPath(), "stand-in",
+            TimeUnit.HOURS.toMillis(1)));
+        client.getBuildSpecificationPaths(Arrays.asList("xs-frontend", "xs-generation-model"));
+        List<String> response = client.getBuildSpecificationPaths(Arrays.asList("xs-frontend",
+            "xs-generation-model"));
+
+        assertEquals(Arrays.asList("xs/frontend/pom.xml", "xs/generation/model/pom.xml"), response);
+        assertEquals(1, service.getCalls("getBuildSpecificationPaths"));
+    }
+
+    @Test(expected = WebServiceException.class)
+    public void testErrorRate() {
+        service.setErrorRate(1);
+        client.getPossibleProjectNames();
+    }
+
+    @Test
+    public void testErrorRate_Recorded() throws IOException {
+        Metrics metrics = new Metrics();
+        client.setMetrics(metrics);
+        service.setErrorRate(1);
+        try {
+            client.getChangeScenarios("lbc");
+            fail();
+        } catch (WebServiceException e) {
+            // recorded as a failed call
+        }
+        metrics.finish(1);
+        Path file = folder.getRoot().toPath().resolve("metrics.jsonl");
+        metrics.write(file);
+        String calls = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        assertTrue(calls, calls.contains("\"operation\":\"getChangeScenarios\",\"cached\":false,\"error\":true"));
+    }
+
+    @Test
+    public void testGetChangeScenarios_Concurrent() {
+        List<String> projectNames = Arrays.asList("xs-frontend", "xs-generation", "lbc", "lgc", "loc", "cus",
+            "xs-server", "common");
+        service.setLatency(200, 20);
+
+        long start = System.nanoTime();
+        Map<String, List<String>> result = helper.getChangeScenarios(projectNames);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(projectNames, Arrays.asList(result.keySet().toArray()));
+        assertEquals(projectNames.size(), service.getCalls("getChangeScenarios"));
+        // sequential calls would take at least 1600ms
+        assertTrue("took " + elapsed + "ms", elapsed < 1000);
+    }
+
+    @Test
+    public void testPrefetch() throws IOException, InterruptedException {
+        Path root = folder.newFolder("shortcut-prefetch").toPath();
+        List<String> scenarios = client.getChangeScenarios("xs-frontend");
+        service.setLatency(200, 0);
+
+        helper.prefetch(scenarios, root);
+        // the user reads the scenario menu
+        Thread.sleep(1000);
+        long start = System.nanoTime();
+        List<String> dependencies = helper.getChangeSpecificDependencies(scenarios.subList(0, 2));
+        helper.resolveProjectPaths(dependencies, new ModuleIndex(), root);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("took " + elapsed + "ms", elapsed < 150);
+        assertEquals(scenarios.size(), service.getCalls("getChangeSpecificDependencies"));
+        service.setLatency(0, 0);
+        assertEquals(new HashSet<>(client.getChangeSpecificDependencies(scenarios.subList(0, 2))),
+            new HashSet<>(dependencies));
+    }
+
+    @Test
+    public void testPrefetch_GenericScenario() throws IOException {
+        List<String> scenarios = client.getChangeScenarios("xs-frontend");
+        helper.prefetch(scenarios, folder.getRoot().toPath());
+        for (String scenario : scenarios) {
+            // waits for all prefetched responses
+            helper.getChangeSpecificDependencies(Arrays.asList(scenario));
+        }
+        int calls = service.getCalls("getChangeSpecificDependencies");
+
+        // a generic scenario modifies the scenario selected with it, so the service resolves them together
+        List<String> selected = Arrays.asList("xs-frontend_default", "shortcut_skip_systemTests");
+        List<String> dependencies = helper.getChangeSpecificDependencies(selected);
+        assertEquals(calls + 1, service.getCalls("getChangeSpecificDependencies"));
+        assertEquals(new HashSet<>(client.getChangeSpecificDependencies(selected)), new HashSet<>(dependencies));
+    }
+
+    @Test
+    public void testGenericScenario_AllPaths() throws IOException {
+        List<String> scenarios = client.getChangeScenarios("xs-frontend");
+        List<String> selected = Arrays.asList("xs-frontend_default", "shortcut_skip_systemTests");
+        Set<String> union = new HashSet<>(client.getChangeSpecificDependencies(selected.subList(0, 1)));
+        union.addAll(client.getChangeSpecificDependencies(selected.subList(1, 2)));
+
+        // the system tests of the default scenario are left out
+        Set<String> expected = new HashSet<>(client.getChangeSpecificDependencies(selected));
+        assertEquals(new HashSet<>(client.getChangeSpecificDependencies(selected.subList(1, 2))), expected);
+        assertFalse(expected.equals(union));
+
+        // prefetched responses of single scenarios
+        ShortcutHelper prefetching = helper.newHelper();
+        prefetching.prefetch(scenarios, folder.newFolder("shortcut-prefetch").toPath());
+        assertEquals(expected, new HashSet<>(prefetching.getChangeSpecificDependencies(selected)));
+        assertEquals(expected, new HashSet<>(prefetching.getImpactSet(selected).toList()));
+
+        // the impact model of single scenarios
+        ShortcutHelper synced = helper.newHelper();
+        synced.syncImpactModel(folder.newFolder("shortcut-model").toPath());
+        assertEquals(expected, new HashSet<>(synced.getChangeSpecificDependencies(selected)));
+        assertEquals(expected, new HashSet<>(synced.getImpactSet(selected).toList()));
+    }
+
+    @Test
+    public void testNewHelper() throws IOException {
+        Path root = folder.getRoot().toPath();
+        helper.syncImpactModel(root);
+        List<String> scenarios = client.getChangeScenarios("xs-frontend");
+        helper.prefetch(scenarios, root);
+        helper.getChangeSpecificDependencies(scenarios.subList(0, 1));
+        int calls = service.getCalls("getChangeSpecificDependencies");
+
+        // the next command neither uses the model nor the prefetched responses of the last one
+        ShortcutHelper next = helper.newHelper();
+        assertEquals(new HashSet<>(client.getChangeSpecificDependencies(scenarios.subList(0, 1))),
+            new HashSet<>(next.getChangeSpecificDependencies(scenarios.subList(0, 1))));
+        assertEquals(calls + 2, service.getCalls("getChangeSpecificDependencies"));
+        assertTrue(next.webServiceAvailable());
+    }
+
+    @Test
+    public void testNewHelper_Metrics() throws IOException {
+        ShortcutHelper first = helper.newHelper();
+        ShortcutHelper second = helper.newHelper();
+        Metrics firstMetrics = new Metrics();
+        Metrics secondMetrics = new Metrics();
+        first.setMetrics(firstMetrics);
+        first.getChangeSpecificDependencies(Arrays.asList("lbc_default"));
+        second.setMetrics(secondMetrics);
+        second.getChangeSpecificDependencies(Arrays.asList("lbc_default"));
+        second.getChangeSpecificDependencies(Arrays.asList("xs-frontend_default"));
+        first.getChangeSpecificDependencies(Arrays.asList("lgc_default"));
+
+        // each helper records its own calls only
+        assertEquals(2, countCalls(firstMetrics));
+        assertEquals(2, countCalls(secondMetrics));
+    }
+
+    /**
+     * Returns the number of calls recorded in the specified metrics.
+     */
+    private int countCalls(Metrics metrics) throws IOException {
+        metrics.finish(0);
+        Path file = Files.createTempFile(folder.getRoot().toPath(), "metrics", ".jsonl");
+        metrics.write(file);
+        int count = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.contains("\"type\":\"call\"")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testHedging() throws IOException {
+        KampWSStandIn replica = KampWSStandIn.fromConfig(CONFIG);
+        EndpointHealth health = new EndpointHealth();
+        for (int i = 0; i < 10; i++) {
+            health.recordSuccess(PRIMARY, "getChangeScenarios", TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        health.recordSuccess(REPLICA, "getChangeScenarios", TimeUnit.MILLISECONDS.toNanos(100));
+        KampWSClient replicated = new KampWSClient(replicate(replica), health);
+        service.setLatency(2000, 0);
+
+        long start = System.nanoTime();
+        List<String> response = replicated.getChangeScenarios("lbc");
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(Arrays.asList("lbc_default"), response);
+        assertEquals(1, service.getCalls("getChangeScenarios"));
+        assertEquals(1, replica.getCalls("getChangeScenarios"));
+        assertTrue("took " + elapsed + "ms", elapsed < 1000);
+    }
+
+    @Test
+    public void testFailover() throws IOException {
+        KampWSStandIn replica = KampWSStandIn.fromConfig(CONFIG);
+        EndpointHealth health = new EndpointHealth();
+        KampWSClient replicated = new KampWSClient(replicate(replica), health);
+        service.setErrorRate(1);
+
+        assertEquals(Arrays.asList("lbc_default"), replicated.getChangeScenarios("lbc"));
+        assertEquals(Arrays.asList(REPLICA, PRIMARY), health.rank(Arrays.asList(PRIMARY, REPLICA)));
+    }
+
+    @Test
+    public void testSharedClient() throws Exception {
+        List<String> scenarios = client.getChangeScenarios("xs-frontend");
+        List<String> expected = helper.getChangeSpecificDependencies(scenarios);
+        service.setLatency(20, 10);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                // e.g. the builds of a CI driver, each with a helper of its own
+                results.add(executor.submit(() -> new ShortcutHelper(client).getChangeSpecificDependencies(
+                    scenarios)));
+            }
+            for (Future<List<String>> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testResolveProjectPaths() throws IOException {
+        Path root = folder.newFolder("shortcut-paths").toPath();
+        Files.createDirectories(root.resolve("xs/generation/model"));
+        Files.createFile(root.resolve("xs/generation/model/pom.xml"));
+        ModuleIndex index = new ModuleIndex();
+        index.add("", "root");
+        index.add("lbc", "lbc");
+
+        ProjectPaths paths = helper.resolveProjectPaths(Arrays.asList("root", "lbc", "xs-generation-model",
+            "xs-frontend"), index, root);
+        assertEquals(Arrays.asList(".", "lbc", "xs/generation/model"), paths.getRelativePaths());
+        assertEquals(Collections.singletonMap("xs-frontend", "xs/frontend"), paths.getMissing());
+        // only the projects missing in the index are looked up
+        assertEquals(1, service.getCalls("getBuildSpecificationPaths"));
+    }
+
+    @Test
+    public void testResolveProjectPaths_Duplicate() throws IOException {
+        ModuleIndex index = new ModuleIndex();
+        // e.g. a copy used as test data, preferred by the index
+        index.add("test/copy", "xs-frontend");
+        index.add("xs/frontend", "xs-frontend");
+        index.add("test/lbc", "lbc");
+        index.add("xs/lbc", "lbc");
+        assertEquals("test/copy", index.getModuleDirectory("xs-frontend"));
+
+        ProjectPaths paths = helper.resolveProjectPaths(Arrays.asList("xs-frontend", "lbc"), index,
+            folder.newFolder("shortcut-paths").toPath());
+        // the service decides where it can, the index otherwise
+        assertEquals(Arrays.asList("xs/frontend", "test/lbc"), paths.getRelativePaths());
+    }
+
+    @Test
+    public void testGetModuleIndex() throws IOException {
+        Path root = folder.newFolder("shortcut-index").toPath();
+        Files.createDirectories(root.resolve("lbc"));
+        Files.write(root.resolve("lbc/pom.xml"), pom("lbc"));
+        ModuleIndex index = helper.getModuleIndex(root);
+        assertEquals("lbc", index.getModuleDirectory("lbc"));
+
+        // scanned once for all queries, until asked to scan again
+        Files.createDirectories(root.resolve("xs/frontend"));
+        Files.write(root.resolve("xs/frontend/pom.xml"), pom("xs-frontend"));
+        assertSame(index, helper.getModuleIndex(root));
+        assertEquals(Arrays.asList("lbc"), helper.getRelativeProjectPaths(Arrays.asList("lbc"), root));
+        assertEquals(null, index.getModuleDirectory("xs-frontend"));
+        // the next command scans again
+        assertEquals("xs/frontend", helper.newHelper().getModuleIndex(root).getModuleDirectory("xs-frontend"));
+        assertEquals("xs/frontend", helper.rescanModuleIndex(root).getModuleDirectory("xs-frontend"));
+    }
+
+    private static byte[] pom(String artifactId) {
+        return ("<project><modelVersion>4.0.0</modelVersion><groupId>test</groupId><artifactId>" + artifactId
+            + "</artifactId><version>1</version></project>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Map<URL, ChangeSpecificDependencies> replicate(KampWSStandIn replica) throws IOException {
+        Map<URL, ChangeSpecificDependencies> ports = new LinkedHashMap<>();
+        ports.put(new URL(PRIMARY), service);
+        ports.put(new URL(REPLICA), replica);
+        return ports;
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the Metrics.
+ */
+public class MetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Metrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new Metrics();
+        metrics.startPhase("changeScenarios");
+        metrics.recordCall("getChangeScenarios", 2000000, Arrays.asList("xs-frontend_default", "\u00e4\u00f6"), false);
+        metrics.recordCall("getChangeScenarios", 1000, Arrays.asList("xs-frontend_default"), true);
+        metrics.recordCall("getChangeSpecificDependencies", 5000000, null, false);
+        metrics.startPhase("build");
+        metrics.finish(0);
+    }
+
+    @Test
+    public void testGetPhaseDurations() {
+        assertEquals(Arrays.asList("changeScenarios", "build"),
+            Arrays.asList(metrics.getPhaseDurations().keySet().toArray()));
+    }
+
+    @Test
+    public void testWrite_JsonLines() throws IOException {
+        Path file = folder.newFolder("shortcut-metrics").toPath().resolve("metrics.jsonl");
+        metrics.write(file);
+        metrics.write(file);
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(12, lines.size());
+        assertTrue(lines.get(2).contains("\"operation\":\"getChangeScenarios\",\"cached\":false,\"error\":false,"
+            + "\"durationMs\":2.000,\"items\":2,\"bytes\":23}"));
+        assertTrue(lines.get(4).contains("\"error\":true"));
+        assertTrue(lines.get(5).contains("\"type\":\"run\""));
+    }
+
+    @Test
+    public void testWrite_Prometheus() throws IOException {
+        Path file = folder.newFolder("shortcut-metrics").toPath().resolve("shortcut.prom");
+        metrics.write(file);
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertTrue(lines.contains("shortcut_run_exit_code 0"));
+        assertTrue(lines.contains(
+            "shortcut_ws_calls{operation=\"getChangeScenarios\",cached=\"false\",error=\"false\"} 1"));
+        assertTrue(lines.contains(
+            "shortcut_ws_response_items{operation=\"getChangeScenarios\",cached=\"true\",error=\"false\"} 1"));
+        // failed calls are a series of their own
+        assertTrue(lines.contains("shortcut_ws_call_duration_seconds{operation=\"getChangeSpecificDependencies\","
+            + "cached=\"false\",error=\"true\"} 0.005"));
+    }
+
+}
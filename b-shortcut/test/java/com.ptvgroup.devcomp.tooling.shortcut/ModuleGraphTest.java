@@ -0,0 +1,97 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the ModuleGraph.
+ */
+public class ModuleGraphTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().toPath();
+        write("parent", "<groupId>g</groupId><artifactId>parent</artifactId>");
+        write("base", "<parent><groupId>g</groupId><artifactId>parent</artifactId></parent>"
+            + "<artifactId>base</artifactId>");
+        write("core", "<groupId>g</groupId><artifactId>core</artifactId><dependencies>"
+            + "<dependency><groupId>${project.groupId}</groupId><artifactId>base</artifactId></dependency>"
+            + "<dependency><groupId>org.junit</groupId><artifactId>junit</artifactId></dependency>"
+            + "</dependencies>");
+        write("app", "<groupId>g</groupId><artifactId>app</artifactId><dependencies>"
+            + "<dependency><groupId>g</groupId><artifactId>core</artifactId></dependency>"
+            + "<dependency><groupId>g</groupId><artifactId>base</artifactId></dependency>"
+            + "</dependencies>");
+        Files.createDirectories(root.resolve("broken"));
+        Files.write(root.resolve("broken/pom.xml"), "not a POM".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void write(String module, String content) throws IOException {
+        Files.createDirectories(root.resolve(module));
+        Files.write(root.resolve(module).resolve(ModuleIndex.POM_FILE),
+            ("<project><modelVersion>4.0.0</modelVersion>" + content + "</project>").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testRead() {
+        ModuleGraph graph = ModuleGraph.read(root, Arrays.asList("app", "core", "base", "parent", "broken"));
+
+        assertEquals(Arrays.asList("app", "core", "base", "parent", "broken"), graph.getModules());
+        assertEquals(new HashSet<>(Arrays.asList("core", "base")), graph.getDependencies("app"));
+        // the group of the project itself, and modules outside the checkout left out
+        assertEquals(Collections.singleton("base"), graph.getDependencies("core"));
+        assertEquals(Collections.singleton("org.junit:junit"), graph.getExternalDependencies("core"));
+        // the parent, with the group inherited from it
+        assertEquals(Collections.singleton("parent"), graph.getDependencies("base"));
+        assertEquals(Collections.emptySet(), graph.getDependencies("broken"));
+    }
+
+    @Test
+    public void testRead_Subset() {
+        // dependencies on modules not built are not part of the graph
+        ModuleGraph graph = ModuleGraph.read(root, Arrays.asList("app", "base"));
+        assertEquals(Collections.singleton("base"), graph.getDependencies("app"));
+        assertEquals(Collections.emptySet(), graph.getDependencies("base"));
+    }
+
+    @Test
+    public void testSortByCriticalPath() throws IOException {
+        write("tool", "<groupId>g</groupId><artifactId>tool</artifactId>");
+        BuildDurations durations = new BuildDurations(folder.newFolder("shortcut-graph").toPath());
+        durations.record("parent", 100);
+        durations.record("base", 1000);
+        durations.record("core", 5000);
+        durations.record("app", 1000);
+        durations.record("tool", 20000);
+        ModuleGraph graph = ModuleGraph.read(root, Arrays.asList("app", "core", "base", "parent", "tool"));
+
+        // the chain parent, base, core, app takes 7.1s
+        assertEquals(Arrays.asList("tool", "parent", "base", "core", "app"), graph.sortByCriticalPath(durations));
+    }
+
+    @Test
+    public void testSubgraph() {
+        ModuleGraph graph = ModuleGraph.read(root, Arrays.asList("app", "core", "base")).subgraph(
+            Arrays.asList("core", "app"));
+        assertEquals(Arrays.asList("app", "core"), graph.getModules());
+        assertEquals(Collections.singleton("core"), graph.getDependencies("app"));
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the ModuleIndex.
+ */
+public class ModuleIndexTest {
+
+    private static final Path FIXTURE = Paths.get("src/test/resources/shortcuttest/root").toAbsolutePath();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Copies the checkout of the test resources, so that the index is not
+     * stored among them.
+     */
+    private Path copyFixture() throws IOException {
+        Path root = folder.getRoot().toPath();
+        try (Stream<Path> files = Files.walk(FIXTURE)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Path copy = root.resolve(FIXTURE.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        return root;
+    }
+
+    @Test
+    public void testScan() throws IOException {
+        ModuleIndex index = ModuleIndex.scan(copyFixture());
+        assertEquals("lbc", index.getOwningModule("lbc/src/main/java/Base.java"));
+        assertEquals("xs/frontend", index.getOwningModule("xs/frontend/pom.xml"));
+        assertNull(index.getOwningModule("xs/runtime/notevenxml.txt"));
+    }
+
+    @Test
+    public void testGetOwningModule_Nested() {
+        ModuleIndex index = new ModuleIndex();
+        index.add("", "root");
+        index.add("xs", "xs");
+        index.add("xs/frontend", "xs-frontend");
+        index.add("xs/frontend/dashboard", "xs-frontend-dashboard");
+
+        assertEquals("", index.getOwningModule("README.md"));
+        assertEquals("xs", index.getOwningModule("xs/runtime/notevenxml.txt"));
+        assertEquals("xs/frontend", index.getOwningModule("xs/frontend/src/main/java/Frontend.java"));
+        assertEquals("xs/frontend/dashboard", index.getOwningModule("xs/frontend/dashboard/pom.xml"));
+    }
+
+    @Test
+    public void testGetOwningModule_NoRootModule() {
+        ModuleIndex index = new ModuleIndex();
+        index.add("xs/frontend", "xs-frontend");
+
+        assertNull(index.getOwningModule("README.md"));
+        assertNull(index.getOwningModule("xs/pom.xml"));
+        assertNull(index.getOwningModule("xs/frontend2/pom.xml"));
+    }
+
+    @Test
+    public void testGetProjectNames() throws IOException {
+        ModuleIndex index = ModuleIndex.scan(copyFixture());
+        assertEquals(Arrays.asList("xs-frontend", "lbc"), Arrays.asList(index.getProjectNames(Arrays.asList(
+            "xs/frontend/src/main/java/Frontend.java", "lbc/pom.xml", "xs/runtime/notevenxml.txt",
+            "xs/frontend/pom.xml")).toArray()));
+    }
+
+    @Test
+    public void testGetProjectNames_All() {
+        ModuleIndex index = new ModuleIndex();
+        index.add("xs/frontend", "xs-frontend");
+        index.add("lbc", "lbc");
+        index.add("xs/frontend/dashboard", "xs-frontend-dashboard");
+
+        assertEquals(Arrays.asList("lbc", "xs-frontend", "xs-frontend-dashboard"),
+            Arrays.asList(index.getProjectNames().toArray()));
+    }
+
+    @Test
+    public void testScan_ChangedPom() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Files.createDirectories(root.resolve("xs/frontend"));
+        Path pom = root.resolve("xs/frontend/pom.xml");
+        Files.write(pom, pom("frontend").getBytes(StandardCharsets.UTF_8));
+        assertEquals("frontend", ModuleIndex.scan(root).getProjectName("xs/frontend"));
+
+        Files.write(pom, pom("xs-frontend").getBytes(StandardCharsets.UTF_8));
+        ModuleIndex index = ModuleIndex.scan(root);
+        assertEquals("xs-frontend", index.getProjectName("xs/frontend"));
+        assertEquals("xs/frontend", index.getModuleDirectory("xs-frontend"));
+        assertNull(index.getModuleDirectory("frontend"));
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Files.createDirectories(root.resolve("lbc"));
+        Files.write(root.resolve("lbc/pom.xml"), pom("lbc").getBytes(StandardCharsets.UTF_8));
+        ModuleIndex.scan(root);
+
+        ModuleIndex index = ModuleIndex.load(root);
+        assertEquals("lbc", index.getModuleDirectory("lbc"));
+        assertEquals("lbc", index.getOwningModule("lbc/src/main/java/Base.java"));
+        assertEquals("lbc", index.getProjectName("lbc"));
+    }
+
+    @Test
+    public void testGetDuplicates() throws IOException {
+        Path root = folder.getRoot().toPath();
+        for (String directory : Arrays.asList("xs/frontend", "xs/frontend/src/it/copy", "xs/copy", "lbc")) {
+            Files.createDirectories(root.resolve(directory));
+            Files.write(root.resolve(directory).resolve("pom.xml"),
+                pom(directory.equals("lbc") ? "lbc" : "xs-frontend").getBytes(StandardCharsets.UTF_8));
+        }
+        ModuleIndex index = ModuleIndex.scan(root);
+
+        // test data of integration tests is no module
+        assertEquals(Collections.singletonMap("xs-frontend", Arrays.asList("xs/copy", "xs/frontend")),
+            index.getDuplicates());
+        // the module closest to the root, the first in alphabetical order
+        assertEquals("xs/copy", index.getModuleDirectory("xs-frontend"));
+        assertEquals("xs/copy", ModuleIndex.load(root).getModuleDirectory("xs-frontend"));
+
+        Files.delete(root.resolve("xs/copy/pom.xml"));
+        index = ModuleIndex.scan(root);
+        assertEquals("xs/frontend", index.getModuleDirectory("xs-frontend"));
+        assertEquals("lbc", index.getModuleDirectory("lbc"));
+    }
+
+    @Test
+    public void testScan_DuplicatesDeterministic() throws IOException {
+        Path root = folder.getRoot().toPath();
+        List<String> copies = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String directory = "group" + (i % 4) + (i % 3 == 0 ? "" : "/nested") + "/copy" + i;
+            Files.createDirectories(root.resolve(directory));
+            Files.write(root.resolve(directory).resolve("pom.xml"),
+                pom("xs-frontend").getBytes(StandardCharsets.UTF_8));
+            copies.add(directory);
+        }
+        Collections.sort(copies);
+        Path file = KampWSCache.getCacheDirectory(root).resolve(ModuleIndex.INDEX_FILE);
+
+        ModuleIndex first = ModuleIndex.scan(root);
+        List<String> stored = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(Collections.singletonMap("xs-frontend", copies), first.getDuplicates());
+        assertEquals("group0/copy0", first.getModuleDirectory("xs-frontend"));
+        for (int i = 0; i < 5; i++) {
+            // all POM files are parsed in parallel again
+            Files.delete(file);
+            ModuleIndex index = ModuleIndex.scan(root);
+            assertEquals(first.getDuplicates(), index.getDuplicates());
+            assertEquals("group0/copy0", index.getModuleDirectory("xs-frontend"));
+            assertEquals(stored, Files.readAllLines(file, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String pom(String name) {
+        return "<project><modelVersion>4.0.0</modelVersion><artifactId>artifact</artifactId><name>" + name
+            + "</name></project>";
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the PomReader.
+ */
+public class PomReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadProjectName() throws IOException {
+        Path pom = Paths.get("src/test/resources/shortcuttest/pom_generation.xml");
+        assertEquals("xs-generation", PomReader.readProjectName(pom));
+    }
+
+    @Test
+    public void testReadProjectName_Nameless() throws IOException {
+        Path pom = Paths.get("src/test/resources/shortcuttest/pom_generation_nameless.xml");
+        assertEquals("generation", PomReader.readProjectName(pom));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadProjectName_InvalidPath() throws IOException {
+        Path pom = Paths.get("src/test/resources/shortcuttest/invalid.xml");
+        PomReader.readProjectName(pom);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadProjectName_InvalidXML() throws IOException {
+        Path pom = Paths.get("src/test/resources/shortcuttest/notapom.xml");
+        PomReader.readProjectName(pom);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadProjectName_NotXML() throws IOException {
+        Path pom = Paths.get("src/test/resources/shortcuttest/root/xs/runtime/notevenxml.txt");
+        PomReader.readProjectName(pom);
+    }
+
+    @Test
+    public void testReadPomInfo() throws IOException {
+        Path pom = folder.newFile("pom.xml").toPath();
+        Files.write(pom, ("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">"
+            + "<parent><groupId>com.ptvgroup</groupId><artifactId>xs</artifactId></parent>"
+            + "<artifactId>xs-frontend</artifactId><name>frontend</name>"
+            + "<modules><module>dashboard</module><module>samples</module></modules>"
+            + "<dependencyManagement><dependencies><dependency><groupId>managed</groupId>"
+            + "<artifactId>managed</artifactId></dependency></dependencies></dependencyManagement>"
+            + "<dependencies>"
+            + "<dependency><groupId>${project.groupId}</groupId><artifactId>xs-common</artifactId></dependency>"
+            + "<dependency><groupId>${project.parent.groupId}</groupId><artifactId>lbc</artifactId>"
+            + "<exclusions><exclusion><groupId>x</groupId><artifactId>y</artifactId></exclusion></exclusions>"
+            + "</dependency>"
+            + "</dependencies>"
+            + "<build><plugins><plugin><groupId>p</groupId><artifactId>plugin</artifactId></plugin></plugins></build>"
+            + "</project>").getBytes(StandardCharsets.UTF_8));
+        PomInfo info = PomReader.readPomInfo(pom);
+
+        // the group is inherited from the parent
+        assertEquals("com.ptvgroup:xs-frontend", info.getCoordinates());
+        assertEquals("frontend", info.getProjectName());
+        assertEquals("com.ptvgroup:xs", info.getParent());
+        assertEquals(Arrays.asList("com.ptvgroup:xs-common", "com.ptvgroup:lbc"), info.getDependencies());
+        assertEquals(Arrays.asList("dashboard", "samples"), info.getModules());
+    }
+
+    @Test
+    public void testReadPomInfo_NoParent() throws IOException {
+        PomInfo info = PomReader.readPomInfo(Paths.get("src/test/resources/shortcuttest/pom_generation.xml"));
+        assertEquals("com.ptvgroup.devcomp.justatest:generation", info.getCoordinates());
+        assertEquals(null, info.getParent());
+        assertEquals(Collections.emptyList(), info.getDependencies());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadPomInfo_InvalidXML() throws IOException {
+        PomReader.readPomInfo(Paths.get("src/test/resources/shortcuttest/notapom.xml"));
+    }
+
+}
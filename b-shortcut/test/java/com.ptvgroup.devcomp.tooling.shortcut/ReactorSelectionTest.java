@@ -0,0 +1,109 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the ReactorSelection.
+ */
+public class ReactorSelectionTest {
+
+    private Path root;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().toPath();
+        writePom("", "lbc", "xs");
+        writePom("lbc");
+        writePom("xs", "frontend", "server");
+        writePom("xs/frontend");
+        writePom("xs/server", "container", "services/pom.xml");
+        writePom("xs/server/container");
+        writePom("xs/server/services");
+    }
+
+    @Test
+    public void testCompute_CompleteSubtree() {
+        ReactorSelection selection = ReactorSelection.compute(root, Arrays.asList("lbc", "xs/server",
+            "xs/server/services", "xs/server/container"), 1);
+
+        assertEquals(Arrays.asList("lbc", "xs/server"), selection.getReactorModules());
+        assertEquals(Collections.emptyList(), selection.getExcludedModules());
+    }
+
+    @Test
+    public void testCompute_PartialSubtree() throws IOException {
+        ReactorSelection selection = ReactorSelection.compute(root, Arrays.asList(".", "xs", "xs/server",
+            "xs/server/services", "xs/server/container"), 1);
+
+        assertEquals(Arrays.asList(""), selection.getReactorModules());
+        assertEquals(Arrays.asList("lbc", "xs/frontend"), selection.getExcludedModules());
+        List<String> options = selection.writeReactor();
+        assertEquals(Arrays.asList("-f", "-Dmaven.multiModuleProjectDirectory=" + root.toAbsolutePath().normalize(),
+            "-pl", "!../../lbc,!../../xs/frontend"), Arrays.asList(options.get(0), options.get(2), options.get(3),
+                options.get(4)));
+        Path file = root.resolve(options.get(1));
+        assertEquals(root.resolve(".shortcut/reactor"), file.getParent());
+        String pom = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        assertTrue(pom, pom.contains("<module>../..</module>"));
+
+        selection.deleteReactor();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testWriteReactor_Concurrent() throws IOException {
+        List<String> modules = Arrays.asList("xs/server", "xs/server/services", "xs/server/container");
+        ReactorSelection first = ReactorSelection.compute(root, modules, 1);
+        ReactorSelection second = ReactorSelection.compute(root, modules.subList(0, 2), 1);
+
+        // each build keeps its own reactor POM
+        String firstPom = first.writeReactor().get(1);
+        String secondPom = second.writeReactor().get(1);
+        assertFalse(firstPom.equals(secondPom));
+        second.deleteReactor();
+        assertTrue(Files.exists(root.resolve(firstPom)));
+        first.deleteReactor();
+    }
+
+    @Test
+    public void testIsWorthwhile() {
+        assertFalse(ReactorSelection.compute(root, Arrays.asList("xs/server", "xs/server/services",
+            "xs/server/container"), 4).isWorthwhile());
+        assertTrue(ReactorSelection.compute(root, Arrays.asList("xs/server", "xs/server/services",
+            "xs/server/container"), 3).isWorthwhile());
+        // listing the modules is shorter than excluding the others
+        assertFalse(ReactorSelection.compute(root, Arrays.asList("."), 1).isWorthwhile());
+    }
+
+    private void writePom(String module, String... modules) throws IOException {
+        StringBuilder pom = new StringBuilder("<project><modelVersion>4.0.0</modelVersion>");
+        pom.append("<groupId>test</groupId><artifactId>").append(module.isEmpty() ? "root" : module.replace('/', '-'))
+            .append("</artifactId><version>1</version><modules>");
+        for (String declared : modules) {
+            pom.append("<module>").append(declared).append("</module>");
+        }
+        pom.append("</modules></project>");
+        Path directory = root.resolve(module);
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(ModuleIndex.POM_FILE), pom.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the ScenarioClassifier.
+ */
+public class ScenarioClassifierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final List<String> SCENARIOS = Arrays.asList("xs-generation-model_default",
+        "shortcut_documentation_change", "shortcut_model_change");
+
+    private Map<String, ScenarioClassifier.Rule> rules;
+    private ModuleIndex index;
+    private Map<String, List<String>> dependencies;
+
+    @Before
+    public void setUp() throws IOException {
+        rules = ScenarioClassifier.loadRules(folder.newFolder("shortcut-rules").toPath());
+        rules.put("model_change", new ScenarioClassifier.Rule("src/main/model/**", null));
+        index = new ModuleIndex();
+        index.add("xs/generation", "xs-generation");
+        index.add("xs/generation/model", "xs-generation-model");
+
+        dependencies = new HashMap<>();
+        dependencies.put("xs-generation-model_default", Arrays.asList("a", "b", "c", "d"));
+        dependencies.put("shortcut_documentation_change", Arrays.asList("a"));
+        dependencies.put("shortcut_model_change", Arrays.asList("a", "b"));
+    }
+
+    private String classify(Map<String, List<String>> changes) {
+        return new ScenarioClassifier(rules, index, changes, scenarios -> dependencies.get(scenarios.get(0)))
+            .classify("xs-generation", SCENARIOS);
+    }
+
+    @Test
+    public void testClassify_Documentation() {
+        Map<String, List<String>> changes = new LinkedHashMap<>();
+        changes.put("xs/generation/README.md", Arrays.asList("@@ -1 +1 @@", "+# Generation"));
+        changes.put("xs/generation/src/main/java/Generator.java", Arrays.asList("@@ -3,3 +3,4 @@", "     /**",
+            "-     * Generates.", "+     * Generates the model.", "+", "      */"));
+        changes.put("xs/generation/src/site/index.html", Arrays.asList("@@ -1 +1 @@", "+<p>Generation</p>"));
+        changes.put("xs/generation/model/src/main/java/Model.java", Arrays.asList("@@ -1 +1 @@", "+int nested;"));
+        assertEquals("shortcut_documentation_change", classify(changes));
+    }
+
+    @Test
+    public void testClassify_Resources() {
+        // text and HTML files packaged with the module
+        Map<String, List<String>> changes = new LinkedHashMap<>();
+        changes.put("xs/generation/src/main/resources/template.html", Arrays.asList("@@ -1 +1 @@", "+<p/>"));
+        assertNull(classify(changes));
+        changes.put("xs/generation/src/main/resources/names.txt", Arrays.asList("@@ -1 +1 @@", "+name"));
+        changes.remove("xs/generation/src/main/resources/template.html");
+        assertNull(classify(changes));
+        changes.put("xs/generation/NOTICE.txt", Arrays.asList("@@ -1 +1 @@", "+Notice"));
+        changes.remove("xs/generation/src/main/resources/names.txt");
+        assertEquals("shortcut_documentation_change", classify(changes));
+    }
+
+    @Test
+    public void testClassify_Comments() {
+        Map<String, List<String>> changes = new LinkedHashMap<>();
+        changes.put("xs/generation/src/main/java/Generator.java", Arrays.asList("@@ -1,4 +1,6 @@", "+    // generates",
+            "+    /* the types */", "     /*", "+     *", "+     the model", "      */"));
+        changes.put("xs/generation/pom.xml", Arrays.asList("@@ -1 +1 @@", "+    <!-- the plugins -->"));
+        assertEquals("shortcut_documentation_change", classify(changes));
+    }
+
+    @Test
+    public void testClassify_Multiplication() {
+        // a continuation line of code, not of a comment
+        Map<String, List<String>> changes = new LinkedHashMap<>();
+        changes.put("xs/generation/src/main/java/Generator.java", Arrays.asList("@@ -1,3 +1,3 @@",
+            "     /* the area */", "     int area = width", "-        * height;", "+        * depth;",
+            "     return area;"));
+        assertNull(classify(changes));
+        changes.put("xs/generation/src/main/java/Generator.java", Arrays.asList("@@ -1 +1 @@", "+        * depth;"));
+        assertNull(classify(changes));
+    }
+
+    @Test
+    public void testClassify_Uncomment() {
+        // the lines between the removed delimiters are code now
+        Map<String, List<String>> changes = new LinkedHashMap<>();
+        changes.put("xs/generation/src/main/java/Generator.java", Arrays.asList("@@ -1,3 +1,1 @@", "-    /*",
+            "     generate();", "-    */"));
+        assertNull(classify(changes));
+
+        changes.put("xs/generation/src/main/java/Generator.java", Arrays.asList("@@ -1,2 +1,2 @@", "     /**",
+            "+     * generates */ generate();"));
+        assertNull(classify(changes));
+        changes.put("xs/generation/src/main/java/Generator.java", Arrays.asList("@@ -1 +1 @@",
+            "+    /* the types */ int types;"));
+        assertNull(classify(changes));
+        changes.put("xs/generation/pom.xml", Arrays.asList("@@ -1,3 +1,1 @@", "-<!--", " <module>a</module>",
+            "--->"));
+        changes.remove("xs/generation/src/main/java/Generator.java");
+        assertNull(classify(changes));
+    }
+
+    @Test
+    public void testClassify_Narrowest() {
+        Map<String, List<String>> changes = new LinkedHashMap<>();
+        changes.put("xs/generation/src/main/model/types.xsidl", Arrays.asList("@@ -1 +1 @@", "+type Point;"));
+        changes.put("xs/generation/src/main/model/README.md", Arrays.asList("@@ -1 +1 @@", "+# Types"));
+        assertEquals("shortcut_model_change", classify(changes));
+    }
+
+    @Test
+    public void testClassify_NoRuleMatches() {
+        Map<String, List<String>> changes = new LinkedHashMap<>();
+        changes.put("xs/generation/README.md", Arrays.asList("@@ -1 +1 @@", "+# Generation"));
+        changes.put("xs/generation/src/main/java/Generator.java", Arrays.asList("@@ -1 +1 @@", "+int changed;"));
+        assertNull(classify(changes));
+        assertNull(classify(Collections.<String, List<String>> emptyMap()));
+    }
+
+}
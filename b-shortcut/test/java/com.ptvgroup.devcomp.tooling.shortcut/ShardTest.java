@@ -0,0 +1,115 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the Shard and the BuildDurations it is balanced by.
+ */
+public class ShardTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private ModuleGraph graph;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("shortcut-shard").toPath();
+        // base <- core <- app, lib, tool, docs
+        Map<String, List<String>> dependencies = new HashMap<>();
+        dependencies.put("core", Arrays.asList("base"));
+        dependencies.put("app", Arrays.asList("core"));
+        graph = new ModuleGraph(Arrays.asList("app", "base", "core", "docs", "lib", "tool"), dependencies);
+    }
+
+    @Test
+    public void testPartition() {
+        BuildDurations durations = new BuildDurations(root);
+        durations.record("app", 1000);
+        durations.record("base", 1000);
+        durations.record("core", 1000);
+        durations.record("lib", 2000);
+        durations.record("tool", 1000);
+        durations.record("docs", 500);
+
+        List<List<String>> parts = Shard.partition(graph, durations, 2);
+        assertEquals(Arrays.asList("app", "base", "core", "docs"), parts.get(0));
+        assertEquals(Arrays.asList("lib", "tool"), parts.get(1));
+        assertEquals(parts.get(1), Shard.parse("2/2").select(graph, durations));
+
+        // app, base and core take longer than a part should
+        parts = Shard.partition(graph, durations, 5);
+        assertEquals(Arrays.asList("lib"), parts.get(0));
+        assertEquals(Arrays.asList("app", "docs"), parts.get(1));
+        assertEquals(Arrays.asList("base"), parts.get(2));
+        assertEquals(Arrays.asList("core"), parts.get(3));
+        assertEquals(Collections.emptyList(), Shard.partition(graph, durations, 7).get(6));
+    }
+
+    @Test
+    public void testPartition_Connected() {
+        // base <- core, util <- every other module
+        Map<String, List<String>> dependencies = new HashMap<>();
+        List<String> modules = new ArrayList<>(Arrays.asList("base", "core", "util"));
+        dependencies.put("core", Arrays.asList("base"));
+        dependencies.put("util", Arrays.asList("base"));
+        for (int i = 0; i < 9; i++) {
+            modules.add("app" + i);
+            dependencies.put("app" + i, Arrays.asList("core", "util"));
+        }
+        ModuleGraph connected = new ModuleGraph(modules, dependencies);
+        BuildDurations durations = new BuildDurations(root);
+
+        List<List<String>> parts = Shard.partition(connected, durations, 3);
+        List<String> all = new ArrayList<>();
+        for (List<String> part : parts) {
+            assertFalse(part.isEmpty());
+            all.addAll(part);
+        }
+        assertEquals(modules.size(), all.size());
+        assertEquals(new TreeSet<>(modules), new TreeSet<>(all));
+        assertEquals(Arrays.asList("base", "app0", "app3", "app6"), parts.get(0));
+        assertEquals(Arrays.asList("core", "app1", "app4", "app7"), parts.get(1));
+        assertEquals(Arrays.asList("util", "app2", "app5", "app8"), parts.get(2));
+
+        // the same parts on every machine
+        assertEquals(parts, Shard.partition(new ModuleGraph(modules, dependencies), durations, 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_OutOfRange() {
+        Shard.parse("3/2");
+    }
+
+    @Test
+    public void testRecordTotal() throws IOException {
+        BuildDurations durations = BuildDurations.load(root);
+        durations.record("app", 3000);
+        durations.recordTotal(Arrays.asList("app", "lib"), 9000);
+        durations.save();
+
+        BuildDurations loaded = BuildDurations.load(root);
+        // lib was expected to take as long as app
+        assertEquals(4500, loaded.getExpectedDuration("lib"), 0.5);
+        assertEquals(3000 + 0.3 * 1500, loaded.getExpectedDuration("app"), 0.5);
+        assertEquals((4500 + 3450) / 2.0, loaded.getExpectedDuration("core"), 0.5);
+    }
+
+}
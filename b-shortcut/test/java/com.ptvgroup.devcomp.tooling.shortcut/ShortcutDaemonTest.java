@@ -0,0 +1,122 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the ShortcutDaemon.
+ */
+public class ShortcutDaemonTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testForward() throws Exception {
+        Path root = folder.getRoot().toPath().toRealPath();
+        Path workingDirectory = folder.newFolder("lbc").toPath().toRealPath();
+        BlockingQueue<Path> directories = new LinkedBlockingQueue<>();
+        BlockingQueue<List<String>> commands = new LinkedBlockingQueue<>();
+        Thread daemon = new Thread(() -> {
+            try {
+                new ShortcutDaemon(root).serve((directory, arguments) -> {
+                    directories.add(directory);
+                    commands.add(new ArrayList<>(arguments));
+                    return arguments.size();
+                });
+            } catch (Exception e) {
+                // the test fails waiting for the daemon
+            }
+        }, "shortcut-daemon-test");
+        daemon.setDaemon(true);
+        daemon.start();
+
+        List<String> arguments = Arrays.asList("--projectNames", "lbc,xs-frontend", "-Dtest=My Test", "",
+            "install");
+        Integer exitCode = null;
+        for (int i = 0; i < 100 && exitCode == null; i++) {
+            exitCode = ShortcutDaemon.forward(root, workingDirectory, arguments);
+            if (exitCode == null) {
+                Thread.sleep(100);
+            }
+        }
+        assertEquals(Integer.valueOf(arguments.size()), exitCode);
+        assertEquals(workingDirectory, directories.take());
+        assertEquals(arguments, commands.take());
+
+        // the next command is executed as well
+        assertEquals(Integer.valueOf(0),
+            ShortcutDaemon.forward(root, workingDirectory, new ArrayList<String>()));
+        assertEquals(new ArrayList<String>(), commands.take());
+    }
+
+    @Test
+    public void testForward_NoDaemon() throws Exception {
+        Path root = folder.getRoot().toPath();
+        assertEquals(null, ShortcutDaemon.forward(root, root, Arrays.asList("install")));
+    }
+
+    @Test
+    public void testForward_HangingDaemon() throws Exception {
+        Path root = folder.getRoot().toPath();
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            writeDaemonFile(root, server.getLocalPort());
+            Thread daemon = new Thread(() -> {
+                // accepts the connection, but never answers
+                try (Socket socket = server.accept()) {
+                    Thread.sleep(10000);
+                } catch (IOException | InterruptedException e) {
+                    // the test is over
+                }
+            }, "shortcut-daemon-test");
+            daemon.setDaemon(true);
+            daemon.start();
+
+            assertEquals(null, ShortcutDaemon.forward(root, root, Arrays.asList("install"), 200));
+        }
+    }
+
+    @Test
+    public void testForward_RejectedToken() throws Exception {
+        Path root = folder.getRoot().toPath();
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            writeDaemonFile(root, server.getLocalPort());
+            Thread daemon = new Thread(() -> {
+                // closes the connection like a daemon that does not know the token
+                try (Socket socket = server.accept()) {
+                    socket.getInputStream().read();
+                } catch (IOException e) {
+                    // the test is over
+                }
+            }, "shortcut-daemon-test");
+            daemon.setDaemon(true);
+            daemon.start();
+
+            assertEquals(null, ShortcutDaemon.forward(root, root, Arrays.asList("install")));
+        }
+    }
+
+    private static void writeDaemonFile(Path root, int port) throws IOException {
+        Path directory = KampWSCache.getCacheDirectory(root);
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(ShortcutDaemon.DAEMON_FILE),
+            ("port=" + port + "\ntoken=stale\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+}
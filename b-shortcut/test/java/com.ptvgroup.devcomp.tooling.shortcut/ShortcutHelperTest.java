@@ -24,14 +24,20 @@ public class ShortcutHelperTest {
 
     private static final Path ROOT = Paths.get("src/test/resources/shortcuttest/root").toAbsolutePath();
 
+    private static ShortcutHelper helper;
+
     @BeforeClass
     public static void initialize() throws MalformedURLException {
         KampWSClient client = null;
         try {
             client = new KampWSClient();
-        } catch (Exception e) {} ;
+            client.connect();
+        } catch (Exception e) {
+            client = null;
+        }
 
         assumeTrue(client != null);
+        helper = new ShortcutHelper(client);
     }
 
     @Test
@@ -75,7 +81,7 @@ public class ShortcutHelperTest {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PrintStream ps = new PrintStream(baos);
         System.setOut(ps);
-        String result = ShortcutHelper.getChangeScenarioForProject("xs-frontend-dashboard");
+        String result = helper.getChangeScenarioForProject("xs-frontend-dashboard");
         assertTrue(result, result.equals("xs-frontend-dashboard_default"));
     }
 
@@ -86,7 +92,7 @@ public class ShortcutHelperTest {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PrintStream ps = new PrintStream(baos);
         System.setOut(ps);
-        String result = ShortcutHelper.getChangeScenarioForProject("xs-generation");
+        String result = helper.getChangeScenarioForProject("xs-generation");
         assertTrue(result, result.equals("xs-generation_default"));
     }
 
@@ -97,7 +103,7 @@ public class ShortcutHelperTest {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PrintStream ps = new PrintStream(baos);
         System.setOut(ps);
-        String result = ShortcutHelper.getChangeScenarioForProject("xs-generation");
+        String result = helper.getChangeScenarioForProject("xs-generation");
         assertTrue(result, result.equals("xs-generation_include_submodules"));
     }
 
@@ -108,7 +114,7 @@ public class ShortcutHelperTest {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PrintStream ps = new PrintStream(baos);
         System.setOut(ps);
-        String result = ShortcutHelper.getChangeScenarioForProject("xs-generation");
+        String result = helper.getChangeScenarioForProject("xs-generation");
         assertTrue(result, result.equals("xs-generation_include_submodules"));
     }
 
@@ -119,7 +125,7 @@ public class ShortcutHelperTest {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PrintStream ps = new PrintStream(baos);
         System.setOut(ps);
-        String result = ShortcutHelper.getChangeScenarioForProject("xs-generation");
+        String result = helper.getChangeScenarioForProject("xs-generation");
         assertTrue("Expected: xs-generation_include_submodules, found: " + result,
             result.equals("xs-generation_include_submodules"));
     }
@@ -128,7 +134,7 @@ public class ShortcutHelperTest {
     public void testGetChangeSpecificDependencies() {
         ArrayList<String> example = new ArrayList<>();
         example.add("xs-frontend_default");
-        ArrayList<String> response = (ArrayList<String>) ShortcutHelper.getChangeSpecificDependencies(example);
+        ArrayList<String> response = (ArrayList<String>) helper.getChangeSpecificDependencies(example);
         String[] expectedEntries = { "xs-server-services", "xs-server-container" };
         for (String entry : expectedEntries) {
             assertTrue("Expected Entry " + entry + " not found.", response.contains(entry));
@@ -139,7 +145,7 @@ public class ShortcutHelperTest {
     public void testGetChangeSpecificDependencies_Invalid() {
         ArrayList<String> example = new ArrayList<>();
         example.add("invalid");
-        ShortcutHelper.getChangeSpecificDependencies(example);
+        helper.getChangeSpecificDependencies(example);
     }
 
     @Test
@@ -150,7 +156,7 @@ public class ShortcutHelperTest {
 
         List<String> result = null;
 
-        result = ShortcutHelper.getRelativeProjectPaths(projectNames, ROOT);
+        result = helper.getRelativeProjectPaths(projectNames, ROOT);
 
         assertTrue(result.size() == 2);
         assertTrue(result.toString(), result.contains("lbc"));
@@ -162,13 +168,13 @@ public class ShortcutHelperTest {
         List<String> projectNames = new ArrayList<>();
         projectNames.add("invalid");
         projectNames.add("xs-runtime");
-        ShortcutHelper.getRelativeProjectPaths(projectNames, ROOT);
+        helper.getRelativeProjectPaths(projectNames, ROOT);
     }
 
     @Test(expected = FileNotFoundException.class)
     public void testGetRelativeProjectPaths_POMDoesNotExist() throws FileNotFoundException {
         List<String> projectNames = new ArrayList<>();
         projectNames.add("xs-runtime");
-        ShortcutHelper.getRelativeProjectPaths(projectNames, ROOT);
+        helper.getRelativeProjectPaths(projectNames, ROOT);
     }
 }
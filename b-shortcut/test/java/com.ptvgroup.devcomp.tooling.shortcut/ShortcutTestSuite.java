@@ -9,11 +9,34 @@ package com.ptvgroup.devcomp.tooling.shortcut;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import com.ptvgroup.devcomp.tooling.creator.cmd.ShortcutTest;
+
 @RunWith(Suite.class)
 
 @Suite.SuiteClasses({
+    BuildCacheTest.class,
+    BuildMonitorTest.class,
+    CommitImpactCacheTest.class,
     KampWSClientTest.class,
-    ShortcutHelperTest.class
+    EndpointHealthTest.class,
+    FileWatcherTest.class,
+    GitTest.class,
+    KampWSStandInTest.class,
+    KampWSCacheTest.class,
+    ImpactModelTest.class,
+    ImpactSetTest.class,
+    MetricsTest.class,
+    ModuleGraphTest.class,
+    ModuleIndexTest.class,
+    PomReaderTest.class,
+    ReactorSelectionTest.class,
+    ScenarioClassifierTest.class,
+    ShardTest.class,
+    ShortcutDaemonTest.class,
+    ShortcutHelperTest.class,
+    ShortcutTest.class,
+    SyntheticCheckoutTest.class,
+    TestSelectorTest.class
 })
 
 public class ShortcutTestSuite {}
@@ -0,0 +1,268 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Generates checkouts of synthetic modules, to see how shortcut behaves on
+ * checkouts far larger than the one of the test configuration.
+ * <p>
+ * The modules are nested in aggregator directories down to the specified
+ * depth, e.g. "g03/g17/m01234" with the project name "g03-g17-m01234" at
+ * depth 3. Every module depends on random modules generated before it, so
+ * the dependencies are acyclic and the first modules are depended on the
+ * most, like the core libraries of a real checkout. The same parameters
+ * always generate the same modules.
+ */
+public class SyntheticCheckout {
+
+    private static final String GROUP_ID = "com.ptvgroup.devcomp.synthetic";
+    private static final String ROOT_ARTIFACT_ID = "root";
+    private static final String VERSION = "1.0.0-SNAPSHOT";
+
+    private final List<String> projectNames = new ArrayList<>();
+    private final Map<String, List<String>> dependencies = new HashMap<>();
+    private final Map<String, List<String>> dependents = new HashMap<>();
+
+    /**
+     * Initialize a checkout with the specified shape.
+     *
+     * @param moduleCount the number of modules, aggregators not included
+     * @param depth the directory depth of the modules, at least 1
+     * @param dependencyDensity the average number of dependencies of a module
+     * @param seed the seed of the random dependencies
+     * @throws IllegalArgumentException if the depth is less than 1
+     */
+    public SyntheticCheckout(int moduleCount, int depth, double dependencyDensity, long seed) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Invalid depth " + depth);
+        }
+        // modules per directory, so that all modules fit in the depth
+        int fanout = Math.max(1, (int) Math.ceil(Math.pow(moduleCount, 1.0 / depth)));
+        while (Math.pow(fanout, depth) < moduleCount) {
+            fanout++;
+        }
+        int groupWidth = String.valueOf(fanout - 1).length();
+        int moduleWidth = String.valueOf(Math.max(0, moduleCount - 1)).length();
+        for (int i = 0; i < moduleCount; i++) {
+            StringBuilder name = new StringBuilder();
+            int group = i / fanout;
+            for (int level = depth - 2; level >= 0; level--) {
+                int digit = group / (int) Math.pow(fanout, level) % fanout;
+                name.append('g').append(pad(digit, groupWidth)).append('-');
+            }
+            String projectName = name.append('m').append(pad(i, moduleWidth)).toString();
+            projectNames.add(projectName);
+            dependents.put(projectName, new ArrayList<String>());
+        }
+
+        Random random = new Random(seed);
+        for (int i = 0; i < moduleCount; i++) {
+            int count = (int) dependencyDensity;
+            if (random.nextDouble() < dependencyDensity - count) {
+                count++;
+            }
+            Set<String> upstream = new LinkedHashSet<>();
+            while (upstream.size() < Math.min(count, i)) {
+                upstream.add(projectNames.get(random.nextInt(i)));
+            }
+            dependencies.put(projectNames.get(i), new ArrayList<>(upstream));
+            for (String dependency : upstream) {
+                dependents.get(dependency).add(projectNames.get(i));
+            }
+        }
+    }
+
+    private static String pad(int number, int width) {
+        StringBuilder result = new StringBuilder(String.valueOf(number));
+        while (result.length() < width) {
+            result.insert(0, '0');
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the project names of the modules, in the order they were
+     * generated.
+     *
+     * @return the project names
+     */
+    public List<String> getProjectNames() {
+        return Collections.unmodifiableList(projectNames);
+    }
+
+    /**
+     * Returns the directory of a module, e.g. "g03/g17/m01234" for
+     * "g03-g17-m01234".
+     *
+     * @param projectName the name of the module
+     * @return the directory relative to the checkout root
+     */
+    public static String getModuleDirectory(String projectName) {
+        return projectName.replace('-', '/');
+    }
+
+    /**
+     * Returns the modules a module declares as dependencies.
+     *
+     * @param projectName the name of the module
+     * @return the names of the modules it depends on
+     */
+    public List<String> getDependencies(String projectName) {
+        return Collections.unmodifiableList(dependencies.get(projectName));
+    }
+
+    /**
+     * Returns a module and all modules depending on it, directly or
+     * indirectly.
+     *
+     * @param projectName the name of the module
+     * @return the names of the modules, in breadth-first order
+     */
+    public Set<String> getAffected(String projectName) {
+        Set<String> result = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        result.add(projectName);
+        queue.add(projectName);
+        while (!queue.isEmpty()) {
+            for (String dependent : dependents.get(queue.poll())) {
+                if (result.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the checkout to the specified directory: a POM file and a
+     * source file for every module, and an aggregator POM file for the root
+     * and every directory containing modules.
+     *
+     * @param root the root directory of the checkout
+     * @throws IOException if the checkout cannot be written
+     */
+    public void write(Path root) throws IOException {
+        // the subdirectories of every aggregator directory, "" being the root
+        Map<String, Set<String>> aggregators = new TreeMap<>();
+        aggregators.put("", new TreeSet<String>());
+        for (String projectName : projectNames) {
+            String directory = getModuleDirectory(projectName);
+            for (int slash = directory.lastIndexOf('/'); slash >= 0; slash = directory.lastIndexOf('/')) {
+                String parent = directory.substring(0, slash);
+                if (!aggregators.containsKey(parent)) {
+                    aggregators.put(parent, new TreeSet<String>());
+                }
+                aggregators.get(parent).add(directory.substring(slash + 1));
+                directory = parent;
+            }
+            aggregators.get("").add(directory);
+        }
+
+        for (Map.Entry<String, Set<String>> aggregator : aggregators.entrySet()) {
+            String directory = aggregator.getKey();
+            String artifactId = directory.isEmpty() ? ROOT_ARTIFACT_ID : directory.replace('/', '-');
+            StringBuilder pom = startPom(artifactId, !directory.isEmpty());
+            pom.append("    <packaging>pom</packaging>\n");
+            pom.append("    <modules>\n");
+            for (String module : aggregator.getValue()) {
+                pom.append("        <module>").append(module).append("</module>\n");
+            }
+            pom.append("    </modules>\n");
+            writePom(root.resolve(directory), pom);
+        }
+
+        for (String projectName : projectNames) {
+            Path module = root.resolve(getModuleDirectory(projectName));
+            StringBuilder pom = startPom(projectName, true);
+            pom.append("    <dependencies>\n");
+            for (String dependency : dependencies.get(projectName)) {
+                pom.append("        <dependency>\n");
+                pom.append("            <groupId>").append(GROUP_ID).append("</groupId>\n");
+                pom.append("            <artifactId>").append(dependency).append("</artifactId>\n");
+                pom.append("            <version>").append(VERSION).append("</version>\n");
+                pom.append("        </dependency>\n");
+            }
+            pom.append("    </dependencies>\n");
+            writePom(module, pom);
+            Files.createDirectories(module.resolve("src/main/java"));
+            Files.write(module.resolve("src/main/java/Module.java"),
+                "class Module {}\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static StringBuilder startPom(String artifactId, boolean withParent) {
+        StringBuilder pom = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+        pom.append("    <modelVersion>4.0.0</modelVersion>\n");
+        if (withParent) {
+            pom.append("    <parent>\n");
+            pom.append("        <groupId>").append(GROUP_ID).append("</groupId>\n");
+            pom.append("        <artifactId>").append(ROOT_ARTIFACT_ID).append("</artifactId>\n");
+            pom.append("        <version>").append(VERSION).append("</version>\n");
+            pom.append("    </parent>\n");
+        }
+        pom.append("    <groupId>").append(GROUP_ID).append("</groupId>\n");
+        pom.append("    <artifactId>").append(artifactId).append("</artifactId>\n");
+        pom.append("    <name>").append(artifactId).append("</name>\n");
+        pom.append("    <version>").append(VERSION).append("</version>\n");
+        return pom;
+    }
+
+    private static void writePom(Path directory, StringBuilder pom) throws IOException {
+        Files.createDirectories(directory);
+        pom.append("</project>\n");
+        Files.write(directory.resolve(ModuleIndex.POM_FILE), pom.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a stand-in for the web service knowing the modules of this
+     * checkout. The default change scenario of each of the specified modules
+     * affects the module and all modules depending on it; the scenarios of
+     * the other modules affect their module only, so that only the modules
+     * changed by a benchmark take the time and memory to resolve.
+     *
+     * @param changedProjects the names of the modules whose changes are
+     *            resolved in full
+     * @return the stand-in
+     */
+    public KampWSStandIn createStandIn(Collection<String> changedProjects) {
+        Map<String, List<String>> affected = new LinkedHashMap<>();
+        for (String projectName : changedProjects) {
+            affected.put(projectName + ScenarioClassifier.DEFAULT_SUFFIX, new ArrayList<>(getAffected(projectName)));
+        }
+        return new KampWSStandIn(projectNames, Collections.<String, List<String>> emptyMap(), affected);
+    }
+
+    /**
+     * Selects modules spread evenly across the checkout, e.g. as the modules
+     * changed by a benchmark.
+     *
+     * @param count the number of modules
+     * @return the names of the modules
+     */
+    public List<String> selectProjects(int count) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < count && i < projectNames.size(); i++) {
+            result.add(projectNames.get((int) ((long) i * projectNames.size() / count)));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the SyntheticCheckout the scale benchmarks run on.
+ */
+public class SyntheticCheckoutTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testShape() {
+        SyntheticCheckout checkout = new SyntheticCheckout(200, 3, 2.5, 42);
+        List<String> projectNames = checkout.getProjectNames();
+        assertEquals(200, projectNames.size());
+        assertEquals("g0-g0-m000", projectNames.get(0));
+        assertEquals("g5-g3-m199", projectNames.get(199));
+
+        for (int i = 0; i < projectNames.size(); i++) {
+            for (String dependency : checkout.getDependencies(projectNames.get(i))) {
+                // only on modules generated before, so there are no cycles
+                assertTrue(dependency, projectNames.indexOf(dependency) < i);
+            }
+        }
+        assertEquals(projectNames, new SyntheticCheckout(200, 3, 2.5, 42).getProjectNames());
+        assertEquals(checkout.getDependencies("g5-g3-m199"),
+            new SyntheticCheckout(200, 3, 2.5, 42).getDependencies("g5-g3-m199"));
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        SyntheticCheckout checkout = new SyntheticCheckout(30, 2, 1.5, 42);
+        Path root = folder.newFolder("shortcut-synthetic").toPath();
+        checkout.write(root);
+
+        ModuleIndex index = ModuleIndex.scan(root);
+        for (String projectName : checkout.getProjectNames()) {
+            assertEquals(SyntheticCheckout.getModuleDirectory(projectName), index.getModuleDirectory(projectName));
+        }
+        List<String> modules = new ArrayList<>();
+        for (String projectName : checkout.getProjectNames()) {
+            modules.add(SyntheticCheckout.getModuleDirectory(projectName));
+        }
+        ModuleGraph graph = ModuleGraph.read(root, modules);
+        assertEquals(checkout.getDependencies("g4-m29").size(), graph.getDependencies("g4/m29").size());
+    }
+
+    @Test
+    public void testCreateStandIn() throws Exception {
+        SyntheticCheckout checkout = new SyntheticCheckout(100, 2, 2, 42);
+        String changed = checkout.getProjectNames().get(10);
+        KampWSStandIn service = checkout.createStandIn(Arrays.asList(changed));
+        ShortcutHelper helper = new ShortcutHelper(service.createClient());
+
+        List<String> affected = helper.getChangeSpecificDependencies(
+            Arrays.asList(changed + ScenarioClassifier.DEFAULT_SUFFIX));
+        assertEquals(new TreeSet<>(checkout.getAffected(changed)), new TreeSet<>(affected));
+        assertTrue(affected.size() > 1);
+        assertEquals(Arrays.asList("g9-m99"),
+            helper.getChangeSpecificDependencies(Arrays.asList("g9-m99" + ScenarioClassifier.DEFAULT_SUFFIX)));
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.ptvgroup.devcomp.tooling.shortcut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the TestSelector on the compiled classes of shortcut itself.
+ */
+public class TestSelectorTest {
+
+    private static final String PACKAGE = "com/ptvgroup/devcomp/tooling/shortcut/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private ModuleIndex index;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().toPath();
+        index = new ModuleIndex();
+        index.add("core", "core");
+        addClass(ProjectIds.class, false);
+        addClass(ImpactSet.class, false);
+        addClass(EndpointHealth.class, false);
+        addClass(ImpactSetTest.class, true);
+        addClass(EndpointHealthTest.class, true);
+    }
+
+    @Test
+    public void testSelect() throws IOException {
+        TestSelector.Selection selection = TestSelector.load(root).select(index, Arrays.asList("core"),
+            Arrays.asList("core/src/main/java/" + PACKAGE + "ProjectIds.java"));
+
+        assertFalse(selection.getReason(), selection.isAll());
+        assertEquals(Arrays.asList(ImpactSetTest.class.getName()), selection.getTests());
+    }
+
+    @Test
+    public void testSelect_OtherFiles() throws IOException {
+        TestSelector selector = TestSelector.load(root);
+        String source = "core/src/main/java/" + PACKAGE + "ProjectIds.java";
+
+        // outside of the modules
+        assertTrue(selector.select(index, Arrays.asList("core"), Arrays.asList(source, "README.md")).isAll());
+        assertTrue(selector.select(index, Arrays.asList("core"), Arrays.asList(source, "core/README.md")).isAll());
+        assertTrue(selector.select(index, Arrays.asList("core"), Arrays.asList(source, "core/pom.xml")).isAll());
+        assertTrue(selector.select(index, Arrays.asList("core"), Collections.<String> emptyList()).isAll());
+    }
+
+    @Test
+    public void testSelect_CustomTests() throws IOException {
+        String source = "core/src/main/java/" + PACKAGE + "ProjectIds.java";
+        writePom("pom.xml", "<plugin><artifactId>maven-surefire-plugin</artifactId><version>2.22.2</version>"
+            + "</plugin><plugin><artifactId>maven-jar-plugin</artifactId><configuration><excludes/>"
+            + "</configuration></plugin>");
+        assertFalse(TestSelector.load(root).select(index, Arrays.asList("core"), Arrays.asList(source)).isAll());
+
+        writePom("core/pom.xml", "<plugin><artifactId>maven-surefire-plugin</artifactId><configuration>"
+            + "<includes><include>**/*Spec.java</include></includes></configuration></plugin>");
+        TestSelector.Selection selection = TestSelector.load(root).select(index, Arrays.asList("core"),
+            Arrays.asList(source));
+        assertTrue(selection.isAll());
+        assertEquals("core/pom.xml configures the tests run by Surefire.", selection.getReason());
+    }
+
+    @Test
+    public void testSelect_NoTests() throws IOException {
+        TestSelector.Selection selection = TestSelector.load(root).select(index, Arrays.asList("core"),
+            Arrays.asList("core/src/main/java/" + PACKAGE + "Unused.java"));
+
+        assertEquals(Collections.emptyList(), selection.getTests());
+    }
+
+    @Test
+    public void testSelect_Stale() throws IOException {
+        Path source = root.resolve("core/src/main/java/" + PACKAGE + "EndpointHealth.java");
+        Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis() + 60000));
+        TestSelector selector = TestSelector.load(root);
+
+        assertTrue(selector.select(index, Arrays.asList("core"),
+            Arrays.asList("core/src/main/java/" + PACKAGE + "ProjectIds.java")).isAll());
+        assertFalse(selector.select(index, Arrays.asList("core"),
+            Arrays.asList("core/src/main/java/" + PACKAGE + "EndpointHealth.java")).isAll());
+        assertTrue(selector.select(index, Arrays.asList("core"),
+            Arrays.asList("core/src/main/resources/shortcut.properties")).isAll());
+    }
+
+    @Test
+    public void testSelect_ChangedTests() throws IOException {
+        String source = "core/src/test/java/" + PACKAGE + "ProjectIdsTest.java";
+        Files.write(root.resolve(source), new byte[0]);
+        TestSelector selector = TestSelector.load(root);
+
+        // not compiled yet
+        TestSelector.Selection selection = selector.select(index, Arrays.asList("core"),
+            Arrays.asList(source, "core/src/main/java/" + PACKAGE + "ProjectIds.java"));
+        assertFalse(selection.getReason(), selection.isAll());
+        assertEquals(Arrays.asList(ImpactSetTest.class.getName(), PACKAGE.replace('/', '.') + "ProjectIdsTest"),
+            selection.getTests());
+
+        // deleted, or no test by name
+        Files.delete(root.resolve(source));
+        String helper = "core/src/test/java/" + PACKAGE + "Fixtures.java";
+        Files.write(root.resolve(helper), new byte[0]);
+        selection = selector.select(index, Arrays.asList("core"), Arrays.asList(helper, source));
+        assertFalse(selection.getReason(), selection.isAll());
+        assertEquals(Collections.emptyList(), selection.getTests());
+    }
+
+    @Test
+    public void testSave() throws IOException {
+        TestSelector selector = TestSelector.load(root);
+        selector.select(index, Arrays.asList("core"), Arrays.asList("core/src/main/java/" + PACKAGE + "Unused.java"));
+        selector.save();
+        Files.delete(root.resolve("core/target/test-classes/" + PACKAGE + "EndpointHealthTest.class"));
+        Files.delete(root.resolve("core/src/test/java/" + PACKAGE + "EndpointHealthTest.java"));
+
+        TestSelector.Selection selection = TestSelector.load(root).select(index, Arrays.asList("core"),
+            Arrays.asList("core/src/main/java/" + PACKAGE + "EndpointHealth.java"));
+        assertEquals(Collections.emptyList(), selection.getTests());
+        assertTrue(Files.isRegularFile(KampWSCache.getCacheDirectory(root).resolve(TestSelector.MAP_FILE)));
+    }
+
+    /**
+     * Copies the class file of the specified class into the module "core",
+     * along with an older source file.
+     */
+    private void addClass(Class<?> type, boolean test) throws IOException {
+        String name = type.getSimpleName();
+        Path classFile = root.resolve("core/target/" + (test ? "test-classes/" : "classes/") + PACKAGE + name
+            + ".class");
+        Path source = root.resolve("core/src/" + (test ? "test" : "main") + "/java/" + PACKAGE + name + ".java");
+        Files.createDirectories(classFile.getParent());
+        Files.createDirectories(source.getParent());
+        try (InputStream in = type.getResourceAsStream(name + ".class")) {
+            Files.copy(in, classFile);
+        }
+        Files.write(source, new byte[0]);
+        Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+    }
+
+    /**
+     * Writes a POM file declaring the specified plugins.
+     */
+    private void writePom(String path, String plugins) throws IOException {
+        Files.write(root.resolve(path), ("<project><build><plugins>" + plugins + "</plugins></build></project>")
+            .getBytes(StandardCharsets.UTF_8));
+    }
+
+}